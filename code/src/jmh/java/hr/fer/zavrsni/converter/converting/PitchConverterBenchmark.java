@@ -0,0 +1,70 @@
+package hr.fer.zavrsni.converter.converting;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opencv.core.Rect;
+
+import hr.fer.zavrsni.converter.keyboard.FullKeyboard;
+
+/**
+ * Mjerenje prepoznavanja tona iz tablice u usporedbi s izračunom tona iz položaja na klavijaturi,
+ * za pravokutnike nota na svim položajima klavijature širine 1280 piksela.
+ *
+ * @author Ana Bagić
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PitchConverterBenchmark {
+
+	/** Širina klavijature. */
+	private static final int WIDTH = 1280;
+	/** Širina pravokutnika note. */
+	private static final int RECT_WIDTH = 20;
+
+	/** Prepoznavanje tona. */
+	private PitchConverter converter;
+	/** Pravokutnici nota. */
+	private Rect[] rects;
+
+	@Setup
+	public void setup() {
+		converter = new PitchConverter();
+		converter.setKeyboard(new FullKeyboard());
+		converter.setKeyboardWidth(WIDTH);
+
+		rects = new Rect[WIDTH - RECT_WIDTH];
+		for(int x = 0; x < rects.length; x++) {
+			rects[x] = new Rect(x, 0, RECT_WIDTH, 10);
+		}
+	}
+
+	@Benchmark
+	public void lookup(Blackhole blackhole) {
+		for(Rect r : rects) {
+			blackhole.consume(converter.findPitch(r));
+		}
+	}
+
+	@Benchmark
+	public void compute(Blackhole blackhole) {
+		for(Rect r : rects) {
+			blackhole.consume(converter.computePitch(r.x + r.width/2.0));
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package hr.fer.zavrsni.converter.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hr.fer.zavrsni.converter.model.song.Song;
+
+/**
+ * Mjerenje generiranja MusicXML dokumenta iz rastavljenih predložaka u usporedbi s prijašnjim generiranjem
+ * zamjenom oznaka regularnim izrazima, na sintetičkoj pjesmi od 5 000 nota iz {@link TemplateTest}.
+ * Generiranje iz predložaka mjeri se i pri zapisivanju u izlaz, bez stvaranja cijelog dokumenta u memoriji.
+ *
+ * @author Ana Bagić
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark {
+
+	/** Broj nota sintetičke pjesme. */
+	private static final int NOTES = 5_000;
+
+	/** Pjesma s izgrađenim taktovima. */
+	private Song song;
+
+	@Setup
+	public void setup() {
+		song = TemplateTest.syntheticSong(NOTES);
+	}
+
+	@Benchmark
+	public String template() {
+		return XMLUtil.generate(song);
+	}
+
+	@Benchmark
+	public void templateStreamed() throws IOException {
+		XMLUtil.generate(song, Writer.nullWriter());
+	}
+
+	@Benchmark
+	public String regex() {
+		return RegexXMLUtil.generate(song);
+	}
+}
@@ -0,0 +1,57 @@
+package hr.fer.zavrsni.converter.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hr.fer.zavrsni.converter.model.song.Song;
+
+/**
+ * Mjerenje izgradnje vremenske crte jednim prolazom u usporedbi s prijašnjim postupkom koji za svaki takt ponovno
+ * prolazi preostalim notama pjesme, na sintetičkoj pjesmi od 50 000 nota iz {@link TempoUtilTest}.
+ * Izgradnja mijenja pjesmu, pa se pjesma stvara prije svakog mjerenja.
+ *
+ * @author Ana Bagić
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TempoUtilBenchmark {
+
+	/** Broj nota sintetičke pjesme. */
+	private static final int NOTES = 50_000;
+
+	/** Pjesma za koju se gradi vremenska crta. */
+	private Song song;
+
+	@Setup(Level.Invocation)
+	public void setup() {
+		song = TempoUtilTest.syntheticSong(NOTES);
+	}
+
+	@Benchmark
+	public Song singlePass() {
+		TempoUtil.createTimeline(song, song.iterator().next().getStartTime());
+		return song;
+	}
+
+	@Benchmark
+	public Song rescanning() {
+		TempoUtilTest.createTimelineRescanning(song, song.iterator().next().getStartTime());
+		return song;
+	}
+}
@@ -1,7 +1,10 @@
 package hr.fer.zavrsni.converter;
 
+import java.nio.file.Path;
+
 import org.opencv.core.Core;
 
+import hr.fer.zavrsni.converter.cache.NoteCache;
 import hr.fer.zavrsni.converter.util.Constants;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -21,6 +24,8 @@ public class SheetMusicConverter extends Application {
 	
 	/** Početna scena aplikacije. */
 	private static Stage primaryStage;
+	/** Priručna memorija prepoznatih nota, zajednička svim obradama u aplikaciji. */
+	private static NoteCache noteCache;
 	
 	/**
 	 * Vraća početnu scenu aplikacije.
@@ -30,9 +35,20 @@ public class SheetMusicConverter extends Application {
 	public static Stage getStage() {
 		return primaryStage;
 	}
+	
+	/**
+	 * Vraća priručnu memoriju prepoznatih nota, zajedničku svim obradama u aplikaciji.
+	 * 
+	 * @return priručna memorija prepoznatih nota
+	 */
+	public static NoteCache getNoteCache() {
+		return noteCache;
+	}
 
 	@Override
 	public void start(Stage primaryStage) throws Exception {
+		noteCache = new NoteCache(Path.of(Constants.NOTE_CACHE_DIRECTORY), Constants.NOTE_CACHE_MAX_BYTES);
+		
 		FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource(Constants.PATH_TO_VISUALIZATION + "MainScene.fxml"));
     	Parent root = fxmlLoader.load();
     	Scene scene = createScaledScene(root, primaryStage);
@@ -1,40 +1,343 @@
 package hr.fer.zavrsni.converter;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.opencv.core.Rect;
+
+import hr.fer.zavrsni.converter.cache.NoteCache;
+import hr.fer.zavrsni.converter.cache.ResultCache;
+import hr.fer.zavrsni.converter.converting.Converter;
+import hr.fer.zavrsni.converter.keyboard.Keyboard;
+import hr.fer.zavrsni.converter.keyboard.KeyboardFactory;
+import hr.fer.zavrsni.converter.model.note.NoteType;
+import hr.fer.zavrsni.converter.model.song.SongMetadata;
+import hr.fer.zavrsni.converter.model.song.TimeSignature;
+import hr.fer.zavrsni.converter.util.Constants;
+import hr.fer.zavrsni.converter.util.MidiUtil;
+import hr.fer.zavrsni.converter.util.ScaleUtil;
+import hr.fer.zavrsni.converter.util.TempoUtil;
+import hr.fer.zavrsni.converter.util.Util;
+import hr.fer.zavrsni.converter.util.XMLUtil;
+
 /**
- * Razred korišten za testiranje aplikacije bez korisničkog sučelja.
- * 
+ * Razred za generiranje notnog zapisa iz videozapisa bez korisničkog sučelja, iz naredbenog retka.
+ * Prima videozapise ili direktorije s videozapisima te parametre koje inače zadaje korisničko sučelje,
+ * i za svaki videozapis ispisuje broj obrađenih slika po sekundi i ukupno trajanje obrade.
+ * Videozapisi se obrađuju istovremeno u zajedničkom skupu dretvi, svaki sa svojim {@link Converter} objektom.
+ * Generirani MusicXML dokumenti spremaju se u {@link ResultCache}, pa se isti videozapis s istim parametrima
+ * ne obrađuje ponovno, a prepoznate note u {@link NoteCache}, pa se nakon promjene tempa ili mjere
+ * notni zapis generira iz spremljenih nota. Opcijom <code>--stream</code> dokument se zapisuje takt po takt dok se
+ * videozapis još obrađuje (vidi {@link Converter#convertStreaming(org.opencv.core.Point, org.opencv.core.Point, Writer)}),
+ * bez priručnih memorija i kontrolnih točaka.
+ *
  * @author Ana Bagić
  *
  */
 public class SongConverter {
 
-	/*
+	/** Opis korištenja naredbenog retka. */
+	private static final String USAGE = String.join("\n",
+			"Korištenje: SongConverter --roi x0,y0,x1,y1 [opcije] <videozapis ili direktorij>...",
+			"  --roi x0,y0,x1,y1      pravokutnik slike u kojem padaju note, od lijevog do desnog ruba klavijature",
+			"  --keyboard <raspon>    raspon klavijature, npr. \"A0 - C8\" (pretpostavljeno: prva klavijatura)",
+			"  --bpm <tempo>          pretpostavljeni tempo, 5-500 (pretpostavljeno: 120)",
+			"  --time <mjera>         mjera pjesme, npr. 4/4 (pretpostavljeno: 4/4)",
+			"  --format <nastavak>    musicxml, mxl ili mid (pretpostavljeno: musicxml)",
+			"  --out <direktorij>     direktorij za generirane datoteke (pretpostavljeno: direktorij videozapisa)",
+			"  --parallel <n>         broj videozapisa koji se obrađuju istovremeno (pretpostavljeno: 1)",
+			"  --resume               nastavlja prekinutu obradu iz kontrolne točke videozapisa",
+			"  --stream               zapisuje MusicXML dokument takt po takt dok se videozapis obrađuje",
+			"  --no-cache             ne koristi priručnu memoriju generiranih dokumenata i prepoznatih nota");
+
+	/**
+	 * Metoda pokreće generiranje notnog zapisa iz danih videozapisa.
+	 *
+	 * @param args argumenti naredbenog retka
+	 */
 	public static void main(String[] args) {
-		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
-		
-		Converter.getInstance().setPathToVideo("C:\\Users\\anaba\\Documents\\FER\\ZAVRSNI\\lovely.mp4");
-		PitchConverter.getInstance().setKeyboard(new FullKeyboard());
-		PitchConverter.getInstance().setKeyboardWidth(1280);
-		Converter.getInstance().setSongMetadata(new SongMetadata("Pjesma", "Artist"));
-		
-		Converter.getInstance().getSong().setTimeSignature(new TimeSignature(4, NoteType.QUARTER));
-		Converter.getInstance().getSong().setBeatsPerMinute(132);
-		
-		Converter con = Converter.getInstance();
-		con.extractNotes(new Point(0, 0), new Point(1280, 500));
-		
-		ScaleUtil.findScale(con.getSong());
-		ScaleUtil.fitToScale(con.getSong());
-		
-		TempoUtil.findTempo(con.getSong());
-		TempoUtil.createTimeline(con.getSong(), con.getFirstFrame());
-		
-		String document = XMLUtil.generate(con.getSong());
+		Options options;
+		try {
+			options = Options.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+
+		Util.loadOpenCV();
+
+		ResultCache cache = null;
+		NoteCache noteCache = null;
+		if(options.cache) {
+			try {
+				cache = new ResultCache(Path.of(Constants.RESULT_CACHE_DIRECTORY), Constants.RESULT_CACHE_MAX_BYTES);
+				noteCache = new NoteCache(Path.of(Constants.NOTE_CACHE_DIRECTORY), Constants.NOTE_CACHE_MAX_BYTES);
+			} catch (IOException e) {
+				System.err.println("Priručna memorija se ne može otvoriti: " + e);
+			}
+		}
+
+		int failed = convertAll(options, cache, noteCache);
+		System.exit(failed == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Generira notni zapis iz jednog videozapisa i ispisuje broj obrađenih slika po sekundi i trajanje obrade.
+	 * MusicXML dokument se uzima iz priručne memorije ako je već generiran, a note ako su već prepoznate, bez obrade videozapisa.
+	 *
+	 * @param video putanja do videozapisa
+	 * @param options opcije naredbenog retka
+	 * @param cache priručna memorija generiranih dokumenata ili <code>null</code>
+	 * @param noteCache priručna memorija prepoznatih nota ili <code>null</code>
+	 * @return <code>true</code> ako je generiranje uspjelo, inače <code>false</code>
+	 */
+	private static boolean convert(Path video, Options options, ResultCache cache, NoteCache noteCache) {
+		long start = System.nanoTime();
+
+		try {
+			String name = video.getFileName().toString();
+			String baseName = name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name;
+			Path outDir = options.outDir != null ? options.outDir : video.toAbsolutePath().getParent();
+			Path out = outDir.resolve(baseName + options.extension);
+
+			Converter con = new Converter();
+			con.getPitchConverter().setKeyboard(options.keyboard);
+			con.getPitchConverter().setKeyboardWidth(options.area.width);
+			con.setPathToVideo(video.toString());
+			con.setResume(options.resume);
+			con.setNoteCache(noteCache);
+			con.setSongMetadata(new SongMetadata(baseName, Constants.DEFAULT_ARTIST_NAME));
+			con.getSong().setTimeSignature(options.timeSignature);
+			con.getSong().setBeatsPerMinute(options.beatsPerMinute);
+
+			if(options.stream) {
+				try(Writer writer = XMLUtil.newWriter(out)) {
+					con.convertStreaming(options.area.tl(), options.area.br(), writer);
+				}
+				double seconds = (System.nanoTime() - start) / 1e9;
+				System.out.printf("%s -> %s: %d slika, %.1f slika/s, %.2f s, zapisano tijekom obrade%n",
+						video, out, con.getFrameCount(), con.getFrameCount() / seconds, seconds);
+				return true;
+			}
+
+			String key = null;
+			if(cache != null && !MidiUtil.isMidi(out)) {
+				key = ResultCache.keyOf(con, options.area);
+				if(cache.copy(key, out)) {
+					System.out.printf("%s -> %s: iz priručne memorije, %.2f s%n", video, out, (System.nanoTime() - start) / 1e9);
+					return true;
+				}
+			}
+
+			con.extractNotes(options.area.tl(), options.area.br());
+			double extractSeconds = (System.nanoTime() - start) / 1e9;
+
+			if(MidiUtil.isMidi(out)) {
+				MidiUtil.generate(con.getSong().getEvents(), con.getExactFramesPerSecond(), out);
+			} else {
+				ScaleUtil.findScale(con.getSong());
+				ScaleUtil.fitToScale(con.getSong());
+
+				TempoUtil.findTempo(con.getSong());
+				TempoUtil.createTimeline(con.getSong(), con.getFirstFrame());
+
+				if(key != null) {
+					cache.put(key, con.getSong(), out);
+				} else {
+					XMLUtil.generate(con.getSong(), out);
+				}
+			}
+
+			double seconds = (System.nanoTime() - start) / 1e9;
+			if(con.isFromNoteCache()) {
+				System.out.printf("%s -> %s: iz priručne memorije nota, %.2f s%n", video, out, seconds);
+			} else {
+				System.out.printf("%s -> %s: %d slika, %.1f slika/s, %.2f s%n",
+						video, out, con.getFrameCount(), con.getFrameCount() / extractSeconds, seconds);
+			}
+			return true;
+		} catch (IOException | RuntimeException e) {
+			System.err.printf("%s: generiranje nije uspjelo (%s), %.2f s%n", video, e, (System.nanoTime() - start) / 1e9);
+			return false;
+		}
+	}
+
+	/**
+	 * Obrađuje videozapise u zajedničkom skupu dretvi, najviše zadani broj istovremeno, i ispisuje ukupno trajanje obrade.
+	 *
+	 * @param options opcije naredbenog retka
+	 * @param cache priručna memorija generiranih dokumenata ili <code>null</code>
+	 * @param noteCache priručna memorija prepoznatih nota ili <code>null</code>
+	 * @return broj videozapisa čije generiranje nije uspjelo
+	 */
+	private static int convertAll(Options options, ResultCache cache, NoteCache noteCache) {
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(options.parallel);
+		List<Future<Boolean>> results = new ArrayList<>();
+		for(Path video : options.videos) {
+			results.add(pool.submit(() -> convert(video, options, cache, noteCache)));
+		}
+
+		int failed = 0;
 		try {
-			Files.write(Paths.get("C:\\Users\\anaba\\Documents\\FER\\proba.musicxml"), document.getBytes());
-		} catch (IOException e) {
-			e.printStackTrace();
+			for(Future<Boolean> result : results) {
+				failed += result.get() ? 0 : 1;
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Obrada videozapisa nije uspjela.", e);
+		} finally {
+			pool.shutdownNow();
+		}
+
+		if(options.videos.size() > 1) {
+			System.out.printf("Ukupno: %d videozapisa, %d neuspjelih, %.2f s%n", options.videos.size(), failed, (System.nanoTime() - start) / 1e9);
+		}
+		return failed;
+	}
+
+	/**
+	 * Opcije naredbenog retka.
+	 */
+	private static class Options {
+		/** Opcije koje primaju vrijednost. */
+		private static final List<String> VALUE_OPTIONS = List.of("--roi", "--keyboard", "--bpm", "--time", "--format", "--out", "--parallel");
+		/** Nastavci datoteka koje se smatraju videozapisima pri obradi direktorija. */
+		private static final List<String> VIDEO_EXTENSIONS = List.of(".mp4", ".avi", ".mov", ".mkv", ".webm", ".m4v");
+
+		/** Pravokutnik slike u kojem padaju note. */
+		private Rect area;
+		/** Klavijatura. */
+		private Keyboard keyboard = KeyboardFactory.getKeyboards().isEmpty() ? null : KeyboardFactory.getKeyboards().get(0);
+		/** Pretpostavljeni tempo. */
+		private int beatsPerMinute = Constants.DEFAULT_BEATS_PER_MINUTE;
+		/** Mjera pjesme. */
+		private TimeSignature timeSignature = new TimeSignature(4, NoteType.QUARTER);
+		/** Nastavak generiranih datoteka. */
+		private String extension = ".musicxml";
+		/** Direktorij za generirane datoteke, <code>null</code> za direktorij videozapisa. */
+		private Path outDir;
+		/** Broj videozapisa koji se obrađuju istovremeno. */
+		private int parallel = 1;
+		/** Nastavlja li se prekinuta obrada iz kontrolnih točaka. */
+		private boolean resume;
+		/** Zapisuje li se dokument takt po takt tijekom obrade videozapisa. */
+		private boolean stream;
+		/** Koriste li se priručne memorije generiranih dokumenata i prepoznatih nota. */
+		private boolean cache = true;
+		/** Videozapisi koji se obrađuju. */
+		private List<Path> videos = new ArrayList<>();
+
+		/**
+		 * Čita opcije iz danih argumenata naredbenog retka.
+		 *
+		 * @param args argumenti naredbenog retka
+		 * @return pročitane opcije
+		 * @throws IllegalArgumentException ako argumenti nisu ispravni
+		 */
+		private static Options parse(String[] args) {
+			Options options = new Options();
+
+			for(int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if(arg.equals("--resume")) {
+					options.resume = true;
+					continue;
+				}
+				if(arg.equals("--stream")) {
+					options.stream = true;
+					continue;
+				}
+				if(arg.equals("--no-cache")) {
+					options.cache = false;
+					continue;
+				}
+				if(!arg.startsWith("--")) {
+					options.addVideos(Path.of(arg));
+					continue;
+				}
+				if(!VALUE_OPTIONS.contains(arg) || i + 1 == args.length) {
+					throw new IllegalArgumentException("Nepoznata opcija ili opcija bez vrijednosti: " + arg);
+				}
+
+				String value = args[++i];
+				try {
+					switch(arg) {
+					case "--roi" -> options.area = Util.parseRect(value);
+					case "--keyboard" -> options.keyboard = KeyboardFactory.getKeyboard(value);
+					case "--bpm" -> {
+						options.beatsPerMinute = Integer.parseInt(value);
+						if(options.beatsPerMinute < 5 || options.beatsPerMinute > 500) {
+							throw new IllegalArgumentException("Tempo treba biti u intervalu 5-500");
+						}
+					}
+					case "--time" -> options.timeSignature = TimeSignature.parse(value);
+					case "--format" -> options.extension = switch(value) {
+						case "musicxml" -> ".musicxml";
+						case "mxl" -> Constants.MXL_EXTENSION;
+						case "mid" -> Constants.MIDI_EXTENSION;
+						default -> throw new IllegalArgumentException("Nepoznat format: " + value);
+					};
+					case "--out" -> options.outDir = Path.of(value);
+					case "--parallel" -> options.parallel = Math.max(1, Integer.parseInt(value));
+					}
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Vrijednost opcije " + arg + " nije cijeli broj: " + value);
+				}
+			}
+
+			if(options.area == null) {
+				throw new IllegalArgumentException("Pravokutnik slike (--roi) nije zadan.");
+			}
+			if(options.keyboard == null) {
+				throw new IllegalArgumentException("Nije dostupna nijedna klavijatura (" + Constants.PATH_TO_KEYBOARDS + ").");
+			}
+			if(options.videos.isEmpty()) {
+				throw new IllegalArgumentException("Nije zadan nijedan videozapis.");
+			}
+			if(options.stream && options.extension.equals(Constants.MIDI_EXTENSION)) {
+				throw new IllegalArgumentException("Opcija --stream zapisuje samo MusicXML dokumente.");
+			}
+			if(options.stream && options.resume) {
+				throw new IllegalArgumentException("Opcije --stream i --resume ne mogu se koristiti zajedno.");
+			}
+
+			return options;
+		}
+
+		/**
+		 * Dodaje dani videozapis ili sve videozapise danog direktorija.
+		 *
+		 * @param path putanja do videozapisa ili direktorija
+		 * @throws IllegalArgumentException ako putanja ne postoji ili se direktorij ne može pročitati
+		 */
+		private void addVideos(Path path) {
+			if(!Files.exists(path)) {
+				throw new IllegalArgumentException("Putanja ne postoji: " + path);
+			}
+			if(!Files.isDirectory(path)) {
+				videos.add(path);
+				return;
+			}
+
+			try(Stream<Path> files = Files.list(path)) {
+				files.filter(Files::isRegularFile)
+					.filter(f -> VIDEO_EXTENSIONS.stream().anyMatch(e -> f.getFileName().toString().toLowerCase().endsWith(e)))
+					.sorted()
+					.forEach(videos::add);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Direktorij se ne može pročitati: " + path);
+			}
 		}
 	}
-	*/
 }
@@ -0,0 +1,210 @@
+package hr.fer.zavrsni.converter.cache;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Priručna memorija na disku koja sprema sadržaj pod ključem, svaki u svoju datoteku u zajedničkom direktoriju.
+ * <p>
+ * Ključevi i veličine spremljenih datoteka čuvaju se u memoriji poredani od najdavnije korištene, pa provjera
+ * postoji li ključ ne pristupa disku. Kada ukupna veličina datoteka prijeđe najveću dozvoljenu, brišu se
+ * najdavnije korištene datoteke. Vrijeme zadnje promjene datoteke osvježava se pri svakom korištenju,
+ * pa se redoslijed korištenja čuva i nakon ponovnog pokretanja.
+ *
+ * @author Ana Bagić
+ *
+ */
+abstract class DiskCache {
+
+	/** Direktorij priručne memorije. */
+	private Path directory;
+	/** Nastavak spremljenih datoteka. */
+	private String extension;
+	/** Najveća ukupna veličina spremljenih datoteka u bajtovima. */
+	private long maxBytes;
+	/** Veličine spremljenih datoteka po ključu, poredane od najdavnije korištene. */
+	private LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+	/** Ukupna veličina spremljenih datoteka u bajtovima. */
+	private long totalBytes;
+
+	/**
+	 * Stvara priručnu memoriju u danom direktoriju i čita postojeće datoteke s danim nastavkom u indeks.
+	 *
+	 * @param directory direktorij priručne memorije, stvara se ako ne postoji
+	 * @param extension nastavak spremljenih datoteka
+	 * @param maxBytes najveća ukupna veličina spremljenih datoteka u bajtovima
+	 * @throws IOException ako se direktorij ne može stvoriti ili pročitati
+	 */
+	DiskCache(Path directory, String extension, long maxBytes) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.extension = extension;
+		this.maxBytes = maxBytes;
+
+		List<Path> files;
+		try(Stream<Path> list = Files.list(directory)) {
+			files = list.filter(f -> f.getFileName().toString().endsWith(extension)).collect(Collectors.toList());
+		}
+
+		files.sort(Comparator.comparing(f -> f.toFile().lastModified()));
+		for(Path f : files) {
+			long size = Files.size(f);
+			String name = f.getFileName().toString();
+			index.put(name.substring(0, name.length() - extension.length()), size);
+			totalBytes += size;
+		}
+		evict();
+	}
+
+	/**
+	 * Provjerava postoji li sadržaj pod danim ključem, bez pristupa disku.
+	 *
+	 * @param key ključ
+	 * @return <code>true</code> ako sadržaj postoji, inače <code>false</code>
+	 */
+	public synchronized boolean contains(String key) {
+		return index.containsKey(key);
+	}
+
+	/**
+	 * Vraća sadržaj spremljen pod danim ključem i označava ga kao zadnje korišten.
+	 *
+	 * @param key ključ
+	 * @return sadržaj datoteke ili <code>null</code> ako sadržaj nije spremljen
+	 * @throws IOException ako se datoteka ne može pročitati
+	 */
+	public byte[] get(String key) throws IOException {
+		Path file = lookup(key);
+		if(file == null) return null;
+
+		try {
+			return Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			remove(key);
+			return null;
+		}
+	}
+
+	/**
+	 * Vraća putanju do datoteke spremljene pod danim ključem i označava ju kao zadnje korištenu.
+	 *
+	 * @param key ključ
+	 * @return putanja do datoteke ili <code>null</code> ako sadržaj nije spremljen
+	 * @throws IOException ako se vrijeme zadnje promjene datoteke ne može osvježiti
+	 */
+	Path lookup(String key) throws IOException {
+		synchronized(this) {
+			if(index.get(key) == null) return null;
+		}
+
+		Path file = fileOf(key);
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return file;
+		} catch (NoSuchFileException e) {
+			remove(key);
+			return null;
+		}
+	}
+
+	/**
+	 * Uklanja ključ iz indeksa nakon što je njegova datoteka obrisana izvana.
+	 *
+	 * @param key ključ
+	 */
+	private synchronized void remove(String key) {
+		Long size = index.remove(key);
+		if(size != null) totalBytes -= size;
+	}
+
+	/**
+	 * Sprema sadržaj pod danim ključem i briše najdavnije korištene datoteke ako je prijeđena najveća veličina.
+	 *
+	 * @param key ključ
+	 * @param content sadržaj
+	 * @throws IOException ako se datoteka ne može zapisati
+	 */
+	public void put(String key, byte[] content) throws IOException {
+		if(content.length > maxBytes) return;
+
+		Path temp = newTempFile(key);
+		Files.write(temp, content);
+		putFile(key, temp);
+	}
+
+	/**
+	 * Stvara privremenu datoteku u direktoriju priručne memorije, u koju se zapisuje sadržaj prije spremanja metodom
+	 * {@link #putFile(String, Path)}.
+	 *
+	 * @param key ključ pod kojim će se sadržaj spremiti
+	 * @return putanja do privremene datoteke
+	 * @throws IOException ako se datoteka ne može stvoriti
+	 */
+	Path newTempFile(String key) throws IOException {
+		return Files.createTempFile(directory, key, ".tmp");
+	}
+
+	/**
+	 * Atomarno premješta zapisanu privremenu datoteku pod dani ključ i briše najdavnije korištene datoteke
+	 * ako je prijeđena najveća veličina. Datoteka veća od najveće dozvoljene veličine se briše.
+	 *
+	 * @param key ključ
+	 * @param temp privremena datoteka stvorena metodom {@link #newTempFile(String)}
+	 * @throws IOException ako se datoteka ne može premjestiti
+	 */
+	void putFile(String key, Path temp) throws IOException {
+		long size = Files.size(temp);
+		if(size > maxBytes) {
+			Files.delete(temp);
+			return;
+		}
+
+		try {
+			Files.move(temp, fileOf(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, fileOf(key), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		synchronized(this) {
+			Long old = index.put(key, size);
+			totalBytes += size - (old == null ? 0 : old);
+			evict();
+		}
+	}
+
+	/**
+	 * Briše najdavnije korištene datoteke dok ukupna veličina ne bude unutar najveće dozvoljene.
+	 *
+	 * @throws IOException ako se datoteka ne može obrisati
+	 */
+	private synchronized void evict() throws IOException {
+		Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+		while(totalBytes > maxBytes && it.hasNext()) {
+			Map.Entry<String, Long> eldest = it.next();
+			it.remove();
+			totalBytes -= eldest.getValue();
+			Files.deleteIfExists(fileOf(eldest.getKey()));
+		}
+	}
+
+	/**
+	 * Vraća putanju do datoteke s danim ključem.
+	 *
+	 * @param key ključ
+	 * @return putanja do datoteke
+	 */
+	private Path fileOf(String key) {
+		return directory.resolve(key + extension);
+	}
+}
@@ -0,0 +1,99 @@
+package hr.fer.zavrsni.converter.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.opencv.core.Point;
+
+import hr.fer.zavrsni.converter.converting.Converter;
+import hr.fer.zavrsni.converter.keyboard.Keyboard;
+import hr.fer.zavrsni.converter.model.song.NoteEvents;
+import hr.fer.zavrsni.converter.model.song.NoteLog;
+import hr.fer.zavrsni.converter.model.song.NoteLogWriter;
+import hr.fer.zavrsni.converter.util.Constants;
+
+/**
+ * Priručna memorija nota prepoznatih u videozapisu, prije određivanja tonaliteta, tempa i taktova.
+ * Note se spremaju pod ključem koji je sažetak sadržaja videozapisa i parametara prepoznavanja nota, pa se
+ * promjenom tempa, mjere ili metapodataka pjesma ponovno generira iz spremljenih nota, bez obrade videozapisa.
+ * Note se spremaju u binarnom formatu {@link NoteLog} i čitaju mapiranjem datoteke u memoriju.
+ * Kada ukupna veličina spremljenih nota prijeđe najveću dozvoljenu, brišu se najdavnije korištene.
+ *
+ * @author Ana Bagić
+ *
+ */
+public class NoteCache extends DiskCache {
+
+	/** Nastavak datoteka spremljenih nota. */
+	private static final String EXTENSION = ".notes";
+
+	/**
+	 * Stvara priručnu memoriju u danom direktoriju i čita postojeće note u indeks.
+	 *
+	 * @param directory direktorij priručne memorije, stvara se ako ne postoji
+	 * @param maxBytes najveća ukupna veličina spremljenih nota u bajtovima
+	 * @throws IOException ako se direktorij ne može stvoriti ili pročitati
+	 */
+	public NoteCache(Path directory, long maxBytes) throws IOException {
+		super(directory, EXTENSION, maxBytes);
+	}
+
+	/**
+	 * Vraća ključ nota za dani videozapis i parametre prepoznavanja nota: sažetak sadržaja videozapisa, pravokutnika slike,
+	 * klavijature i njene širine, načina prepoznavanja nota, obrade trake, koraka obrade i inačice postupka.
+	 *
+	 * @param converter obrada videozapisa s postavljenom klavijaturom i putanjom do videozapisa
+	 * @param tl gornja lijeva točka pravokutnika slike
+	 * @param br donja desna točka pravokutnika slike
+	 * @return ključ nota
+	 * @throws IOException ako se videozapis ne može pročitati
+	 */
+	public static String keyOf(Converter converter, Point tl, Point br) throws IOException {
+		Keyboard keyboard = converter.getPitchConverter().getKeyboard();
+
+		String parameters = VideoDigest.of(Path.of(converter.getPathToVideo()))
+				+ "|" + tl + "|" + br + "|" + keyboard.getRange() + "|" + keyboard.getKeyboardWidth()
+				+ "|" + converter.getDetectionMode() + "|" + converter.isBandMode() + "|" + converter.getMaxFallPerFrame() + "|" + converter.getStride()
+				+ "|" + Constants.PIPELINE_VERSION;
+		return VideoDigest.ofText(parameters);
+	}
+
+	/**
+	 * Otvara note spremljene pod danim ključem i označava ih kao zadnje korištene.
+	 *
+	 * @param key ključ nota
+	 * @return spremljene note ili <code>null</code> ako note nisu spremljene
+	 * @throws IOException ako se spremljene note ne mogu pročitati
+	 */
+	public NoteLog open(String key) throws IOException {
+		Path file = lookup(key);
+		return file == null ? null : NoteLog.open(file);
+	}
+
+	/**
+	 * Sprema note pod danim ključem, zajedno s podatcima o videozapisu iz kojeg su prepoznate. Note se prije zapisivanja
+	 * sortiraju, pa se spremljene note mogu pretraživati po vremenu binarnim pretraživanjem.
+	 *
+	 * @param key ključ nota
+	 * @param events note
+	 * @param fps točan broj slika po sekundi videozapisa
+	 * @param firstFrame prva slika u kojoj se pojavila nota
+	 * @param frameCount broj slika videozapisa
+	 * @param twoHands sviraju li se note s dvije ruke
+	 * @throws IOException ako se note ne mogu zapisati
+	 */
+	public void put(String key, NoteEvents events, double fps, int firstFrame, int frameCount, boolean twoHands) throws IOException {
+		Path temp = newTempFile(key);
+		try {
+			events.sort();
+			try(NoteLogWriter writer = NoteLogWriter.create(temp, fps, firstFrame, frameCount, twoHands, true)) {
+				writer.append(events, 0, events.size());
+			}
+			putFile(key, temp);
+		} catch (IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package hr.fer.zavrsni.converter.cache;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import org.opencv.core.Rect;
+
+import hr.fer.zavrsni.converter.converting.Converter;
+import hr.fer.zavrsni.converter.model.song.Song;
+import hr.fer.zavrsni.converter.util.XMLUtil;
+
+/**
+ * Priručna memorija generiranih MusicXML dokumenata na disku. Dokument se sprema pod ključem koji je sažetak sadržaja
+ * videozapisa, svih parametara obrade koji utječu na dokument i inačice postupka generiranja, pa se isti videozapis
+ * s istim parametrima ne obrađuje ponovno.
+ * Kada ukupna veličina dokumenata prijeđe najveću dozvoljenu, brišu se najdavnije korišteni dokumenti.
+ *
+ * @author Ana Bagić
+ *
+ */
+public class ResultCache extends DiskCache {
+
+	/** Nastavak datoteka spremljenih dokumenata. */
+	private static final String EXTENSION = ".musicxml";
+
+	/**
+	 * Stvara priručnu memoriju u danom direktoriju i čita postojeće dokumente u indeks.
+	 *
+	 * @param directory direktorij priručne memorije, stvara se ako ne postoji
+	 * @param maxBytes najveća ukupna veličina spremljenih dokumenata u bajtovima
+	 * @throws IOException ako se direktorij ne može stvoriti ili pročitati
+	 */
+	public ResultCache(Path directory, long maxBytes) throws IOException {
+		super(directory, EXTENSION, maxBytes);
+	}
+
+	/**
+	 * Kopira dokument spremljen pod danim ključem u datoteku na danoj putanji i označava ga kao zadnje korišten.
+	 * Ako datoteka ima nastavak {@value hr.fer.zavrsni.converter.util.Constants#MXL_EXTENSION}, dokument se zapisuje
+	 * kao komprimirani MusicXML.
+	 *
+	 * @param key ključ dokumenta
+	 * @param out putanja do datoteke u koju se zapisuje dokument
+	 * @return <code>true</code> ako je dokument kopiran, <code>false</code> ako nije spremljen
+	 * @throws IOException ako se dokument ne može pročitati ili zapisati
+	 */
+	public boolean copy(String key, Path out) throws IOException {
+		Path file = lookup(key);
+		if(file == null) return false;
+
+		try {
+			XMLUtil.copy(file, out);
+			return true;
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Generira MusicXML dokument pjesme izravno u datoteku priručne memorije i sprema ga pod danim ključem,
+	 * bez stvaranja cijelog dokumenta u memoriji. Ako je zadana putanja izlaza, dokument se prije spremanja kopira
+	 * i u datoteku na toj putanji (vidi {@link XMLUtil#copy(Path, Path)}).
+	 *
+	 * @param key ključ dokumenta
+	 * @param song pjesma iz koje se generira dokument
+	 * @param out putanja do datoteke u koju se kopira dokument ili <code>null</code>
+	 * @throws IOException ako se dokument ne može zapisati
+	 */
+	public void put(String key, Song song, Path out) throws IOException {
+		Path temp = newTempFile(key);
+		try {
+			try(Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+				XMLUtil.generate(song, writer);
+			}
+			if(out != null) {
+				XMLUtil.copy(temp, out);
+			}
+			putFile(key, temp);
+		} catch (IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+	}
+
+	/**
+	 * Vraća ključ dokumenta za dani videozapis i parametre obrade: ključ nota videozapisa (vidi {@link NoteCache#keyOf(Converter, org.opencv.core.Point, org.opencv.core.Point)}),
+	 * metapodatke, pretpostavljeni tempo i mjeru pjesme.
+	 *
+	 * @param converter obrada videozapisa pripremljena za {@link Converter#extractNotes(org.opencv.core.Point, org.opencv.core.Point)}
+	 * @param area pravokutnik slike u kojem padaju note
+	 * @return ključ dokumenta
+	 * @throws IOException ako se videozapis ne može pročitati
+	 */
+	public static String keyOf(Converter converter, Rect area) throws IOException {
+		Song song = converter.getSong();
+
+		String parameters = NoteCache.keyOf(converter, area.tl(), area.br())
+				+ "|" + song.getMetadata().getSongName() + "|" + song.getMetadata().getArtistName()
+				+ "|" + song.getBeatsPerMinute() + "|" + song.getTimeSignature();
+		return VideoDigest.ofText(parameters);
+	}
+}
@@ -0,0 +1,104 @@
+package hr.fer.zavrsni.converter.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pomoćni razred za računanje sažetka sadržaja videozapisa (SHA-256), kojim se videozapis prepoznaje neovisno o putanji.
+ * Sažetak se pamti po putanji, veličini i vremenu zadnje promjene datoteke, pa se isti videozapis ne čita ponovno
+ * dok se datoteka ne promijeni.
+ *
+ * @author Ana Bagić
+ *
+ */
+public class VideoDigest {
+
+	/** Veličina međuspremnika za čitanje videozapisa u bajtovima. */
+	private static final int BUFFER_SIZE = 1 << 20;
+	/** Izračunati sažetci po putanji, veličini i vremenu zadnje promjene datoteke. */
+	private static final Map<String, String> digests = new ConcurrentHashMap<>();
+
+	/**
+	 * Vraća sažetak sadržaja danog videozapisa kao heksadekadski zapis.
+	 *
+	 * @param video putanja do videozapisa
+	 * @return sažetak sadržaja videozapisa
+	 * @throws IOException ako se videozapis ne može pročitati
+	 */
+	public static String of(Path video) throws IOException {
+		Path absolute = video.toAbsolutePath();
+		String id = absolute + "|" + Files.size(absolute) + "|" + Files.getLastModifiedTime(absolute).toMillis();
+
+		String digest = digests.get(id);
+		if(digest == null) {
+			digest = compute(absolute);
+			digests.put(id, digest);
+		}
+		return digest;
+	}
+
+	/**
+	 * Računa sažetak sadržaja dane datoteke.
+	 *
+	 * @param file putanja do datoteke
+	 * @return sažetak sadržaja datoteke kao heksadekadski zapis
+	 * @throws IOException ako se datoteka ne može pročitati
+	 */
+	private static String compute(Path file) throws IOException {
+		MessageDigest sha = sha256();
+		byte[] buffer = new byte[BUFFER_SIZE];
+
+		try(InputStream in = Files.newInputStream(file)) {
+			int read;
+			while((read = in.read(buffer)) != -1) {
+				sha.update(buffer, 0, read);
+			}
+		}
+
+		return hex(sha.digest());
+	}
+
+	/**
+	 * Vraća sažetak danog teksta kao heksadekadski zapis.
+	 *
+	 * @param text tekst
+	 * @return sažetak teksta
+	 */
+	public static String ofText(String text) {
+		return hex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Stvara novi objekt za računanje sažetka SHA-256.
+	 *
+	 * @return objekt za računanje sažetka
+	 */
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Algoritam SHA-256 nije dostupan.", e);
+		}
+	}
+
+	/**
+	 * Vraća heksadekadski zapis danih bajtova.
+	 *
+	 * @param bytes bajtovi
+	 * @return heksadekadski zapis
+	 */
+	private static String hex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(2 * bytes.length);
+		for(byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+}
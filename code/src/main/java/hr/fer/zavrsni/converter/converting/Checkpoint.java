@@ -0,0 +1,319 @@
+package hr.fer.zavrsni.converter.converting;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import hr.fer.zavrsni.converter.cache.VideoDigest;
+import hr.fer.zavrsni.converter.model.song.NoteEvents;
+import hr.fer.zavrsni.converter.model.song.NoteLog;
+import hr.fer.zavrsni.converter.model.song.NoteLogWriter;
+import hr.fer.zavrsni.converter.util.Constants;
+
+/**
+ * Razred zapisuje kontrolne točke obrade videozapisa i iz njih nastavlja prekinutu obradu.
+ * Kontrolna točka sastoji se od dvije datoteke. Datoteka stanja svaki se put zapisuje iznova i atomarno zamjenjuje,
+ * a sadrži broj zadnje obrađene slike, broj valjanih zapisa u datoteci nota, stanje pratitelja nota i klasifikatora ruku
+ * te opis videozapisa i parametara obrade. U datoteku nota samo se dodaju note završene od prethodne kontrolne točke,
+ * u binarnom formatu {@link NoteLog}, pa je zapisivanje kontrolne točke jeftino i kod dugih videozapisa.
+ * Obrada se nastavlja samo ako se opis videozapisa i parametara podudara.
+ * <p>
+ * Datoteke kontrolne točke imenuju se po sažetku opisa videozapisa i parametara obrade i zapisuju u zajednički direktorij,
+ * pa obrade istog videozapisa s različitim parametrima ne dijele kontrolnu točku. Dok obrada zapisuje kontrolnu točku,
+ * drži isključivo zaključavanje njene datoteke zaključavanja, a istovremena obrada s istim opisom radi bez kontrolnih točaka.
+ *
+ * @author Ana Bagić
+ *
+ */
+class Checkpoint {
+
+	/** Inačica zapisa datoteke stanja. */
+	private static final int VERSION = 5;
+
+	/** Datoteka stanja. */
+	private Path stateFile;
+	/** Datoteka završenih nota. */
+	private Path notesFile;
+	/** Datoteka zaključavanja kontrolne točke. */
+	private Path lockFile;
+	/** Opis videozapisa i parametara obrade. */
+	private String fingerprint;
+	/** Svaka koliko slika se zapisuje kontrolna točka. */
+	private int interval;
+	/** Pratitelj nota čije se stanje zapisuje. */
+	private NoteTracker tracker;
+	/** Klasifikator ruku čije se stanje zapisuje. */
+	private HandClassifier hands;
+	/** Završene note obrade. */
+	private NoteEvents events;
+
+	/** Kanal datoteke zaključavanja. */
+	private FileChannel lockChannel;
+	/** Zaključavanje kontrolne točke koje drži ova obrada. */
+	private FileLock lock;
+	/** Pisač datoteke završenih nota. */
+	private NoteLogWriter notes;
+	/** Broj nota zapisanih u datoteku nota. */
+	private int logged;
+	/** Slika zadnje zapisane kontrolne točke. */
+	private int checkpointFrame;
+	/** Je li zapisivanje kontrolnih točaka isključeno nakon pogreške. */
+	private boolean failed;
+
+	/**
+	 * Stvara kontrolne točke obrade videozapisa.
+	 *
+	 * Datoteka stanja ima ime po sažetku opisa obrade i nastavak {@value Constants#CHECKPOINT_EXTENSION}, a datoteka nota
+	 * i datoteka zaključavanja istu putanju s dodanim nastavkom {@value Constants#CHECKPOINT_NOTES_EXTENSION},
+	 * odnosno {@value Constants#CHECKPOINT_LOCK_EXTENSION}.
+	 *
+	 * @param directory direktorij kontrolnih točaka, stvara se ako ne postoji
+	 * @param fingerprint opis videozapisa i parametara obrade
+	 * @param interval svaka koliko slika se zapisuje kontrolna točka
+	 * @param tracker pratitelj nota čije se stanje zapisuje
+	 * @param hands klasifikator ruku čije se stanje zapisuje
+	 * @param events završene note obrade
+	 */
+	Checkpoint(Path directory, String fingerprint, int interval, NoteTracker tracker, HandClassifier hands, NoteEvents events) {
+		this.stateFile = directory.resolve(VideoDigest.ofText(fingerprint) + Constants.CHECKPOINT_EXTENSION);
+		this.notesFile = Path.of(stateFile + Constants.CHECKPOINT_NOTES_EXTENSION);
+		this.lockFile = Path.of(stateFile + Constants.CHECKPOINT_LOCK_EXTENSION);
+		this.fingerprint = fingerprint;
+		this.interval = interval;
+		this.tracker = tracker;
+		this.hands = hands;
+		this.events = events;
+	}
+
+	/**
+	 * Započinje zapisivanje kontrolnih točaka. Ako se obrada nastavlja i postoji kontrolna točka istog videozapisa i parametara,
+	 * postavlja stanje pratitelja nota i klasifikatora ruku i dodaje završene note iz kontrolne točke. Inače briše staru kontrolnu točku.
+	 * Ako kontrolnu točku s istim opisom već zapisuje druga obrada, obrada se nastavlja bez kontrolnih točaka.
+	 *
+	 * @param resume nastavlja li se prekinuta obrada
+	 * @return broj zadnje obrađene slike iz kontrolne točke ili -1 ako se obrada ne nastavlja
+	 */
+	int start(boolean resume) {
+		try {
+			Files.createDirectories(stateFile.getParent());
+			if(!lock()) {
+				failed = true;
+				System.err.println("Kontrolnu točku " + stateFile + " zapisuje druga obrada, obrada se nastavlja bez kontrolnih točaka.");
+				return -1;
+			}
+		} catch (IOException e) {
+			fail(e);
+			return -1;
+		}
+
+		int frame = resume ? restore() : -1;
+
+		try {
+			if(frame == -1) {
+				Files.deleteIfExists(stateFile);
+				notes = NoteLogWriter.create(notesFile, 0, -1, 0, false, false);
+			} else {
+				notes = NoteLogWriter.append(notesFile, logged);
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+
+		checkpointFrame = Math.max(frame, 0);
+		return frame;
+	}
+
+	/**
+	 * Isključivo zaključava kontrolnu točku za ovu obradu.
+	 *
+	 * @return <code>true</code> ako je kontrolna točka zaključana, <code>false</code> ako ju je zaključala druga obrada
+	 * @throws IOException ako se datoteka zaključavanja ne može otvoriti
+	 */
+	private boolean lock() throws IOException {
+		lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			lock = lockChannel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			lock = null;
+		}
+
+		if(lock == null) {
+			lockChannel.close();
+			lockChannel = null;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Čita kontrolnu točku ako postoji i odgovara videozapisu i parametrima obrade. Ako je kontrolna točka oštećena,
+	 * ispisuje pogrešku, vraća pratitelj nota i klasifikator ruku u početno stanje i obrada počinje od početka.
+	 *
+	 * @return broj zadnje obrađene slike iz kontrolne točke ili -1 ako odgovarajuća kontrolna točka ne postoji
+	 */
+	private int restore() {
+		if(!Files.isRegularFile(stateFile) || !Files.isRegularFile(notesFile)) return -1;
+
+		byte[] initial = writeState();
+		try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(stateFile)))) {
+			if(in.readInt() != VERSION || !in.readUTF().equals(fingerprint)) return -1;
+
+			int frame = in.readInt();
+			int count = in.readInt();
+			NoteLog records = NoteLog.open(notesFile);
+			if(records.size() < count) {
+				throw new IOException("Datoteka nota kontrolne točke " + notesFile + " je prekratka.");
+			}
+
+			tracker.readState(in);
+			hands.readState(in);
+			records.addTo(events, count);
+			logged = count;
+
+			return frame;
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Kontrolna točka " + stateFile + " se ne može pročitati, obrada počinje od početka: " + e);
+			readState(initial);
+			return -1;
+		}
+	}
+
+	/**
+	 * Zapisuje stanje pratitelja nota i klasifikatora ruku.
+	 *
+	 * @return zapisano stanje
+	 */
+	private byte[] writeState() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(DataOutputStream out = new DataOutputStream(bytes)) {
+			tracker.writeState(out);
+			hands.writeState(out);
+		} catch (IOException e) {
+			throw new IllegalStateException("Stanje obrade se ne može zapisati.", e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Postavlja stanje pratitelja nota i klasifikatora ruku zapisano metodom {@link #writeState()}.
+	 *
+	 * @param state zapisano stanje
+	 */
+	private void readState(byte[] state) {
+		try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+			tracker.readState(in);
+			hands.readState(in);
+		} catch (IOException e) {
+			throw new IllegalStateException("Stanje obrade se ne može pročitati.", e);
+		}
+	}
+
+	/**
+	 * Zapisuje kontrolnu točku ako je od prethodne obrađeno dovoljno slika.
+	 *
+	 * @param frame broj zadnje obrađene slike
+	 */
+	void frameProcessed(int frame) {
+		if(failed || frame - checkpointFrame < interval) return;
+
+		try {
+			save(frame);
+			checkpointFrame = frame;
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Dodaje nove završene note u datoteku nota, a zatim zapisuje i zamjenjuje datoteku stanja.
+	 *
+	 * @param frame broj zadnje obrađene slike
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	private void save(int frame) throws IOException {
+		notes.append(events, logged, events.size());
+		notes.flush();
+		logged = events.size();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(VERSION);
+			out.writeUTF(fingerprint);
+			out.writeInt(frame);
+			out.writeInt(logged);
+			tracker.writeState(out);
+			hands.writeState(out);
+		}
+
+		Path temp = Path.of(stateFile + ".tmp");
+		Files.write(temp, bytes.toByteArray());
+		try {
+			Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Isključuje zapisivanje kontrolnih točaka nakon pogreške. Obrada se nastavlja bez kontrolnih točaka.
+	 *
+	 * @param e pogreška pri zapisivanju
+	 */
+	private void fail(IOException e) {
+		failed = true;
+		System.err.println("Kontrolna točka " + stateFile + " se ne može zapisati: " + e);
+	}
+
+	/**
+	 * Zatvara datoteku nota i otključava kontrolnu točku, a zapisane kontrolne točke ostavlja za nastavak obrade.
+	 */
+	void close() {
+		try {
+			if(notes != null) notes.close();
+		} catch (IOException e) {
+			fail(e);
+		}
+		unlock();
+	}
+
+	/**
+	 * Zatvara i briše datoteke kontrolne točke nakon uspješno završene obrade. Datoteke se brišu samo ako ih je
+	 * ova obrada zaključala, pa se ne brišu kontrolne točke druge obrade.
+	 */
+	void delete() {
+		try {
+			if(notes != null) notes.close();
+			if(lock != null) {
+				Files.deleteIfExists(stateFile);
+				Files.deleteIfExists(notesFile);
+				Files.deleteIfExists(lockFile);
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+		unlock();
+	}
+
+	/**
+	 * Otpušta zaključavanje kontrolne točke ako ga ova obrada drži.
+	 */
+	private void unlock() {
+		try {
+			if(lockChannel != null) lockChannel.close();
+		} catch (IOException e) {
+			fail(e);
+		}
+		lock = null;
+		lockChannel = null;
+	}
+}
@@ -1,11 +1,18 @@
 package hr.fer.zavrsni.converter.converting;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
 
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
@@ -13,69 +20,65 @@ import org.opencv.core.Rect;
 import org.opencv.videoio.VideoCapture;
 import org.opencv.videoio.Videoio;
 
+import hr.fer.zavrsni.converter.cache.NoteCache;
+import hr.fer.zavrsni.converter.keyboard.Keyboard;
 import hr.fer.zavrsni.converter.model.note.Note;
-import hr.fer.zavrsni.converter.model.note.Pitch;
+import hr.fer.zavrsni.converter.model.song.NoteLog;
 import hr.fer.zavrsni.converter.model.song.Song;
 import hr.fer.zavrsni.converter.model.song.SongMetadata;
 import hr.fer.zavrsni.converter.util.Constants;
-import hr.fer.zavrsni.converter.util.ConverterUtil;
+import hr.fer.zavrsni.converter.util.FrameContext;
+import hr.fer.zavrsni.converter.util.MatAccounting;
 
 /**
  * Glavni razred za obradu videozapisa te generiranje notnog zapisa iz njega.
+ * Jedan objekt ovog razreda predstavlja obradu jednog videozapisa i sadrži sve njeno stanje, uključujući pjesmu
+ * i prepoznavanje tonova, pa se u istom procesu može istovremeno obrađivati više videozapisa.
  * 
  * @author Ana Bagić
  *
  */
 public class Converter {
 	
-	/** Jedinstveni objekt ovog razreda. */
-	private static Converter converter = new Converter();
-
 	/** Putanja do videozapisa. */
 	private String pathToVideo;
 	/** Pjesma koja se gradi iz videozapisa.  */
 	private Song song = new Song();
+	/** Prepoznavanje tona note za klavijaturu videozapisa. */
+	private PitchConverter pitchConverter = new PitchConverter();
 	
-	/** Originalna slika videozapisa. */
-	private Mat originalFrame = new Mat();
-	/** Procesirana slika videozapisa. */
-	private Mat processedFrame = new Mat();
-	
-	/** Kolekcija svih trenutno promatranih nota i njihovi tonovi. */
-	private Map<Pitch, Note> currentNotes = new HashMap<>();
-	/** Broj slika koliko promatrana nota još može postojati, a da nije prepoznata na slici. */
-	private Map<Pitch, Integer> currentNotesExistence = new HashMap<>();
-	
-	/** Brojač trenutne slike koja se obrađuje.  */
-	private int frameCounter = 1;
 	/** Prva slika u kojoj se pojavila nota. */
 	private int firstFrame = -1;
 	/** Broj slika po sekundi koje video ima. */
 	private int fps;
-	
-	/** Boja nota sviranih desnom rukom. */
-	private double firstHue = -1;
-	/** Boja nota sviranih lijevom rukom. */
-	private double secondHue = -1;
-	/** Mapa kojom se određuje s kojom rukom se svira koja boja note. */
-	private Map<Boolean, List<Double>> hands = new HashMap<>();
-	
-	/**
-	 * Stvara novi konverter i puni mapu kojom se određuje s kojom rukom se svira koja boja note početnim vrijednostima.
-	 */
-	private Converter() {
-		hands.put(true, new LinkedList<>());
-		hands.put(false, new LinkedList<>());
-	}
-	
-	/**
-	 * Vraća instancu {@link Converter}-a (jedinstveni objekt).
-	 * 
-	 * @return instancu {@link Converter}-a
-	 */
-	public static Converter getInstance() {
-		return converter;
-	}
+	/** Točan broj slika po sekundi koje video ima, koji ne mora biti cijeli broj. */
+	private double exactFps;
+	/** Broj slika zadnjeg obrađenog videozapisa. */
+	private int frameCount;
+	/** Jesu li note zadnjeg videozapisa pročitane iz priručne memorije nota. */
+	private boolean fromNoteCache;
+	/** Broj segmenata na koje se videozapis dijeli pri paralelnoj obradi. */
+	private int segments = 1;
+	/** Broj dretvi za prepoznavanje nota u protočnoj obradi, 0 ako se protočna obrada ne koristi. */
+	private int pipelineWorkers = 0;
+	/** Obrađuje li se samo traka oko kontrolne linije. */
+	private boolean bandMode = false;
+	/** Najveći broj piksela za koji se nota pomakne između dvije uzastopne slike, dok se brzina padanja ne procijeni. */
+	private int maxFallPerFrame = Constants.MAX_FALL_PER_FRAME;
+	/** Način prepoznavanja nota na slici. */
+	private DetectionMode detectionMode = DetectionMode.CONTOURS;
+	/** Svaka koliko slika videozapisa se obrađuje, 0 ako se korak određuje automatski. */
+	private int stride = 1;
+	/** Svaka koliko slika se zapisuje kontrolna točka obrade, 0 ako se ne zapisuje. */
+	private int checkpointInterval = Constants.CHECKPOINT_INTERVAL;
+	/** Direktorij kontrolnih točaka obrade. */
+	private Path checkpointDirectory = Path.of(Constants.CHECKPOINT_DIRECTORY);
+	/** Nastavlja li se obrada iz kontrolne točke. */
+	private boolean resume = false;
+	/** Priručna memorija prepoznatih nota, <code>null</code> ako se ne koristi. */
+	private NoteCache noteCache;
+	/** Praćenje nativne memorije slika ove obrade. */
+	private MatAccounting matAccounting = new MatAccounting();
 	
 	/**
 	 * Vraća putanju na disku do videozapisa iz kojega se generira notni zapis.
@@ -113,6 +116,15 @@ public class Converter {
 		return song;
 	}
 	
+	/**
+	 * Vraća prepoznavanje tona note kojemu se postavljaju klavijatura i njena širina.
+	 * 
+	 * @return prepoznavanje tona note
+	 */
+	public PitchConverter getPitchConverter() {
+		return pitchConverter;
+	}
+	
 	/**
 	 * Vraća redni broj slike u kojoj se prvi put pojavila nota.
 	 * 
@@ -131,119 +143,627 @@ public class Converter {
 		return fps;
 	}
 	
+	/**
+	 * Vraća točan broj slika po sekundi videozapisa, koji ne mora biti cijeli broj (npr. 29,97).
+	 * 
+	 * @return točan broj slika po sekundi videozapisa
+	 */
+	public double getExactFramesPerSecond() {
+		return exactFps;
+	}
+	
+	/**
+	 * Vraća broj slika zadnjeg obrađenog videozapisa.
+	 * 
+	 * @return broj slika zadnjeg obrađenog videozapisa
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+	
+	/**
+	 * Vraća jesu li note zadnjeg videozapisa pročitane iz priručne memorije nota, bez obrade videozapisa.
+	 * 
+	 * @return <code>true</code> ako su note pročitane iz priručne memorije nota, inače <code>false</code>
+	 */
+	public boolean isFromNoteCache() {
+		return fromNoteCache;
+	}
+	
+	/**
+	 * Vraća broj segmenata na koje se videozapis dijeli pri paralelnoj obradi.
+	 * 
+	 * @return broj segmenata videozapisa
+	 */
+	public int getSegments() {
+		return segments;
+	}
+	
+	/**
+	 * Postavlja broj segmenata na koje se videozapis dijeli pri paralelnoj obradi.
+	 * Svaki segment obrađuje zasebna dretva sa zasebnim {@link VideoCapture} objektom.
+	 * Ako je broj segmenata 1, videozapis se obrađuje slijedno.
+	 * 
+	 * @param segments broj segmenata videozapisa
+	 */
+	public void setSegments(int segments) {
+		this.segments = Math.max(1, segments);
+	}
+	
+	/**
+	 * Vraća broj dretvi za prepoznavanje nota u protočnoj obradi.
+	 * 
+	 * @return broj dretvi za prepoznavanje nota ili 0 ako se protočna obrada ne koristi
+	 */
+	public int getPipelineWorkers() {
+		return pipelineWorkers;
+	}
+	
+	/**
+	 * Postavlja broj dretvi za prepoznavanje nota u protočnoj obradi.
+	 * U protočnoj obradi jedna dretva čita slike unaprijed, dane dretve na njima prepoznaju note,
+	 * a praćenje nota se izvodi redoslijedom slika. Ako je broj dretvi 0, slike se obrađuju slijedno.
+	 * Protočna obrada se koristi samo kada se videozapis ne dijeli na segmente.
+	 * 
+	 * @param pipelineWorkers broj dretvi za prepoznavanje nota
+	 */
+	public void setPipelineWorkers(int pipelineWorkers) {
+		this.pipelineWorkers = Math.max(0, pipelineWorkers);
+	}
+	
+	/**
+	 * Vraća obrađuje li se samo traka oko kontrolne linije.
+	 * 
+	 * @return <code>true</code> ako se obrađuje samo traka oko kontrolne linije, inače <code>false</code>
+	 */
+	public boolean isBandMode() {
+		return bandMode;
+	}
+	
+	/**
+	 * Postavlja obrađuje li se samo traka oko kontrolne linije.
+	 * Note se započinju i završavaju samo na temelju dijela slike oko kontrolne linije, pa se zamućivanje,
+	 * računanje V vrijednosti, canny funkcija i traženje kontura izvode nad višestruko manjim brojem piksela.
+	 * 
+	 * @param bandMode treba li obrađivati samo traku oko kontrolne linije
+	 */
+	public void setBandMode(boolean bandMode) {
+		this.bandMode = bandMode;
+	}
+	
+	/**
+	 * Vraća najveći broj piksela za koji se nota pomakne između dvije uzastopne slike, dok se brzina padanja ne procijeni.
+	 * 
+	 * @return najveći pomak note između dvije uzastopne slike
+	 */
+	public int getMaxFallPerFrame() {
+		return maxFallPerFrame;
+	}
+	
+	/**
+	 * Postavlja najveći broj piksela za koji se nota pomakne između dvije uzastopne slike, dok se brzina padanja ne procijeni.
+	 * Pri obradi trake oko kontrolne linije traka se do procjene brzine određuje prema ovom pomaku pomnoženom korakom obrade,
+	 * pa ga za videozapise s brzim padanjem nota treba povećati.
+	 * 
+	 * @param maxFallPerFrame najveći pomak note između dvije uzastopne slike, barem 1
+	 */
+	public void setMaxFallPerFrame(int maxFallPerFrame) {
+		this.maxFallPerFrame = Math.max(1, maxFallPerFrame);
+	}
+	
+	/**
+	 * Vraća način prepoznavanja nota na slici.
+	 * 
+	 * @return način prepoznavanja nota
+	 */
+	public DetectionMode getDetectionMode() {
+		return detectionMode;
+	}
+	
+	/**
+	 * Postavlja način prepoznavanja nota na slici.
+	 * 
+	 * @param detectionMode način prepoznavanja nota
+	 */
+	public void setDetectionMode(DetectionMode detectionMode) {
+		this.detectionMode = detectionMode;
+	}
+	
+	/**
+	 * Vraća svaku koliko slika videozapisa se obrađuje.
+	 * 
+	 * @return korak obrade slika, 0 ako se korak određuje automatski
+	 */
+	public int getStride() {
+		return stride;
+	}
+	
+	/**
+	 * Postavlja svaku koliko slika videozapisa se obrađuje. Preskočene slike se ne obrađuju,
+	 * a početak i kraj note se računaju iz položaja pravokutnika u odnosu na kontrolnu liniju i procijenjene brzine padanja nota.
+	 * Za korak 0 slike se obrađuju redom dok se ne procijeni brzina padanja, a zatim se korak određuje tako da se nota
+	 * minimalne visine ne može preskočiti.
+	 * 
+	 * @param stride korak obrade slika, 0 za automatsko određivanje koraka
+	 */
+	public void setStride(int stride) {
+		this.stride = Math.max(0, stride);
+	}
+	
+	/**
+	 * Vraća svaka koliko slika se zapisuje kontrolna točka obrade.
+	 * 
+	 * @return broj slika između kontrolnih točaka, 0 ako se kontrolne točke ne zapisuju
+	 */
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+	
+	/**
+	 * Postavlja svaka koliko slika se zapisuje kontrolna točka slijedne obrade videozapisa. Kontrolna točka zapisuje se
+	 * u direktorij kontrolnih točaka (vidi {@link #setCheckpointDirectory(Path)}) i briše nakon uspješne obrade.
+	 * 
+	 * @param checkpointInterval broj slika između kontrolnih točaka, 0 ako se kontrolne točke ne zapisuju
+	 */
+	public void setCheckpointInterval(int checkpointInterval) {
+		this.checkpointInterval = Math.max(0, checkpointInterval);
+	}
+	
+	/**
+	 * Vraća direktorij kontrolnih točaka obrade.
+	 * 
+	 * @return direktorij kontrolnih točaka
+	 */
+	public Path getCheckpointDirectory() {
+		return checkpointDirectory;
+	}
+	
+	/**
+	 * Postavlja direktorij kontrolnih točaka obrade. Kontrolne točke imenuju se po sažetku videozapisa i parametara obrade,
+	 * pa više obrada može dijeliti isti direktorij.
+	 * 
+	 * @param checkpointDirectory direktorij kontrolnih točaka, stvara se ako ne postoji
+	 */
+	public void setCheckpointDirectory(Path checkpointDirectory) {
+		this.checkpointDirectory = checkpointDirectory;
+	}
+	
+	/**
+	 * Vraća nastavlja li se obrada iz kontrolne točke.
+	 * 
+	 * @return <code>true</code> ako se obrada nastavlja iz kontrolne točke, inače <code>false</code>
+	 */
+	public boolean isResume() {
+		return resume;
+	}
+	
+	/**
+	 * Postavlja nastavlja li se obrada iz kontrolne točke. Obrada se nastavlja samo ako postoji kontrolna točka
+	 * zapisana za isti videozapis s istim parametrima, a inače počinje od početka.
+	 * 
+	 * @param resume <code>true</code> ako se obrada nastavlja iz kontrolne točke, inače <code>false</code>
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+	
+	/**
+	 * Vraća praćenje nativne memorije slika ove obrade. Praćenje je zasebno za svaku obradu, pa se na kraju obrade
+	 * prijavljuju samo neoslobođene slike te obrade.
+	 * 
+	 * @return praćenje slika ove obrade
+	 */
+	public MatAccounting getMatAccounting() {
+		return matAccounting;
+	}
+	
+	/**
+	 * Vraća priručnu memoriju prepoznatih nota.
+	 * 
+	 * @return priručna memorija prepoznatih nota ili <code>null</code> ako se ne koristi
+	 */
+	public NoteCache getNoteCache() {
+		return noteCache;
+	}
+	
+	/**
+	 * Postavlja priručnu memoriju prepoznatih nota. Ako su note istog videozapisa s istim parametrima prepoznavanja
+	 * već spremljene, {@link #extractNotes(Point, Point)} ih čita iz priručne memorije umjesto da obrađuje videozapis.
+	 * 
+	 * @param noteCache priručna memorija prepoznatih nota ili <code>null</code> ako se ne koristi
+	 */
+	public void setNoteCache(NoteCache noteCache) {
+		this.noteCache = noteCache;
+	}
+	
 	/**
 	 * Metoda obrađuje svaku sliku videozapisa, te iz njih skuplja informacije o notama i pohranjuje ih u instancu razreda {@link Song}.
 	 * Svaka slika se obrezuje na pravokutnik koji određuju poslane točke.
+	 * Pri slijednoj obradi zapisuju se kontrolne točke iz kojih se prekinuta obrada može nastaviti (vidi {@link #setResume(boolean)}).
+	 * Ako je postavljena priručna memorija nota (vidi {@link #setNoteCache(NoteCache)}), note se čitaju iz nje ako su spremljene,
+	 * a inače se u nju spremaju nakon obrade.
 	 * 
 	 * @param tl gornja lijeva točka pravokutnika
 	 * @param br donja desna točka pravokutnika
 	 * @return instanca razreda {@link Song} koja sadrži informacije o notama dobivenim obrađivanjem videozapisa
 	 */
 	public Song extractNotes(Point tl, Point br) {
+		fromNoteCache = false;
+		String key = null;
+		if(noteCache != null) {
+			try {
+				key = NoteCache.keyOf(this, tl, br);
+				NoteLog cached = noteCache.open(key);
+				if(cached != null) {
+					restoreNotes(cached);
+					return song;
+				}
+			} catch (IOException e) {
+				System.err.println("Priručna memorija nota se ne može pročitati: " + e);
+			}
+		}
+		
 		VideoCapture cap = new VideoCapture(pathToVideo);
-		fps = (int) cap.get(Videoio.CAP_PROP_FPS);
+		exactFps = cap.get(Videoio.CAP_PROP_FPS);
+		fps = (int) exactFps;
+		song.setFramesPerSecond(fps);
+		int lastFrame = (int) cap.get(Videoio.CAP_PROP_FRAME_COUNT) - 1;
+		frameCount = lastFrame + 1;
 		
-		for(frameCounter = 1; frameCounter < (int) cap.get(Videoio.CAP_PROP_FRAME_COUNT) - 1; frameCounter++) {
-        	cap.read(originalFrame);
-        	processFrame(tl, br);
-        	//System.out.println(frameCounter);
-        }
+		FrameArea area = bandMode ? FrameArea.band(tl, br, maxFallPerFrame) : FrameArea.full(tl, br);
+		HandClassifier hands = new HandClassifier();
+		int segmentCount = Math.min(segments, Math.max(1, lastFrame / Constants.MIN_SEGMENT_FRAMES));
 		
-		if(secondHue != -1) {
+		if(segmentCount > 1) {
+			cap.release();
+			extractSegmented(area, lastFrame, segmentCount, hands);
+		} else {
+			NoteTracker tracker = new NoteTracker(pitchConverter, song::addNote, (n, hue, x, frame) -> n.setLeftHand(hands.classify(hue, x)),
+					detectionMode.closesOnAbsence());
+			if(pipelineWorkers > 0) {
+				new FramePipeline(pipelineWorkers, Constants.PIPELINE_CAPACITY, detectionMode, pitchConverter.getKeyboard(), matAccounting).run(cap, tracker, step -> nextArea(area, tracker, step), 1, lastFrame, () -> currentStride(tracker));
+			} else {
+				processSequential(cap, tracker, area, lastFrame, hands);
+			}
+			tracker.closeAbsent();
+			cap.release();
+			firstFrame = tracker.getFirstFrame();
+		}
+		
+		matAccounting.reportLeaks();
+		
+		if(hands.isTwoHands()) {
 			song.setTwoHands(true);
-			ConverterUtil.correctHands(hands, song);
+			hands.correctHands(song);
 		} else {
 			song.setTwoHands(false);
 		}
 		
+		if(key != null) {
+			try {
+				noteCache.put(key, song.getEvents(), exactFps, firstFrame, frameCount, song.isTwoHands());
+			} catch (IOException e) {
+				System.err.println("Priručna memorija nota se ne može zapisati: " + e);
+			}
+		}
+		
 		return song;
 	}
-
+	
 	/**
-	 * Metoda obrezuje sliku na temelju poslanih točaka, procesira ju, te pronalazi note u dobivenim konturama. 
+	 * Postavlja note pjesme i podatke o videozapisu iz spremljenih nota.
+	 * 
+	 * @param log spremljene note
+	 */
+	private void restoreNotes(NoteLog log) {
+		fps = log.getFramesPerSecond();
+		exactFps = log.getExactFramesPerSecond();
+		firstFrame = log.getFirstFrame();
+		frameCount = log.getFrameCount();
+		
+		log.addTo(song.getEvents(), log.size());
+		song.setFramesPerSecond(fps);
+		song.setTwoHands(log.isTwoHands());
+		fromNoteCache = true;
+	}
+	
+	/**
+	 * Metoda slijedno obrađuje slike videozapisa i zapisuje kontrolne točke obrade. Ako se obrada nastavlja iz kontrolne točke,
+	 * pratitelj nota, klasifikator ruku i note pjesme postavljaju se na stanje iz kontrolne točke, a videozapis se pozicionira
+	 * na sliku nakon zadnje obrađene. Ako obrada ne uspije, kontrolna točka ostaje zapisana.
+	 * 
+	 * @param cap videozapis pozicioniran na prvu sliku
+	 * @param tracker pratitelj nota
+	 * @param area područje slike koje se obrađuje
+	 * @param lastFrame broj slike do koje se videozapis obrađuje (isključivo)
+	 * @param hands klasifikator ruku nota
+	 */
+	private void processSequential(VideoCapture cap, NoteTracker tracker, FrameArea area, int lastFrame, HandClassifier hands) {
+		if(checkpointInterval == 0) {
+			processFrames(cap, tracker, area, 1, lastFrame, null, null);
+			return;
+		}
+		
+		Checkpoint checkpoint = new Checkpoint(checkpointDirectory, fingerprint(area, lastFrame),
+				checkpointInterval, tracker, hands, song.getEvents());
+		
+		int from = 1;
+		int checkpointFrame = checkpoint.start(resume);
+		if(checkpointFrame != -1) {
+			from = checkpointFrame + Math.min(currentStride(tracker), lastFrame - checkpointFrame);
+			cap.set(Videoio.CAP_PROP_POS_FRAMES, from - 1);
+		}
+		
+		try {
+			processFrames(cap, tracker, area, from, lastFrame, null, checkpoint::frameProcessed);
+		} catch (RuntimeException e) {
+			checkpoint.close();
+			throw e;
+		}
+		checkpoint.delete();
+	}
+	
+	/**
+	 * Vraća opis videozapisa i parametara obrade o kojima ovise note, kojim se provjerava odgovara li kontrolna točka obradi.
+	 * 
+	 * @param area područje slike koje se obrađuje
+	 * @param lastFrame broj slike do koje se videozapis obrađuje (isključivo)
+	 * @return opis videozapisa i parametara obrade
+	 */
+	private String fingerprint(FrameArea area, int lastFrame) {
+		File video = new File(pathToVideo);
+		Keyboard keyboard = pitchConverter.getKeyboard();
+		
+		return video.getAbsolutePath() + "|" + video.length() + "|" + video.lastModified() + "|" + fps + "|" + lastFrame
+				+ "|" + area.getTl() + "|" + area.getBr() + "|" + bandMode + "|" + maxFallPerFrame + "|" + detectionMode + "|" + stride
+				+ "|" + keyboard.getRange() + "|" + keyboard.getKeyWidth();
+	}
+	
+	/**
+	 * Metoda obrađuje videozapis i postupno zapisuje MusicXML dokument u dani izlaz, takt po takt, dok se videozapis još obrađuje.
+	 * Tonalitet i tempo procjenjuju se iz nota prvih {@value Constants#STREAM_WARMUP_SECONDS} sekundi od prve note,
+	 * a tempo se nakon toga ponovno procjenjuje nakon svakog takta. Note i taktovi se ne pohranjuju u pjesmu.
+	 * Slike se obrađuju slijedno, bez podjele na segmente i protočne obrade.
 	 * 
 	 * @param tl gornja lijeva točka pravokutnika
 	 * @param br donja desna točka pravokutnika
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje dokumenta ne uspije
 	 */
-	private void processFrame(Point tl, Point br) {
-		int controlY = (int) (br.y - Constants.CONTROL_DISTANCE);
+	public void convertStreaming(Point tl, Point br, Writer out) throws IOException {
+		VideoCapture cap = new VideoCapture(pathToVideo);
+		exactFps = cap.get(Videoio.CAP_PROP_FPS);
+		fps = (int) exactFps;
+		song.setFramesPerSecond(fps);
+		int lastFrame = (int) cap.get(Videoio.CAP_PROP_FRAME_COUNT) - 1;
+		frameCount = lastFrame + 1;
 		
-		originalFrame = ConverterUtil.cropFrame(originalFrame, tl, br);
-		ConverterUtil.prepareFrameForProcessing(originalFrame, processedFrame);
+		FrameArea area = bandMode ? FrameArea.band(tl, br, maxFallPerFrame) : FrameArea.full(tl, br);
+		HandClassifier hands = new HandClassifier();
+		MeasureStream stream = new MeasureStream(song, hands, out, Constants.STREAM_WARMUP_SECONDS * fps);
+		NoteTracker tracker = new NoteTracker(pitchConverter, stream::addNote, (n, hue, x, frame) -> n.setLeftHand(hands.classify(hue, x)),
+				detectionMode.closesOnAbsence());
 		
-		Set<Rect> notes = ConverterUtil.getBoundingRectangles(
-				r -> r.br().y > controlY && r.width > Constants.MIN_WIDTH && r.height > Constants.MIN_HEIGHT,
-				processedFrame);
-		/*
-		Mat drawing = Mat.zeros(originalFrame.size(), CvType.CV_8UC3);
-		for(Rect r : notes) {
-			Imgproc.rectangle(drawing, r.tl(), r.br(), new Scalar(255, 255, 255));
+		try {
+			processFrames(cap, tracker, area, 1, lastFrame, null, frame -> stream.advance(tracker, frame));
+			tracker.closeAbsent();
+			firstFrame = tracker.getFirstFrame();
+			stream.finish(firstFrame);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			cap.release();
+			matAccounting.reportLeaks();
 		}
+	}
+	
+	/**
+	 * Metoda dijeli videozapis na segmente i svaki segment obrađuje u zasebnoj dretvi.
+	 * Svaki segment počinje obradu nekoliko slika prije svog početka i nastavlja je nakon svog kraja dok se ne završe sve note
+	 * započete unutar segmenta. Segmentu pripadaju samo note koje su započele unutar njega, pa se note na granicama segmenata
+	 * ne dupliciraju niti gube. Ruke nota određuju se tek nakon spajanja segmenata, redoslijedom pojavljivanja nota.
+	 * 
+	 * @param area područje slike koje se obrađuje
+	 * @param lastFrame broj slike do koje se videozapis obrađuje (isključivo)
+	 * @param segmentCount broj segmenata
+	 * @param hands klasifikator ruku nota
+	 */
+	private void extractSegmented(FrameArea area, int lastFrame, int segmentCount, HandClassifier hands) {
+		ExecutorService pool = Executors.newFixedThreadPool(segmentCount);
+		List<Future<Segment>> results = new ArrayList<>();
 		
-		HighGui.imshow("Image", drawing);
-		HighGui.waitKey();
-		*/
+		int segmentLength = (lastFrame - 1) / segmentCount;
+		for(int i = 0; i < segmentCount; i++) {
+			int start = 1 + i * segmentLength;
+			int end = i == segmentCount - 1 ? lastFrame : start + segmentLength;
+			results.add(pool.submit(() -> processSegment(area, start, end, lastFrame)));
+		}
 		
-		Map<Rect, Pitch> filteredNotes = ConverterUtil.findPitchesAndFilter(notes, currentNotes, controlY);
-		
-		for(var entry : filteredNotes.entrySet()) {
-			Rect r = entry.getKey();
-			Pitch pitch = entry.getValue();
-			
-			if(r.tl().y > controlY) {
- 				Note n = currentNotes.remove(pitch);
- 				currentNotesExistence.remove(pitch);
-				n.setEndTime(frameCounter);
-   				song.addNote(n);
-			} else if(!currentNotes.containsKey(pitch)) {
-				firstFrame = firstFrame == -1 ? frameCounter : firstFrame;
-				
-				boolean hand = getHand(r);
-				hands.get(hand).add(r.tl().x);
+		try {
+			for(Future<Segment> result : results) {
+				Segment segment = result.get();
 				
-				currentNotesExistence.put(pitch, Constants.EXISTENCE);
-				currentNotes.put(pitch, new Note(pitch, hand, frameCounter));
-			} else {
-				currentNotesExistence.put(pitch, Constants.EXISTENCE);
+				for(Onset onset : segment.onsets) {
+					firstFrame = firstFrame == -1 ? onset.frame : firstFrame;
+					onset.note.setLeftHand(hands.classify(onset.hue, onset.x));
+				}
+				segment.notes.forEach(song::addNote);
 			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Obrada segmenta videozapisa nije uspjela.", e);
+		} finally {
+			pool.shutdownNow();
 		}
+	}
+	
+	/**
+	 * Metoda obrađuje jedan segment videozapisa s vlastitim {@link VideoCapture} objektom.
+	 * 
+	 * @param area područje slike koje se obrađuje
+	 * @param start prva slika segmenta
+	 * @param end slika nakon zadnje slike segmenta
+	 * @param lastFrame broj slike do koje se videozapis obrađuje (isključivo)
+	 * @return note i pojavljivanja nota koja pripadaju segmentu
+	 */
+	private Segment processSegment(FrameArea area, int start, int end, int lastFrame) {
+		Segment segment = new Segment();
+		NoteTracker tracker = new NoteTracker(pitchConverter, n -> {
+			if(n.getStartTime() >= start && n.getStartTime() < end) segment.notes.add(n);
+		}, (n, hue, x, frame) -> {
+			if(frame >= start && frame < end) segment.onsets.add(new Onset(n, hue, x, frame));
+		}, detectionMode.closesOnAbsence());
 		
-		Set<Pitch> toRemove = new HashSet<>();
-		for(var ex : currentNotesExistence.entrySet()) {
-			if(ex.getValue() == 0) {
-				currentNotes.remove(ex.getKey());
-				toRemove.add(ex.getKey());
-			} else {
-				ex.setValue(ex.getValue() - 1);
+		int warmupStart = Math.max(1, start - Constants.SEGMENT_WARMUP);
+		VideoCapture cap = new VideoCapture(pathToVideo);
+		cap.set(Videoio.CAP_PROP_POS_FRAMES, warmupStart - 1);
+		
+		int frame = processFrames(cap, tracker, area, warmupStart, end, null, null);
+		int tailEnd = Math.min(lastFrame, end + Constants.SEGMENT_MAX_TAIL);
+		processFrames(cap, tracker, area, frame, tailEnd, () -> tracker.getEarliestOpenStart() >= end, null);
+		tracker.closeAbsent();
+		cap.release();
+		
+		return segment;
+	}
+	
+	/**
+	 * Metoda čita i obrađuje slike videozapisa od dane slike do dane slike ili dok uvjet zaustavljanja ne bude zadovoljen.
+	 * 
+	 * @param cap videozapis pozicioniran na prvu sliku koja se obrađuje
+	 * @param tracker pratitelj nota
+	 * @param area područje slike koje se obrađuje
+	 * @param from broj prve slike koja se obrađuje
+	 * @param to broj slike do koje se obrađuje (isključivo)
+	 * @param stop uvjet zaustavljanja ili <code>null</code> ako se obrađuju sve slike
+	 * @param frameListener prima broj svake obrađene slike ili <code>null</code>
+	 * @return broj sljedeće slike koja nije obrađena
+	 */
+	private int processFrames(VideoCapture cap, NoteTracker tracker, FrameArea area, int from, int to, BooleanSupplier stop,
+			IntConsumer frameListener) {
+		FrameContext context = new FrameContext(matAccounting);
+		FrameArea current = nextArea(area, tracker, currentStride(tracker));
+		
+		int frameCounter = from;
+		try {
+			while(frameCounter < to) {
+				if(stop != null && stop.getAsBoolean()) break;
+				
+				cap.read(context.getFrame());
+				processFrame(context, tracker, frameCounter, current);
+				matAccounting.endFrame(frameCounter);
+				if(frameListener != null) frameListener.accept(frameCounter);
+				//System.out.println(frameCounter);
+				
+				int step = Math.min(currentStride(tracker), to - frameCounter);
+				for(int i = 1; i < step; i++) {
+					cap.grab();
+				}
+				frameCounter += step;
+				current = nextArea(area, tracker, step);
 			}
+		} finally {
+			context.release();
 		}
 		
-		toRemove.forEach(p -> currentNotesExistence.remove(p));
+		return frameCounter;
 	}
 	
 	/**
-	 * Metoda vraća kojom rukom se svira poslana nota (kvadrat) na temelju njegove boje.
+	 * Vraća korak obrade slika za dani pratitelj nota. Ako se korak određuje automatski, a brzina padanja nota još nije
+	 * procijenjena, obrađuje se svaka slika.
 	 * 
-	 * @param r kvadrat koji predstavlja notu za koju se želi odrediti kojom rukom se svira
-	 * @return <code>true</code> ako se svira lijevom rukom, inače <code>false</code>
+	 * @param tracker pratitelj nota
+	 * @return korak obrade slika
 	 */
-	private boolean getHand(Rect r) {
-		double hue = originalFrame.get((int)r.tl().y + r.height/2, (int)r.tl().x + r.width/2)[0];
-		if(firstHue == -1) {
-			firstHue = hue;
-			return false;
-		}
+	private int currentStride(NoteTracker tracker) {
+		if(stride > 0) return stride;
 		
-		if(secondHue == -1) {
-			if(hue > firstHue - Constants.HUE_ERROR && hue < firstHue + Constants.HUE_ERROR) {
-				return false;
-			}
-			
-			secondHue = hue;
-			return true;
+		double speed = tracker.getSpeed();
+		return speed == 0 ? 1 : Math.max(1, (int) (Constants.MIN_HEIGHT / speed));
+	}
+	
+	/**
+	 * Vraća područje obrade slike do koje se došlo danim korakom obrade. Traka oko kontrolne linije mora obuhvatiti pomak
+	 * note između dvije obrađene slike: dok brzina padanja nije procijenjena to je najveći pomak note između dvije uzastopne
+	 * slike, a zatim procijenjena brzina uvećana {@value Constants#BAND_SPEED_MARGIN} puta, u oba slučaja pomnoženo korakom.
+	 * Područje koje nije traka vraća se nepromijenjeno.
+	 * 
+	 * @param area područje slike koje se obrađuje
+	 * @param tracker pratitelj nota
+	 * @param step broj slika od prethodne obrađene slike
+	 * @return područje obrade
+	 */
+	private FrameArea nextArea(FrameArea area, NoteTracker tracker, int step) {
+		if(!area.isBand()) return area;
+		
+		double speed = tracker.getSpeed();
+		double fall = speed == 0 ? maxFallPerFrame : speed * Constants.BAND_SPEED_MARGIN;
+		return area.withFall((int) Math.ceil(fall * step));
+	}
+
+	/**
+	 * Metoda obrezuje sliku na temelju poslanih točaka, procesira ju, te pronalazi note u dobivenim konturama. 
+	 * 
+	 * @param context kontekst obrade koji sadrži pročitanu sliku videozapisa
+	 * @param tracker pratitelj nota
+	 * @param frameCounter broj slike koja se obrađuje
+	 * @param area područje slike koje se obrađuje
+	 */
+	private void processFrame(FrameContext context, NoteTracker tracker, int frameCounter, FrameArea area) {
+		int controlY = area.getControlY();
+		
+		Mat croppedFrame = context.crop(area.getTl(), area.getBr());
+		List<Rect> notes = detectionMode.findNotes(croppedFrame, context, area, pitchConverter.getKeyboard());
+		/*
+		Mat drawing = Mat.zeros(croppedFrame.size(), CvType.CV_8UC3);
+		for(Rect r : notes) {
+			Imgproc.rectangle(drawing, r.tl(), r.br(), new Scalar(255, 255, 255));
 		}
 		
-		return Math.abs(firstHue - hue) > Math.abs(secondHue - hue);
+		HighGui.imshow("Image", drawing);
+		HighGui.waitKey();
+		*/
+		
+		tracker.track(notes, controlY, frameCounter, r -> detectionMode.getHue(context, r));
+	}
+	
+	/**
+	 * Rezultat obrade jednog segmenta videozapisa.
+	 */
+	private static class Segment {
+		/** Završene note koje su započele unutar segmenta. */
+		private List<Note> notes = new ArrayList<>();
+		/** Pojavljivanja nota unutar segmenta redoslijedom kojim su se dogodila. */
+		private List<Onset> onsets = new ArrayList<>();
+	}
+	
+	/**
+	 * Pojavljivanje nove note na kontrolnoj liniji.
+	 */
+	private static class Onset {
+		/** Nota koja se pojavila. */
+		private Note note;
+		/** Boja pravokutnika note. */
+		private double hue;
+		/** X koordinata gornje lijeve točke pravokutnika note. */
+		private double x;
+		/** Broj slike u kojoj se nota pojavila. */
+		private int frame;
+		
+		/**
+		 * Stvara novo pojavljivanje note.
+		 * 
+		 * @param note nota koja se pojavila
+		 * @param hue boja pravokutnika note
+		 * @param x x koordinata gornje lijeve točke pravokutnika note
+		 * @param frame broj slike u kojoj se nota pojavila
+		 */
+		private Onset(Note note, double hue, double x, int frame) {
+			this.note = note;
+			this.hue = hue;
+			this.x = x;
+			this.frame = frame;
+		}
 	}
 	
 }
@@ -0,0 +1,81 @@
+package hr.fer.zavrsni.converter.converting;
+
+import java.util.List;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import hr.fer.zavrsni.converter.keyboard.Keyboard;
+import hr.fer.zavrsni.converter.util.ConverterUtil;
+import hr.fer.zavrsni.converter.util.FrameContext;
+
+/**
+ * Enumeracija modelira načine prepoznavanja nota na slici videozapisa.
+ *
+ * @author Ana Bagić
+ *
+ */
+public enum DetectionMode {
+
+	/** Note se prepoznaju iz kontura canny oblika slike, a završavaju kada vrh pravokutnika prijeđe kontrolnu liniju. */
+	CONTOURS {
+		@Override
+		List<Rect> findNotes(Mat croppedFrame, FrameContext context, FrameArea area, Keyboard keyboard) {
+			return ConverterUtil.findNotes(croppedFrame, context, area.getControlY(), area.isBand());
+		}
+
+		@Override
+		double getHue(FrameContext context, Rect r) {
+			return ConverterUtil.getHue(context, r);
+		}
+
+		@Override
+		boolean closesOnAbsence() {
+			return false;
+		}
+	},
+	/** Note se prepoznaju iz nizova piksela na kontrolnoj liniji i liniji iznad nje, a završavaju kada nestanu s kontrolne linije. */
+	SCANLINE {
+		@Override
+		List<Rect> findNotes(Mat croppedFrame, FrameContext context, FrameArea area, Keyboard keyboard) {
+			return ConverterUtil.findCrossingNotes(croppedFrame, context, area.getControlY(), keyboard);
+		}
+
+		@Override
+		double getHue(FrameContext context, Rect r) {
+			return ConverterUtil.getScanlineHue(context, r);
+		}
+
+		@Override
+		boolean closesOnAbsence() {
+			return true;
+		}
+	};
+
+	/**
+	 * Pronalazi pravokutnike nota na obrezanoj slici.
+	 *
+	 * @param croppedFrame obrezana slika videozapisa
+	 * @param context kontekst obrade slike
+	 * @param area područje slike koje se obrađuje
+	 * @param keyboard klavijatura čija je širina jednaka širini obrezane slike
+	 * @return lista pravokutnika koji predstavljaju note; lista pripada kontekstu i vrijedi do obrade sljedeće slike
+	 */
+	abstract List<Rect> findNotes(Mat croppedFrame, FrameContext context, FrameArea area, Keyboard keyboard);
+
+	/**
+	 * Vraća boju (H vrijednost) note predstavljene danim pravokutnikom na zadnjoj slici obrađenoj u danom kontekstu.
+	 *
+	 * @param context kontekst obrade slike
+	 * @param r pravokutnik note
+	 * @return boja note
+	 */
+	abstract double getHue(FrameContext context, Rect r);
+
+	/**
+	 * Vraća završava li se nota čim se ne pronađe na kontrolnoj liniji.
+	 *
+	 * @return <code>true</code> ako se nota završava kada nestane s kontrolne linije, inače <code>false</code>
+	 */
+	abstract boolean closesOnAbsence();
+}
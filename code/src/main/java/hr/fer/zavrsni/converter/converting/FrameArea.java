@@ -0,0 +1,125 @@
+package hr.fer.zavrsni.converter.converting;
+
+import org.opencv.core.Point;
+
+import hr.fer.zavrsni.converter.util.Constants;
+
+/**
+ * Razred opisuje dio slike videozapisa koji se obrađuje i položaj kontrolne linije unutar njega.
+ * Točke pravokutnika su u koordinatama slike videozapisa, a kontrolna linija u koordinatama obrezane slike.
+ *
+ * @author Ana Bagić
+ *
+ */
+class FrameArea {
+
+	/** Gornja lijeva točka pravokutnika po kojemu se obrezuje slika. */
+	private Point tl;
+	/** Donja desna točka pravokutnika po kojemu se obrezuje slika. */
+	private Point br;
+	/** Y koordinata kontrolne linije u obrezanoj slici. */
+	private int controlY;
+	/** Je li područje samo traka oko kontrolne linije. */
+	private boolean band;
+	/** Gornja lijeva točka odabranog pravokutnika iz kojeg se izdvaja traka. */
+	private Point roiTl;
+	/** Najveći pomak note između dvije obrađene slike za koji je traka određena, 0 ako područje nije traka. */
+	private int fall;
+
+	/**
+	 * Stvara novo područje obrade.
+	 *
+	 * @param tl gornja lijeva točka pravokutnika
+	 * @param br donja desna točka pravokutnika
+	 * @param controlY y koordinata kontrolne linije u obrezanoj slici
+	 * @param band je li područje samo traka oko kontrolne linije
+	 * @param roiTl gornja lijeva točka odabranog pravokutnika
+	 * @param fall najveći pomak note između dvije obrađene slike za koji je traka određena
+	 */
+	private FrameArea(Point tl, Point br, int controlY, boolean band, Point roiTl, int fall) {
+		this.tl = tl;
+		this.br = br;
+		this.controlY = controlY;
+		this.band = band;
+		this.roiTl = roiTl;
+		this.fall = fall;
+	}
+
+	/**
+	 * Stvara područje obrade koje obuhvaća cijeli odabrani pravokutnik.
+	 *
+	 * @param tl gornja lijeva točka pravokutnika
+	 * @param br donja desna točka pravokutnika
+	 * @return područje obrade
+	 */
+	static FrameArea full(Point tl, Point br) {
+		return new FrameArea(tl, br, (int) (br.y - Constants.CONTROL_DISTANCE), false, tl, 0);
+	}
+
+	/**
+	 * Stvara područje obrade koje obuhvaća samo vodoravnu traku oko kontrolne linije.
+	 * Iznad kontrolne linije traka je visoka koliko minimalna visina note i najveći pomak note između dvije obrađene slike,
+	 * pa se svaka nota koja prijeđe kontrolnu liniju vidi dovoljno visoka, a ispod nje seže do dna odabranog pravokutnika.
+	 * Note duže od trake prelaze oba njena ruba, pa im se rubovi pri obradi zatvaraju.
+	 *
+	 * @param tl gornja lijeva točka pravokutnika
+	 * @param br donja desna točka pravokutnika
+	 * @param fall najveći pomak note u pikselima između dvije obrađene slike
+	 * @return područje obrade
+	 */
+	static FrameArea band(Point tl, Point br, int fall) {
+		double bandTop = br.y - Constants.CONTROL_DISTANCE - Constants.MIN_HEIGHT - fall;
+		Point bandTl = new Point(tl.x, Math.max(tl.y, bandTop));
+
+		return new FrameArea(bandTl, br, (int) (br.y - Constants.CONTROL_DISTANCE - bandTl.y), true, tl, fall);
+	}
+
+	/**
+	 * Vraća područje obrade za dani najveći pomak note između dvije obrađene slike. Područje koje nije traka vraća se
+	 * nepromijenjeno, a traka se stvara ponovno samo ako se pomak promijenio.
+	 *
+	 * @param fall najveći pomak note u pikselima između dvije obrađene slike
+	 * @return područje obrade
+	 */
+	FrameArea withFall(int fall) {
+		if(!band || fall == this.fall) return this;
+
+		return band(roiTl, br, fall);
+	}
+
+	/**
+	 * Vraća gornju lijevu točku pravokutnika po kojemu se obrezuje slika.
+	 *
+	 * @return gornja lijeva točka pravokutnika
+	 */
+	Point getTl() {
+		return tl;
+	}
+
+	/**
+	 * Vraća donju desnu točku pravokutnika po kojemu se obrezuje slika.
+	 *
+	 * @return donja desna točka pravokutnika
+	 */
+	Point getBr() {
+		return br;
+	}
+
+	/**
+	 * Vraća je li područje samo traka oko kontrolne linije.
+	 *
+	 * @return <code>true</code> ako je područje traka oko kontrolne linije, inače <code>false</code>
+	 */
+	boolean isBand() {
+		return band;
+	}
+
+	/**
+	 * Vraća y koordinatu kontrolne linije u obrezanoj slici.
+	 *
+	 * @return y koordinata kontrolne linije
+	 */
+	int getControlY() {
+		return controlY;
+	}
+}
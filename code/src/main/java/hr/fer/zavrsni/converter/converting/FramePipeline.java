@@ -0,0 +1,259 @@
+package hr.fer.zavrsni.converter.converting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.function.ToDoubleFunction;
+
+import org.opencv.core.Rect;
+import org.opencv.videoio.VideoCapture;
+
+import hr.fer.zavrsni.converter.keyboard.Keyboard;
+import hr.fer.zavrsni.converter.util.FrameContext;
+import hr.fer.zavrsni.converter.util.MatAccounting;
+
+/**
+ * Razred obrađuje slike videozapisa protočno, u tri faze.
+ * Jedna dretva čita slike unaprijed, više dretvi na pročitanim slikama prepoznaje pravokutnike nota,
+ * a pozivajuća dretva prati note redoslijedom slika.
+ * Faze su povezane ograničenim redovima nad unaprijed alociranim mjestima za slike,
+ * pa se u obradi istovremeno nalazi najviše onoliko slika koliko ima mjesta.
+ * Note se prepoznaju u kontekstu mjesta slike, pa se boja note čita tek kada je pratitelj nota zatraži,
+ * prije nego što se mjesto oslobodi za sljedeću sliku.
+ *
+ * @author Ana Bagić
+ *
+ */
+class FramePipeline {
+
+	/** Oznaka kraja toka slika. */
+	private static final FrameSlot END = new FrameSlot(null, null);
+
+	/** Broj dretvi za prepoznavanje nota. */
+	private int workers;
+	/** Broj mjesta za slike. */
+	private int capacity;
+	/** Način prepoznavanja nota na slici. */
+	private DetectionMode detectionMode;
+	/** Klavijatura čija je širina jednaka širini obrezane slike. */
+	private Keyboard keyboard;
+	/** Praćenje slika obrade. */
+	private MatAccounting accounting;
+
+	/** Sva mjesta za slike. */
+	private List<FrameSlot> slots = new ArrayList<>();
+	/** Slobodna mjesta u koja se mogu čitati slike. */
+	private BlockingQueue<FrameSlot> free;
+	/** Pročitane slike koje čekaju prepoznavanje nota. */
+	private BlockingQueue<FrameSlot> decoded;
+	/** Slike s prepoznatim notama koje čekaju praćenje. */
+	private BlockingQueue<FrameSlot> detected;
+
+	/** Prva greška nastala u dretvama za čitanje ili prepoznavanje. */
+	private volatile Throwable error;
+
+	/**
+	 * Stvara novu protočnu obradu s danim brojem dretvi za prepoznavanje nota i danim brojem mjesta za slike.
+	 *
+	 * @param workers broj dretvi za prepoznavanje nota
+	 * @param capacity broj mjesta za slike
+	 * @param detectionMode način prepoznavanja nota na slici
+	 * @param keyboard klavijatura čija je širina jednaka širini obrezane slike
+	 * @param accounting praćenje slika obrade
+	 */
+	FramePipeline(int workers, int capacity, DetectionMode detectionMode, Keyboard keyboard, MatAccounting accounting) {
+		this.workers = workers;
+		this.capacity = capacity;
+		this.detectionMode = detectionMode;
+		this.keyboard = keyboard;
+		this.accounting = accounting;
+
+		free = new ArrayBlockingQueue<>(capacity);
+		decoded = new ArrayBlockingQueue<>(capacity + workers);
+		detected = new ArrayBlockingQueue<>(capacity + workers);
+
+		for(int i = 0; i < capacity; i++) {
+			slots.add(new FrameSlot(new FrameContext(accounting), detectionMode));
+		}
+		free.addAll(slots);
+	}
+
+	/**
+	 * Metoda protočno obrađuje slike videozapisa od dane slike do dane slike.
+	 *
+	 * @param cap videozapis pozicioniran na prvu sliku koja se obrađuje
+	 * @param tracker pratitelj nota
+	 * @param area funkcija koja za broj slika od prethodne obrađene slike vraća područje slike koje se obrađuje
+	 * @param from broj prve slike koja se obrađuje
+	 * @param to broj slike do koje se obrađuje (isključivo)
+	 * @param stride korak obrade slika, čita se nakon svake pročitane slike
+	 * @return broj sljedeće slike koja nije obrađena
+	 */
+	int run(VideoCapture cap, NoteTracker tracker, IntFunction<FrameArea> area, int from, int to, IntSupplier stride) {
+		ExecutorService pool = Executors.newFixedThreadPool(workers + 1);
+		pool.execute(() -> decode(cap, area, from, to, stride));
+		for(int i = 0; i < workers; i++) {
+			pool.execute(this::detect);
+		}
+
+		FrameSlot[] reorder = new FrameSlot[capacity];
+		int sequence = 0;
+		int next = from;
+		int ended = 0;
+
+		try {
+			while(ended < workers) {
+				FrameSlot slot = detected.poll(100, TimeUnit.MILLISECONDS);
+				if(error != null) {
+					throw new IllegalStateException("Protočna obrada videozapisa nije uspjela.", error);
+				}
+				if(slot == null) continue;
+				if(slot == END) {
+					ended++;
+					continue;
+				}
+
+				reorder[slot.sequence % capacity] = slot;
+				FrameSlot current;
+				while((current = reorder[sequence % capacity]) != null && current.sequence == sequence) {
+					reorder[sequence % capacity] = null;
+					tracker.track(current.notes, current.area.getControlY(), current.number, current);
+					free.put(current);
+					sequence++;
+					next = current.next;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Protočna obrada videozapisa je prekinuta.", e);
+		} finally {
+			pool.shutdownNow();
+			try {
+				pool.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			slots.forEach(s -> s.context.release());
+		}
+
+		return next;
+	}
+
+	/**
+	 * Faza čitanja: čita slike videozapisa u slobodna mjesta i predaje ih fazi prepoznavanja.
+	 * Slike koje se ne obrađuju zbog koraka obrade se preskaču bez dekodiranja u sliku.
+	 * Područje obrade svake slike određuje se prema koraku kojim se do nje došlo.
+	 *
+	 * @param cap videozapis pozicioniran na prvu sliku koja se obrađuje
+	 * @param area funkcija koja za broj slika od prethodne obrađene slike vraća područje slike koje se obrađuje
+	 * @param from broj prve slike koja se obrađuje
+	 * @param to broj slike do koje se obrađuje (isključivo)
+	 * @param stride korak obrade slika
+	 */
+	private void decode(VideoCapture cap, IntFunction<FrameArea> area, int from, int to, IntSupplier stride) {
+		try {
+			int sequence = 0;
+			int frame = from;
+			int previousStep = stride.getAsInt();
+			while(frame < to) {
+				FrameSlot slot = free.take();
+				if(!cap.read(slot.context.getFrame())) break;
+
+				int step = Math.min(stride.getAsInt(), to - frame);
+				for(int i = 1; i < step; i++) {
+					cap.grab();
+				}
+
+				slot.sequence = sequence++;
+				slot.number = frame;
+				slot.next = frame + step;
+				slot.area = area.apply(previousStep);
+				decoded.put(slot);
+				frame += step;
+				previousStep = step;
+			}
+
+			for(int i = 0; i < workers; i++) {
+				decoded.put(END);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Throwable e) {
+			error = e;
+		}
+	}
+
+	/**
+	 * Faza prepoznavanja: na pročitanim slikama pronalazi pravokutnike nota i predaje ih fazi praćenja.
+	 * Međuslike obrade ostaju u kontekstu mjesta slike, iz kojeg se kasnije čitaju boje nota.
+	 */
+	private void detect() {
+		try {
+			while(true) {
+				FrameSlot slot = decoded.take();
+				if(slot == END) {
+					detected.put(END);
+					return;
+				}
+
+				slot.notes = detectionMode.findNotes(slot.context.crop(slot.area.getTl(), slot.area.getBr()), slot.context, slot.area, keyboard);
+				accounting.endFrame(slot.number);
+
+				detected.put(slot);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Throwable e) {
+			error = e;
+		}
+	}
+
+	/**
+	 * Mjesto za jednu sliku u protočnoj obradi. Mjesto je ujedno i funkcija koja vraća boju pravokutnika
+	 * pronađenog na slici mjesta.
+	 */
+	private static class FrameSlot implements ToDoubleFunction<Rect> {
+		/** Kontekst u koji se čita slika videozapisa i u kojem se prepoznaju note. */
+		private FrameContext context;
+		/** Način prepoznavanja nota na slici. */
+		private DetectionMode detectionMode;
+		/** Redni broj mjesta u toku obrađenih slika. */
+		private int sequence;
+		/** Redni broj slike. */
+		private int number;
+		/** Redni broj sljedeće slike koja se obrađuje. */
+		private int next;
+		/** Područje slike koje se obrađuje. */
+		private FrameArea area;
+		/** Pravokutnici nota pronađeni na slici; lista pripada kontekstu mjesta. */
+		private List<Rect> notes;
+
+		/**
+		 * Stvara novo mjesto za sliku.
+		 *
+		 * @param context kontekst u koji se čita slika videozapisa
+		 * @param detectionMode način prepoznavanja nota na slici
+		 */
+		private FrameSlot(FrameContext context, DetectionMode detectionMode) {
+			this.context = context;
+			this.detectionMode = detectionMode;
+		}
+
+		/**
+		 * Vraća boju danog pravokutnika pronađenog na slici mjesta.
+		 *
+		 * @param r pravokutnik pronađen na slici mjesta
+		 * @return boja pravokutnika
+		 */
+		@Override
+		public double applyAsDouble(Rect r) {
+			return detectionMode.getHue(context, r);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package hr.fer.zavrsni.converter.converting;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import hr.fer.zavrsni.converter.model.song.Song;
+import hr.fer.zavrsni.converter.util.Constants;
+
+/**
+ * Razred određuje kojom rukom se svira nota na temelju boje pravokutnika koji ju predstavlja.
+ * Prva prepoznata boja pripisuje se desnoj ruci, a prva dovoljno različita boja lijevoj ruci.
+ *
+ * @author Ana Bagić
+ *
+ */
+class HandClassifier {
+
+	/** Boja nota sviranih desnom rukom. */
+	private double firstHue = -1;
+	/** Boja nota sviranih lijevom rukom. */
+	private double secondHue = -1;
+	/** Zbroj x koordinata nota sviranih desnom (indeks 0) i lijevom rukom (indeks 1). */
+	private double[] sumX = new double[2];
+	/** Broj nota sviranih desnom (indeks 0) i lijevom rukom (indeks 1). */
+	private int[] count = new int[2];
+
+	/**
+	 * Metoda vraća kojom rukom se svira nota dane boje i pamti x koordinatu note za kasniju korekciju ruku.
+	 *
+	 * @param hue boja pravokutnika koji predstavlja notu
+	 * @param x x koordinata gornje lijeve točke pravokutnika
+	 * @return <code>true</code> ako se svira lijevom rukom, inače <code>false</code>
+	 */
+	boolean classify(double hue, double x) {
+		boolean hand = getHand(hue);
+		int i = hand ? 1 : 0;
+		sumX[i] += x;
+		count[i]++;
+		return hand;
+	}
+
+	/**
+	 * Metoda vraća kojom rukom se svira nota dane boje.
+	 *
+	 * @param hue boja pravokutnika koji predstavlja notu
+	 * @return <code>true</code> ako se svira lijevom rukom, inače <code>false</code>
+	 */
+	private boolean getHand(double hue) {
+		if(firstHue == -1) {
+			firstHue = hue;
+			return false;
+		}
+
+		if(secondHue == -1) {
+			if(hue > firstHue - Constants.HUE_ERROR && hue < firstHue + Constants.HUE_ERROR) {
+				return false;
+			}
+
+			secondHue = hue;
+			return true;
+		}
+
+		return Math.abs(firstHue - hue) > Math.abs(secondHue - hue);
+	}
+
+	/**
+	 * Vraća jesu li prepoznate dvije različite boje nota, odnosno svira li se pjesma s dvije ruke.
+	 *
+	 * @return <code>true</code> ako se pjesma svira s dvije ruke, inače <code>false</code>
+	 */
+	boolean isTwoHands() {
+		return secondHue != -1;
+	}
+
+	/**
+	 * Vraća je li početna pretpostavka o rukama kriva, odnosno sviraju li se note pretpostavljene lijeve ruke
+	 * u prosjeku desnije od nota pretpostavljene desne ruke.
+	 *
+	 * @return <code>true</code> ako ruke treba zamijeniti, inače <code>false</code>
+	 */
+	boolean isSwapped() {
+		return mean(1) > mean(0);
+	}
+
+	/**
+	 * Ispravlja ruke nota dane pjesme ako je početna pretpostavka o rukama bila kriva.
+	 *
+	 * @param song pjesma čije se note trebaju eventualno korigirati
+	 */
+	void correctHands(Song song) {
+		if(isSwapped()) {
+			song.swapHands();
+		}
+	}
+
+	/**
+	 * Vraća prosječnu x koordinatu nota dane ruke, 0 ako takvih nota nema.
+	 *
+	 * @param i indeks ruke, 0 za desnu i 1 za lijevu
+	 * @return prosječna x koordinata nota dane ruke
+	 */
+	private double mean(int i) {
+		return count[i] == 0 ? 0.0 : sumX[i] / count[i];
+	}
+
+	/**
+	 * Zapisuje boje ruku i zbrojeve x koordinata nota.
+	 *
+	 * @param out izlaz u koji se zapisuje stanje
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	void writeState(DataOutput out) throws IOException {
+		out.writeDouble(firstHue);
+		out.writeDouble(secondHue);
+		for(int i = 0; i < 2; i++) {
+			out.writeDouble(sumX[i]);
+			out.writeInt(count[i]);
+		}
+	}
+
+	/**
+	 * Postavlja stanje klasifikatora na stanje zapisano metodom {@link #writeState(DataOutput)}.
+	 *
+	 * @param in ulaz iz kojeg se čita stanje
+	 * @throws IOException ako čitanje ne uspije
+	 */
+	void readState(DataInput in) throws IOException {
+		firstHue = in.readDouble();
+		secondHue = in.readDouble();
+		for(int i = 0; i < 2; i++) {
+			sumX[i] = in.readDouble();
+			count[i] = in.readInt();
+		}
+	}
+}
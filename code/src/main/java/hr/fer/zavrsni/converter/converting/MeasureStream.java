@@ -0,0 +1,196 @@
+package hr.fer.zavrsni.converter.converting;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import hr.fer.zavrsni.converter.model.note.Note;
+import hr.fer.zavrsni.converter.model.song.Measure;
+import hr.fer.zavrsni.converter.model.song.Song;
+import hr.fer.zavrsni.converter.util.MeasureBuilder;
+import hr.fer.zavrsni.converter.util.ScaleUtil;
+import hr.fer.zavrsni.converter.util.TempoUtil;
+import hr.fer.zavrsni.converter.util.XMLUtil;
+
+/**
+ * Razred postupno generira MusicXML dokument dok se videozapis još obrađuje.
+ * Tonalitet, tempo i ruke procjenjuju se iz nota završenih unutar početnog dijela videozapisa.
+ * Nakon toga se svaki takt prilagođava tonalitetu, gradi i zapisuje čim su završene sve note koje su započele prije njegova kraja,
+ * a tempo se nakon svakog takta ponovno procjenjuje iz trajanja svih do tada završenih nota.
+ * Zapisani taktovi i note se ne pamte, pa memorija ne raste s duljinom pjesme.
+ * <p>
+ * Oznaka tonaliteta i broj crtovlja zapisuju se u prvom taktu, pa se nakon početnog dijela ne mijenjaju.
+ * Ako se druga ruka pojavi tek nakon početnog dijela, njezine note zapisuju se kao note desne ruke.
+ *
+ * @author Ana Bagić
+ *
+ */
+class MeasureStream {
+
+	/** Pjesma koja se generira. */
+	private Song song;
+	/** Klasifikator ruku nota. */
+	private HandClassifier hands;
+	/** Izlaz u koji se zapisuje dokument. */
+	private Writer out;
+	/** Broj slika od prve note iz kojih se procjenjuju tonalitet i tempo. */
+	private int warmupFrames;
+	/** Tempo pjesme koji je pretpostavio korisnik, polazište svake procjene tempa. */
+	private int guessedBeatsPerMinute;
+
+	/** Završene note koje još nisu zapisane, sortirane po početku. */
+	private TreeSet<Note> pending = new TreeSet<>();
+	/** Mapa koja trajanju note u slikama pridružuje broj završenih nota s tim trajanjem. */
+	private Map<Integer, Integer> durations = new HashMap<>();
+	/** Graditelj taktova, <code>null</code> dok traje početni dio. */
+	private MeasureBuilder builder;
+	/** Treba li notama zamijeniti ruke. */
+	private boolean swapHands;
+	/** Izgrađeni takt koji se zapisuje kada se zna je li zadnji. */
+	private Measure lastBuilt;
+
+	/**
+	 * Stvara novo postupno generiranje dokumenta.
+	 *
+	 * @param song pjesma koja se generira, s postavljenim metapodatcima, mjerom i pretpostavljenim tempom
+	 * @param hands klasifikator ruku nota
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @param warmupFrames broj slika od prve note iz kojih se procjenjuju tonalitet i tempo
+	 */
+	MeasureStream(Song song, HandClassifier hands, Writer out, int warmupFrames) {
+		this.song = song;
+		this.hands = hands;
+		this.out = out;
+		this.warmupFrames = warmupFrames;
+		this.guessedBeatsPerMinute = song.getBeatsPerMinute();
+	}
+
+	/**
+	 * Dodaje završenu notu.
+	 *
+	 * @param note završena nota
+	 */
+	void addNote(Note note) {
+		if(pending.add(note)) {
+			durations.merge(note.getLength(), 1, Integer::sum);
+		}
+	}
+
+	/**
+	 * Zapisuje sve taktove koji se mogu zapisati nakon obrade dane slike.
+	 * Takt se zapisuje kada nijedna otvorena nota nije započela prije njegova kraja, kada nova nota više ne može započeti
+	 * prije njegova kraja i kada postoji završena nota nakon njegova kraja, pa takt sigurno nije zadnji.
+	 *
+	 * @param tracker pratitelj nota
+	 * @param frame broj zadnje obrađene slike
+	 * @throws UncheckedIOException ako zapisivanje ne uspije
+	 */
+	void advance(NoteTracker tracker, int frame) {
+		if(builder == null) {
+			int first = tracker.getFirstFrame();
+			if(first == -1 || frame < first + warmupFrames) return;
+			start(first);
+		}
+
+		while(true) {
+			int boundary = builder.getNextBoundary();
+			if(frame < boundary - 1 || tracker.getEarliestOpenStart() < boundary
+					|| pending.isEmpty() || pending.last().getStartTime() < boundary) return;
+
+			emit(boundary, false);
+			findTempo();
+		}
+	}
+
+	/**
+	 * Zapisuje preostale taktove i kraj dokumenta nakon obrade cijelog videozapisa.
+	 *
+	 * @param firstFrame slika u kojoj je prvi put zabilježena nota
+	 * @throws UncheckedIOException ako zapisivanje ne uspije
+	 */
+	void finish(int firstFrame) {
+		if(builder == null) {
+			start(firstFrame);
+		}
+
+		while(!emit(builder.getNextBoundary(), true));
+
+		try {
+			XMLUtil.writeEnd(out);
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Završava početni dio: iz do tada završenih nota procjenjuje tonalitet, tempo i ruke te zapisuje početak dokumenta.
+	 *
+	 * @param firstFrame slika u kojoj je prvi put zabilježena nota
+	 */
+	private void start(int firstFrame) {
+		Song warmup = new Song();
+		pending.forEach(warmup::addNote);
+		ScaleUtil.findScale(warmup);
+		song.setScale(warmup.getScale());
+
+		findTempo();
+
+		song.setTwoHands(hands.isTwoHands());
+		swapHands = hands.isSwapped();
+		builder = new MeasureBuilder(song, firstFrame);
+
+		try {
+			XMLUtil.writeStart(song, out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Procjenjuje tempo pjesme iz trajanja svih do tada završenih nota, polazeći od tempa koji je pretpostavio korisnik.
+	 */
+	private void findTempo() {
+		song.setBeatsPerMinute(guessedBeatsPerMinute);
+		TempoUtil.findTempo(song, durations);
+	}
+
+	/**
+	 * Gradi takt od završenih nota koje su započele prije dane granice i zapisuje prethodno izgrađeni takt.
+	 *
+	 * @param boundary granica početaka nota takta
+	 * @param finishing je li videozapis obrađen do kraja
+	 * @return <code>true</code> ako je izgrađeni takt zadnji u pjesmi, inače <code>false</code>
+	 */
+	private boolean emit(int boundary, boolean finishing) {
+		List<Note> notes = new ArrayList<>();
+		while(!pending.isEmpty() && pending.first().getStartTime() < boundary) {
+			Note n = pending.pollFirst();
+			n.setLeftHand(song.isTwoHands() && n.isLeftHand() != swapHands);
+			notes.add(n);
+		}
+		boolean last = finishing && pending.isEmpty();
+
+		ScaleUtil.fitToScale(notes, song.getScale());
+		Measure measure = builder.build(notes, last);
+
+		try {
+			if(lastBuilt != null) {
+				XMLUtil.writeMeasure(song, lastBuilt, false, out);
+			}
+			lastBuilt = measure;
+			if(last) {
+				XMLUtil.writeMeasure(song, measure, true, out);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return last;
+	}
+}
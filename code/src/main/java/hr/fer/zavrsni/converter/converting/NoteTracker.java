@@ -0,0 +1,552 @@
+package hr.fer.zavrsni.converter.converting;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+import org.opencv.core.Rect;
+
+import hr.fer.zavrsni.converter.model.note.Note;
+import hr.fer.zavrsni.converter.model.note.Pitch;
+import hr.fer.zavrsni.converter.util.Constants;
+
+/**
+ * Razred prati note koje prelaze kontrolnu liniju kroz uzastopne slike videozapisa.
+ * Stanje nota čuva se u poljima indeksiranim MIDI brojem tona, a skupovi tonova kao nizovi bitova,
+ * pa se pri obradi slike ne alociraju kolekcije niti pakiraju brojevi.
+ * Završene note prosljeđuje danom potrošaču, a o svakoj novoj noti obavještava slušača početaka nota.
+ * Iz pomaka vrhova pravokutnika između slika procjenjuje se brzina padanja nota. Ako se između dvije obrađene slike
+ * preskoče slike videozapisa, početak i kraj note računaju se iz udaljenosti pravokutnika od kontrolne linije i brzine padanja.
+ * Ako se note završavaju kada nestanu, pravokutnici su uzorkovani samo na kontrolnoj liniji i liniji
+ * {@value Constants#MIN_HEIGHT} piksela iznad nje, pa nemaju stvarni vrh. Tada se brzina padanja procjenjuje iz prosječnog
+ * vremena koje je vrhu note potrebno da s gornje linije dođe do kontrolne linije, a iz brzine se računa i kraj note.
+ * Vremena prelaska uzimaju se samo iz slika obrađenih bez preskakanja, jer su note u videozapisu poravnate s taktom,
+ * pa bi vremena zaokružena na veći korak obrade davala pristranu brzinu. Zato se uz stalni korak veći od 1 brzina u tom
+ * načinu ne procjenjuje, a kraj note je prva slika u kojoj nedostaje, dok automatski korak počinje od 1 i brzinu procijeni
+ * prije nego što poveća korak.
+ * Takva nota se završava tek kada nije pronađena {@value Constants#EXISTENCE} uzastopnih obrađenih slika nakon prve slike
+ * u kojoj nedostaje, a kraj note računa se u prvoj slici u kojoj nedostaje.
+ *
+ * @author Ana Bagić
+ *
+ */
+class NoteTracker {
+
+	/**
+	 * Sučelje slušača kojeg se obavještava o svakoj novoj noti.
+	 */
+	interface OnsetListener {
+
+		/**
+		 * Metoda se poziva kada se na kontrolnoj liniji pojavi nova nota.
+		 *
+		 * @param note nova nota
+		 * @param hue boja pravokutnika koji predstavlja notu
+		 * @param x x koordinata gornje lijeve točke pravokutnika
+		 * @param frame broj slike u kojoj se nota pojavila
+		 */
+		void onset(Note note, double hue, double x, int frame);
+	}
+
+	/** Broj mogućih tonova, po MIDI broju. */
+	private static final int KEYS = 128;
+
+	/** Trenutno promatrane note po MIDI broju tona. */
+	private Note[] openNotes = new Note[KEYS];
+	/** Broj slika koliko promatrana nota još može postojati, a da nije prepoznata na slici, po MIDI broju tona. */
+	private int[] existence = new int[KEYS];
+	/** Zadnji viđeni vrh pravokutnika promatrane note, relativno prema kontrolnoj liniji, po MIDI broju tona. */
+	private int[] topY = new int[KEYS];
+	/** Broj slike u kojoj je viđen zadnji vrh pravokutnika promatrane note ili -1, po MIDI broju tona. */
+	private int[] topFrame = new int[KEYS];
+	/** Kraj promatrane note izračunat u prvoj slici u kojoj nota nedostaje ili -1 ako nota nije nestala, po MIDI broju tona. */
+	private int[] absentEnd = new int[KEYS];
+	/**
+	 * Procijenjena slika u kojoj je vrh promatrane note prešao gornju liniju uzorkovanja, a dok to nije viđeno zadnja slika
+	 * u kojoj je nota pokrivala gornju liniju, ili -1, po MIDI broju tona. Koristi se samo ako se note završavaju kada nestanu.
+	 */
+	private double[] upperFrame = new double[KEYS];
+	/**
+	 * Vrijeme prelaska vrha note s gornje linije uzorkovanja na kontrolnu liniju izračunato u prvoj slici u kojoj nota
+	 * nedostaje ili -1, dodaje se kao uzorak kada se nota završi, po MIDI broju tona.
+	 */
+	private double[] absentTravel = new double[KEYS];
+	/** Pravokutnik odabran za svaki ton pronađen na trenutnoj slici. */
+	private Rect[] found = new Rect[KEYS];
+	/** Skup tonova promatranih nota, kao niz bitova. */
+	private long[] open = new long[KEYS/64];
+	/** Skup tonova pronađenih na trenutnoj slici, kao niz bitova. */
+	private long[] seen = new long[KEYS/64];
+	/** Skup tonova promatranih nota čiji je vrh viđen kako prelazi gornju liniju uzorkovanja, kao niz bitova. */
+	private long[] cleared = new long[KEYS/64];
+	/**
+	 * Skup tonova promatranih nota čiji je prelazak gornje linije uzorkovanja viđen nakon preskočenih slika, pa se ne
+	 * koristi kao uzorak za procjenu brzine padanja, kao niz bitova.
+	 */
+	private long[] coarse = new long[KEYS/64];
+	/** Prva slika u kojoj se pojavila nota. */
+	private int firstFrame = -1;
+	/** Zadnja obrađena slika. */
+	private int previousFrame = -1;
+
+	/**
+	 * Zadnji uzorci brzine padanja nota u pikselima po slici, a ako se note završavaju kada nestanu, zadnja vremena prelaska
+	 * vrha note s gornje linije uzorkovanja na kontrolnu liniju u slikama.
+	 */
+	private double[] speedSamples = new double[Constants.SPEED_SAMPLES];
+	/** Ukupan broj uzoraka brzine padanja nota. */
+	private int speedSampleCount;
+	/** Međuspremnik za računanje medijana uzoraka brzine. */
+	private double[] sortedSamples = new double[Constants.SPEED_SAMPLES];
+	/** Procijenjena brzina padanja nota u pikselima po slici, 0 dok nema dovoljno uzoraka. */
+	private volatile double speed;
+
+	/** Prepoznavanje tona note. */
+	private PitchConverter pitchConverter;
+	/** Potrošač kojemu se predaju završene note. */
+	private Consumer<Note> closedNotes;
+	/** Slušač kojeg se obavještava o novim notama. */
+	private OnsetListener onsets;
+	/** Završava li se nota čim se ne pronađe na slici. */
+	private boolean closeOnAbsence;
+
+	/**
+	 * Stvara novi pratitelj nota.
+	 *
+	 * @param pitchConverter prepoznavanje tona note
+	 * @param closedNotes potrošač kojemu se predaju završene note
+	 * @param onsets slušač kojeg se obavještava o novim notama
+	 * @param closeOnAbsence završava li se nota čim se ne pronađe na slici, umjesto kada njen vrh prijeđe kontrolnu liniju
+	 */
+	NoteTracker(PitchConverter pitchConverter, Consumer<Note> closedNotes, OnsetListener onsets, boolean closeOnAbsence) {
+		this.pitchConverter = pitchConverter;
+		this.closedNotes = closedNotes;
+		this.onsets = onsets;
+		this.closeOnAbsence = closeOnAbsence;
+	}
+
+	/**
+	 * Metoda na temelju pravokutnika pronađenih na slici započinje nove note, završava note čiji je vrh prešao kontrolnu liniju
+	 * i zaboravlja note koje se nisu pojavile dovoljno dugo. Nova nota se započinje samo pravokutnikom veće visine od minimalne. Ako se note završavaju kada nestanu, promatrana nota
+	 * koja nije pronađena dovoljno dugo se završava, s krajem izračunatim u prvoj slici u kojoj nije pronađena.
+	 *
+	 * @param notes pravokutnici pronađeni na slici
+	 * @param controlY y koordinata kontrolne linije
+	 * @param frame broj slike koja se obrađuje
+	 * @param hueOf funkcija koja vraća boju danog pravokutnika
+	 */
+	void track(Collection<Rect> notes, int controlY, int frame, ToDoubleFunction<Rect> hueOf) {
+		int skipped = previousFrame == -1 ? 0 : frame - previousFrame - 1;
+		previousFrame = frame;
+
+		findKeys(notes, controlY);
+
+		for(int word = seen.length - 1; word >= 0; word--) {
+			long bits = seen[word];
+			while(bits != 0) {
+				int bit = 63 - Long.numberOfLeadingZeros(bits);
+				bits &= ~(1L << bit);
+				int key = 64*word + bit;
+
+				Rect r = found[key];
+				found[key] = null;
+				trackKey(key, r, controlY, frame, skipped, hueOf);
+			}
+		}
+
+		for(int word = 0; word < open.length; word++) {
+			long bits = open[word];
+			while(bits != 0) {
+				int bit = Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				int key = 64*word + bit;
+
+				if(closeOnAbsence) {
+					if((seen[word] & (1L << bit)) != 0) continue;
+
+					if(absentEnd[key] == -1) {
+						absentEnd[key] = endOfAbsentNote(key, frame, skipped);
+					}
+					if(existence[key] == 0) {
+						closeAbsentNote(key);
+					} else {
+						existence[key]--;
+					}
+				} else if(existence[key] == 0) {
+					forget(key);
+				} else {
+					existence[key]--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Za svaki pravokutnik pronalazi MIDI broj tona i za svaki ton pamti prvi pronađeni pravokutnik.
+	 * Pravokutnik koji se cijeli nalazi ispod kontrolne linije, a ton mu nije promatran, se preskače.
+	 *
+	 * @param notes pravokutnici pronađeni na slici
+	 * @param controlY y koordinata kontrolne linije
+	 */
+	private void findKeys(Collection<Rect> notes, int controlY) {
+		Arrays.fill(seen, 0);
+
+		for(Rect r : notes) {
+			int key = pitchConverter.findPitch(r).getMidi();
+			if(contains(seen, key)) continue;
+			if(r.y > controlY && !contains(open, key)) continue;
+
+			seen[key >> 6] |= 1L << key;
+			found[key] = r;
+		}
+	}
+
+	/**
+	 * Započinje, završava ili produžuje notu danog tona na temelju pravokutnika pronađenog na trenutnoj slici.
+	 *
+	 * @param key MIDI broj tona
+	 * @param r pravokutnik pronađen za ton
+	 * @param controlY y koordinata kontrolne linije
+	 * @param frame broj slike koja se obrađuje
+	 * @param skipped broj slika preskočenih prije trenutne slike
+	 * @param hueOf funkcija koja vraća boju danog pravokutnika
+	 */
+	private void trackKey(int key, Rect r, int controlY, int frame, int skipped, ToDoubleFunction<Rect> hueOf) {
+		if(r.y > controlY) {
+			close(key, Math.max(openNotes[key].getStartTime(), frame - framesSinceCrossing(r.y, controlY, skipped)));
+		} else if(!contains(open, key)) {
+			if(r.height <= Constants.MIN_HEIGHT) return;
+
+			int start = frame - framesSinceCrossing(r.y + r.height, controlY, skipped);
+			firstFrame = firstFrame == -1 ? start : firstFrame;
+
+			Note n = new Note(Pitch.of(key), false, start);
+			onsets.onset(n, hueOf.applyAsDouble(r), r.x, start);
+
+			open[key >> 6] |= 1L << key;
+			openNotes[key] = n;
+			existence[key] = Constants.EXISTENCE;
+			absentEnd[key] = -1;
+			absentTravel[key] = -1;
+			topFrame[key] = -1;
+			upperFrame[key] = -1;
+			cleared[key >> 6] &= ~(1L << key);
+			coarse[key >> 6] &= ~(1L << key);
+			observe(key, r, controlY, frame, skipped);
+		} else {
+			existence[key] = Constants.EXISTENCE;
+			absentEnd[key] = -1;
+			absentTravel[key] = -1;
+			observe(key, r, controlY, frame, skipped);
+		}
+	}
+
+	/**
+	 * Pamti položaj pravokutnika promatrane note za procjenu brzine padanja: vrh pravokutnika ako je pronađen konturama,
+	 * a prelazak gornje linije uzorkovanja ako se note završavaju kada nestanu.
+	 *
+	 * @param key MIDI broj tona note
+	 * @param r pravokutnik note
+	 * @param controlY y koordinata kontrolne linije
+	 * @param frame broj slike u kojoj je pravokutnik pronađen
+	 * @param skipped broj slika preskočenih prije trenutne slike
+	 */
+	private void observe(int key, Rect r, int controlY, int frame, int skipped) {
+		if(closeOnAbsence) {
+			observeUpper(key, r, frame, skipped);
+		} else {
+			observeTop(key, r, controlY, frame);
+		}
+	}
+
+	/**
+	 * Računa kraj promatrane note koja nije pronađena na trenutnoj slici, za note koje se završavaju kada nestanu.
+	 * Vrh note prešao je kontrolnu liniju između prethodne obrađene slike i trenutne slike. Ako su između njih preskočene
+	 * slike videozapisa, a brzina padanja je procijenjena, kraj note je slika u kojoj je vrh, krenuvši s gornje linije
+	 * uzorkovanja, prešao {@value Constants#MIN_HEIGHT} piksela do kontrolne linije.
+	 * U istoj slici računa se i vrijeme prelaska vrha s gornje linije na kontrolnu liniju. Ako prelazak gornje linije
+	 * nije viđen, vrh je u prethodnoj obrađenoj slici još pokrivao gornju liniju, pa je prešao obje linije između dvije
+	 * obrađene slike i vrijeme prelaska je 0. Vrijeme prelaska računa se samo ako su obje linije prijeđene bez
+	 * preskočenih slika. Tada je kraj note između te slike uvećane za vrijeme prelaska pri
+	 * procijenjenoj brzini i trenutne slike, pa se smješta u sredinu tog razdoblja. Ako brzina nije procijenjena,
+	 * kraj note smješta se u sredinu preskočenih slika.
+	 *
+	 * @param key MIDI broj tona note
+	 * @param frame broj slike koja se obrađuje
+	 * @param skipped broj slika preskočenih prije trenutne slike
+	 * @return broj slike u kojoj je nota završila
+	 */
+	private int endOfAbsentNote(int key, int frame, int skipped) {
+		if(upperFrame[key] != -1 && skipped == 0 && !contains(coarse, key)) {
+			absentTravel[key] = contains(cleared, key) ? Math.max(0, frame - (skipped + 1) / 2.0 - upperFrame[key]) : 0;
+		}
+
+		int start = openNotes[key].getStartTime();
+		if(skipped == 0) return Math.max(start, frame);
+		if(speed == 0 || upperFrame[key] == -1) return Math.max(start, (int) Math.round(frame - skipped / 2.0));
+
+		double travel = Constants.MIN_HEIGHT / speed;
+		double end = contains(cleared, key) ? upperFrame[key] + travel : (upperFrame[key] + travel + frame) / 2;
+		return Math.max(start, (int) Math.round(Math.max(frame - skipped, Math.min(frame, end))));
+	}
+
+	/**
+	 * Završava promatranu notu koja je nestala s krajem izračunatim u prvoj slici u kojoj nije pronađena
+	 * i dodaje vrijeme prelaska izračunato u toj slici kao uzorak za procjenu brzine padanja.
+	 *
+	 * @param key MIDI broj tona
+	 */
+	private void closeAbsentNote(int key) {
+		if(absentTravel[key] != -1) addTravelSample(absentTravel[key]);
+		close(key, absentEnd[key]);
+	}
+
+	/**
+	 * Završava promatrane note koje su nestale, a još se čeka jesu li nestale dovoljno dugo, s krajem izračunatim u prvoj
+	 * slici u kojoj nisu pronađene. Poziva se nakon obrade zadnje slike, pa se ne gube note koje su nestale pred kraj videozapisa.
+	 */
+	void closeAbsent() {
+		for(int key = 0; key < KEYS; key++) {
+			if(contains(open, key) && absentEnd[key] != -1) {
+				closeAbsentNote(key);
+			}
+		}
+	}
+
+	/**
+	 * Završava promatranu notu danog tona i predaje ju potrošaču završenih nota.
+	 *
+	 * @param key MIDI broj tona
+	 * @param endTime broj slike u kojoj je nota završila
+	 */
+	private void close(int key, int endTime) {
+		Note n = openNotes[key];
+		forget(key);
+		n.setEndTime(endTime);
+		closedNotes.accept(n);
+	}
+
+	/**
+	 * Prestaje promatrati notu danog tona.
+	 *
+	 * @param key MIDI broj tona
+	 */
+	private void forget(int key) {
+		open[key >> 6] &= ~(1L << key);
+		openNotes[key] = null;
+	}
+
+	/**
+	 * Provjerava sadrži li skup tonova dani ton.
+	 *
+	 * @param set skup tonova kao niz bitova
+	 * @param key MIDI broj tona
+	 * @return <code>true</code> ako skup sadrži ton, inače <code>false</code>
+	 */
+	private static boolean contains(long[] set, int key) {
+		return (set[key >> 6] & (1L << key)) != 0;
+	}
+
+	/**
+	 * Računa prije koliko slika je rub pravokutnika prešao kontrolnu liniju.
+	 * Računa se samo ako su prije trenutne slike preskočene slike videozapisa i ako je brzina padanja procijenjena,
+	 * a rezultat nije veći od broja preskočenih slika.
+	 *
+	 * @param edgeY y koordinata ruba pravokutnika koji je prešao kontrolnu liniju
+	 * @param controlY y koordinata kontrolne linije
+	 * @param skipped broj slika preskočenih prije trenutne slike
+	 * @return broj slika od prelaska kontrolne linije do trenutne slike
+	 */
+	private int framesSinceCrossing(double edgeY, int controlY, int skipped) {
+		if(skipped == 0 || speed == 0) return 0;
+
+		return Math.min(skipped, (int) ((edgeY - controlY - 1) / speed));
+	}
+
+	/**
+	 * Pamti vrh pravokutnika promatrane note i, ako je vrh viđen i na nekoj prethodnoj slici, dodaje uzorak brzine padanja.
+	 * Vrh odrezan gornjim rubom slike se ne pamti. Vrh se pamti relativno prema kontrolnoj liniji, pa uzorci brzine ostaju
+	 * ispravni i kada se područje obrade između dvije slike promijeni.
+	 *
+	 * @param key MIDI broj tona note
+	 * @param r pravokutnik note
+	 * @param controlY y koordinata kontrolne linije
+	 * @param frame broj slike u kojoj je pravokutnik pronađen
+	 */
+	private void observeTop(int key, Rect r, int controlY, int frame) {
+		if(r.y <= 0) return;
+
+		int top = r.y - controlY;
+		if(topFrame[key] != -1 && top > topY[key] && frame > topFrame[key]) {
+			addSpeedSample((double) (top - topY[key]) / (frame - topFrame[key]));
+		}
+		topY[key] = top;
+		topFrame[key] = frame;
+	}
+
+	/**
+	 * Pamti kada je vrh promatrane note prešao gornju liniju uzorkovanja, {@value Constants#MIN_HEIGHT} piksela iznad
+	 * kontrolne linije. Pravokutnik viši od minimalne visine pokriva obje linije, pa vrh još nije prešao gornju liniju.
+	 * Pravokutnik samo na kontrolnoj liniji znači da ju je prešao između prethodne obrađene slike i trenutne slike,
+	 * pa se prelazak smješta u sredinu tog razdoblja.
+	 *
+	 * @param key MIDI broj tona note
+	 * @param r pravokutnik note
+	 * @param frame broj slike u kojoj je pravokutnik pronađen
+	 * @param skipped broj slika preskočenih prije trenutne slike
+	 */
+	private void observeUpper(int key, Rect r, int frame, int skipped) {
+		if(contains(cleared, key)) return;
+
+		if(r.height > Constants.MIN_HEIGHT) {
+			upperFrame[key] = frame;
+		} else if(upperFrame[key] != -1) {
+			upperFrame[key] = frame - (skipped + 1) / 2.0;
+			cleared[key >> 6] |= 1L << key;
+			if(skipped > 0) coarse[key >> 6] |= 1L << key;
+		}
+	}
+
+	/**
+	 * Dodaje uzorak vremena prelaska vrha note s gornje linije uzorkovanja na kontrolnu liniju i osvježava procjenu brzine
+	 * kao {@value Constants#MIN_HEIGHT} piksela podijeljeno prosjekom zadnjih uzoraka. Uz preskakanje slika vremena
+	 * prelaska su zaokružena na korak obrade, pa se koristi prosjek koji uključuje i vremena 0, a ne medijan brzina.
+	 *
+	 * @param travel vrijeme prelaska u slikama
+	 */
+	private void addTravelSample(double travel) {
+		speedSamples[speedSampleCount++ % speedSamples.length] = travel;
+		if(speedSampleCount < speedSamples.length) return;
+
+		double sum = 0;
+		for(double sample : speedSamples) {
+			sum += sample;
+		}
+		if(sum > 0) speed = Constants.MIN_HEIGHT * speedSamples.length / sum;
+	}
+
+	/**
+	 * Dodaje uzorak brzine padanja i osvježava procjenu brzine kao medijan zadnjih uzoraka.
+	 *
+	 * @param sample brzina padanja u pikselima po slici
+	 */
+	private void addSpeedSample(double sample) {
+		speedSamples[speedSampleCount++ % speedSamples.length] = sample;
+		if(speedSampleCount < speedSamples.length) return;
+
+		System.arraycopy(speedSamples, 0, sortedSamples, 0, speedSamples.length);
+		Arrays.sort(sortedSamples);
+		speed = sortedSamples[sortedSamples.length / 2];
+	}
+
+	/**
+	 * Vraća procijenjenu brzinu padanja nota.
+	 *
+	 * @return brzina padanja nota u pikselima po slici ili 0 ako još nema dovoljno uzoraka
+	 */
+	double getSpeed() {
+		return speed;
+	}
+
+	/**
+	 * Vraća redni broj slike u kojoj se prvi put pojavila nota.
+	 *
+	 * @return redni broj slike u kojoj se prvi put pojavila nota ili -1 ako se nota još nije pojavila
+	 */
+	int getFirstFrame() {
+		return firstFrame;
+	}
+
+	/**
+	 * Vraća najraniju početnu sliku među notama koje su još otvorene.
+	 *
+	 * @return najranija početna slika otvorenih nota ili {@link Integer#MAX_VALUE} ako nema otvorenih nota
+	 */
+	int getEarliestOpenStart() {
+		int earliest = Integer.MAX_VALUE;
+		for(Note n : openNotes) {
+			if(n != null) earliest = Math.min(earliest, n.getStartTime());
+		}
+
+		return earliest;
+	}
+
+	/**
+	 * Zapisuje stanje pratitelja potrebno za nastavak praćenja: promatrane note, uzorke brzine padanja i zadnju obrađenu sliku.
+	 *
+	 * @param out izlaz u koji se zapisuje stanje
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	void writeState(DataOutput out) throws IOException {
+		out.writeInt(firstFrame);
+		out.writeInt(previousFrame);
+		out.writeInt(speedSampleCount);
+		out.writeDouble(speed);
+		for(double sample : speedSamples) {
+			out.writeDouble(sample);
+		}
+
+		int openCount = 0;
+		for(long word : open) {
+			openCount += Long.bitCount(word);
+		}
+		out.writeInt(openCount);
+		for(int key = 0; key < KEYS; key++) {
+			if(!contains(open, key)) continue;
+
+			out.writeByte(key);
+			out.writeInt(openNotes[key].getStartTime());
+			out.writeBoolean(openNotes[key].isLeftHand());
+			out.writeInt(existence[key]);
+			out.writeInt(topY[key]);
+			out.writeInt(topFrame[key]);
+			out.writeInt(absentEnd[key]);
+			out.writeDouble(upperFrame[key]);
+			out.writeDouble(absentTravel[key]);
+			out.writeBoolean(contains(cleared, key));
+			out.writeBoolean(contains(coarse, key));
+		}
+	}
+
+	/**
+	 * Postavlja stanje pratitelja na stanje zapisano metodom {@link #writeState(DataOutput)}.
+	 *
+	 * @param in ulaz iz kojeg se čita stanje
+	 * @throws IOException ako čitanje ne uspije
+	 */
+	void readState(DataInput in) throws IOException {
+		firstFrame = in.readInt();
+		previousFrame = in.readInt();
+		speedSampleCount = in.readInt();
+		speed = in.readDouble();
+		for(int i = 0; i < speedSamples.length; i++) {
+			speedSamples[i] = in.readDouble();
+		}
+
+		Arrays.fill(open, 0);
+		Arrays.fill(cleared, 0);
+		Arrays.fill(coarse, 0);
+		Arrays.fill(openNotes, null);
+		int openCount = in.readInt();
+		for(int i = 0; i < openCount; i++) {
+			int key = in.readUnsignedByte();
+			int start = in.readInt();
+			boolean leftHand = in.readBoolean();
+
+			open[key >> 6] |= 1L << key;
+			openNotes[key] = new Note(Pitch.of(key), leftHand, start);
+			existence[key] = in.readInt();
+			topY[key] = in.readInt();
+			topFrame[key] = in.readInt();
+			absentEnd[key] = in.readInt();
+			upperFrame[key] = in.readDouble();
+			absentTravel[key] = in.readDouble();
+			if(in.readBoolean()) cleared[key >> 6] |= 1L << key;
+			if(in.readBoolean()) coarse[key >> 6] |= 1L << key;
+		}
+	}
+}
@@ -3,43 +3,42 @@ package hr.fer.zavrsni.converter.converting;
 import org.opencv.core.Rect;
 
 import hr.fer.zavrsni.converter.keyboard.Keyboard;
+import hr.fer.zavrsni.converter.keyboard.KeyboardFactory;
 import hr.fer.zavrsni.converter.model.note.NoteAlphabet;
 import hr.fer.zavrsni.converter.model.note.Pitch;
 
 /**
  * Razred služi za prepoznavanje tona note iz pravokutnika koji obrubljuje tu padajuću notu.
+ * Pri promjeni klavijature ili njene širine MIDI brojevi tonova se unaprijed računaju za svaku moguću polovicu piksela
+ * središta pravokutnika, pa je prepoznavanje tona jedno čitanje iz tablice.
  * 
  * @author Ana Bagić
  *
  */
 public class PitchConverter {
 
-	/** Jedinstveni objekt ovog razreda. */
-	private static PitchConverter pitchConverter = new PitchConverter();
 	/** Klavijatura koja se koristi za prepozavanje tona. */
 	private Keyboard keyboard;
+	/** MIDI broj tona za svaku dvostruku x koordinatu središta pravokutnika. */
+	private volatile int[] midiLookup = new int[0];
 	
 	/**
-	 * Defaultni privatni konstruktor.
-	 */
-	private PitchConverter() {}
-	
-	/**
-	 * Vraća instancu {@link PitchConverter}-a (jedinstveni objekt).
+	 * Vraća klavijaturu koja se koristi za prepoznavanje tona.
 	 * 
-	 * @return instancu {@link PitchConverter}-a
+	 * @return klavijatura koja se koristi
 	 */
-	public static PitchConverter getInstance() {
-		return pitchConverter;
+	public Keyboard getKeyboard() {
+		return keyboard;
 	}
 	
 	/**
-	 * Postavlja klavijaturu na danu.
+	 * Postavlja klavijaturu na kopiju dane, pa postavljanje širine ne mijenja danu klavijaturu.
 	 * 
 	 * @param keyboard klavijatura koja se koristi
 	 */
 	public void setKeyboard(Keyboard keyboard) {
-		this.keyboard = keyboard;
+		this.keyboard = KeyboardFactory.copyOf(keyboard);
+		buildLookup();
 	}
 	
 	/**
@@ -49,6 +48,21 @@ public class PitchConverter {
 	 */
 	public void setKeyboardWidth(int keyboardWidth) {
 		keyboard.setKeyboardWidth(keyboardWidth);
+		buildLookup();
+	}
+	
+	/**
+	 * Računa MIDI broj tona za svaku dvostruku x koordinatu središta pravokutnika od 0 do dvostruke širine klavijature.
+	 */
+	private void buildLookup() {
+		int size = keyboard.getKeyWidth() > 0 ? (int) Math.round(2*keyboard.getWhiteKeys()*keyboard.getKeyWidth()) + 1 : 0;
+		int[] lookup = new int[size];
+		
+		for(int i = 0; i < size; i++) {
+			lookup[i] = computePitch(i/2.0).getMidi();
+		}
+		
+		midiLookup = lookup;
 	}
 	
 	/**
@@ -58,7 +72,22 @@ public class PitchConverter {
 	 * @return odgovarajući ton note
 	 */
 	public Pitch findPitch(Rect rect) {
-		double keyCenter = rect.x + rect.width/2.0;
+		int[] lookup = midiLookup;
+		int doubleCenter = 2*rect.x + rect.width;
+		if(doubleCenter >= 0 && doubleCenter < lookup.length) {
+			return Pitch.of(lookup[doubleCenter]);
+		}
+		
+		return computePitch(rect.x + rect.width/2.0);
+	}
+	
+	/**
+	 * Računa ton note čije središte se nalazi na danoj x koordinati.
+	 * 
+	 * @param keyCenter x koordinata središta note
+	 * @return odgovarajući ton note
+	 */
+	Pitch computePitch(double keyCenter) {
 		double ofsettedCenter = keyCenter + keyboard.getOffset();
 		
 		int octave = (int) (ofsettedCenter/keyboard.getOctaveWidth());
@@ -80,7 +109,7 @@ public class PitchConverter {
 		default -> isFlat ? NoteAlphabet.ASH : NoteAlphabet.H;
 		};
 		
-		return new Pitch(alphabet, keyboard.getRealOctave(octave));
+		return Pitch.of(alphabet, keyboard.getRealOctave(octave));
 	}
 
 }
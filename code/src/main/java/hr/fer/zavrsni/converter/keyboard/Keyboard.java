@@ -14,6 +14,15 @@ public abstract class Keyboard {
 	/** Širina klavijature tj. širina slike iz koje čitamo podatke. */
 	private int keyboardWidth;
 	
+	/**
+	 * Vraća širinu klavijature.
+	 * 
+	 * @return širina klavijature u pikselima
+	 */
+	public int getKeyboardWidth() {
+		return keyboardWidth;
+	}
+	
 	/**
 	 * Postavlja širinu klavijature na danu.
 	 * 
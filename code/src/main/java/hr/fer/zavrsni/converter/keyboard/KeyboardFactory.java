@@ -39,4 +39,36 @@ public class KeyboardFactory {
 	public static List<Keyboard> getKeyboards() {
 		return keyboards;
 	}
+	
+	/**
+	 * Vraća klavijaturu s danim rasponom, npr. <code>A0 - C8</code>. Razmaci u rasponu se zanemaruju.
+	 * 
+	 * @param range raspon klavijature
+	 * @return klavijatura s danim rasponom
+	 * @throws IllegalArgumentException ako ne postoji klavijatura s danim rasponom
+	 */
+	public static Keyboard getKeyboard(String range) {
+		String wanted = range.replace(" ", "");
+		return keyboards.stream()
+				.filter(k -> k.getRange().replace(" ", "").equalsIgnoreCase(wanted))
+				.findFirst()
+				.orElseThrow(() -> new IllegalArgumentException("Nepoznata klavijatura: " + range + ". Dostupne: "
+						+ keyboards.stream().map(Keyboard::getRange).collect(Collectors.joining(", "))));
+	}
+	
+	/**
+	 * Stvara novu klavijaturu istog razreda kao dana, bez postavljene širine.
+	 * Svaka obrada videozapisa koristi vlastitu klavijaturu, pa postavljanje širine ne utječe na druge obrade.
+	 * 
+	 * @param keyboard klavijatura čija se kopija stvara
+	 * @return nova klavijatura istog razreda
+	 * @throws IllegalArgumentException ako se klavijatura ne može stvoriti
+	 */
+	public static Keyboard copyOf(Keyboard keyboard) {
+		try {
+			return keyboard.getClass().getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Klavijatura " + keyboard.getRange() + " se ne može stvoriti.", e);
+		}
+	}
 }
@@ -20,6 +20,8 @@ public class Note implements Comparable<Note> {
 	
 	/** Ton note. */
 	private Pitch pitch;
+	/** Zapis tona note u notnom pismu. */
+	private Spelling spelling;
 	/** Ako nota ne spada u ljestvicu, znak koji se treba nalaziti ispred nje: 1 povisilica, 0 razješilica, -1 snizilica, inače -2. */
 	private int accidental;
 	
@@ -60,6 +62,7 @@ public class Note implements Comparable<Note> {
 	public Note(boolean rest, Pitch pitch, int accidental, boolean chord, boolean leftHand, int startTime, int endTime) {
 		this.rest = rest;
 		this.pitch = pitch;
+		this.spelling = pitch == null ? null : Spelling.of(pitch);
 		this.accidental = accidental;
 		this.chord = chord;
 		this.leftHand = leftHand;
@@ -153,6 +156,24 @@ public class Note implements Comparable<Note> {
 		return pitch;
 	}
 	
+	/**
+	 * Vraća zapis tona note u notnom pismu. Dok se nota ne prilagodi tonalitetu, ton se zapisuje bez izmjene.
+	 * 
+	 * @return zapis tona note
+	 */
+	public Spelling getSpelling() {
+		return spelling;
+	}
+	
+	/**
+	 * Postavlja zapis tona note u notnom pismu.
+	 * 
+	 * @param spelling zapis tona note
+	 */
+	public void setSpelling(Spelling spelling) {
+		this.spelling = spelling;
+	}
+	
 	/**
 	 * Vraća znak koji se treba nalaziti ispred note ako ona ne spada u ljestvicu.
 	 * Povisilica je 1, razrješilica je 0, snizilica je -1, a ako je nota u ljestvici vraća se -2.
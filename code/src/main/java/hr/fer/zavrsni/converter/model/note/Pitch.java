@@ -1,129 +1,101 @@
 package hr.fer.zavrsni.converter.model.note;
 
 /**
- * Razred predstavlja ton note.
- * 
+ * Razred predstavlja ton note, određen MIDI brojem tona.
+ * Ton je nepromjenjiv i za svaki MIDI broj postoji samo jedan objekt, pa se tonovi uspoređuju po identitetu.
+ * Zapis tona u notnom pismu, koji ovisi o tonalitetu pjesme, određuje razred {@link Spelling}.
+ *
  * @author Ana Bagić
  *
  */
 public class Pitch implements Comparable<Pitch> {
 
-	/** Ton note unutar oktave. */
-	private NoteAlphabet alphabet;
-	/** Oktava tona. */
-	private int octave;
-	/** Izmjena note: -1 za sniženu notu, 1 za povišenu, 0 inače. */
-	private int alter;
-	
-	/**
-	 * Stvara novi ton note na temelju notne abecede i oktave.
-	 * 
-	 * @param alphabet abeceda tona unutar oktave
-	 * @param octave oktava tona
-	 */
-	public Pitch(NoteAlphabet alphabet, int octave) {
-		this.alphabet = alphabet;
-		this.octave = octave;
-		this.alter = 0;
-	}
-	
-	/**
-	 * Vraća abecedu tona unutar oktave.
-	 * 
-	 * @return abecedu tona unutar oktave
-	 */
-	public NoteAlphabet getAlphabet() {
-		return alphabet;
+	/** Broj mogućih MIDI tonova. */
+	private static final int MIDI_PITCHES = 128;
+	/** Broj tonova u oktavi. */
+	private static final int OCTAVE = 12;
+	/** Svi tonovi, po MIDI broju. */
+	private static final Pitch[] pitches = new Pitch[MIDI_PITCHES];
+
+	static {
+		for(int i = 0; i < MIDI_PITCHES; i++) {
+			pitches[i] = new Pitch(i);
+		}
 	}
-	
+
+	/** MIDI broj tona. */
+	private final int midi;
+
 	/**
-	 * Postavlja abecedu tona na danu.
-	 * 
-	 * @param alphabet abeceda tona unutar oktave
+	 * Privatni konstruktor, tonovi se dohvaćaju metodama {@link #of(int)} i {@link #of(NoteAlphabet, int)}.
+	 *
+	 * @param midi MIDI broj tona
 	 */
-	public void setAlphabet(NoteAlphabet alphabet) {
-		this.alphabet = alphabet;
+	private Pitch(int midi) {
+		this.midi = midi;
 	}
-	
+
 	/**
-	 * Vraća oktavu u kojoj se nalazi ton.
-	 * 
-	 * @return oktavu u kojoj se nalazi ton
+	 * Vraća ton s danim MIDI brojem.
+	 *
+	 * @param midi MIDI broj tona, od 0 do 127
+	 * @return ton s danim MIDI brojem
+	 * @throws IllegalArgumentException ako MIDI broj nije u dopuštenom rasponu
 	 */
-	public int getOctave() {
-		return octave;
+	public static Pitch of(int midi) {
+		if(midi < 0 || midi >= MIDI_PITCHES) {
+			throw new IllegalArgumentException("MIDI broj tona mora biti između 0 i " + (MIDI_PITCHES - 1) + ".");
+		}
+
+		return pitches[midi];
 	}
-	
+
 	/**
-	 * Smanjuje oktavu za 1.
+	 * Vraća ton na temelju notne abecede i oktave.
+	 *
+	 * @param alphabet abeceda tona unutar oktave
+	 * @param octave oktava tona
+	 * @return ton s danom abecedom u danoj oktavi
 	 */
-	public void decreaseOctave() {
-		octave--;
+	public static Pitch of(NoteAlphabet alphabet, int octave) {
+		return of((octave + 1)*OCTAVE + alphabet.ordinal());
 	}
-	
+
 	/**
-	 * Povećava oktavu za 1.
+	 * Vraća MIDI broj tona.
+	 *
+	 * @return MIDI broj tona
 	 */
-	public void increaseOctave() {
-		octave++;
+	public int getMidi() {
+		return midi;
 	}
-	
+
 	/**
-	 * Vraća izmjenu tona. Izmjena: -1 za sniženu notu, 1 za povišenu, 0 inače.
-	 * 
-	 * @return izmjenu tona
+	 * Vraća abecedu tona unutar oktave.
+	 *
+	 * @return abecedu tona unutar oktave
 	 */
-	public int getAlter() {
-		return alter;
+	public NoteAlphabet getAlphabet() {
+		return NoteAlphabet.values()[midi % OCTAVE];
 	}
-	
+
 	/**
-	 * Postavlja izmjenu tona na danu.
-	 * 
-	 * @param alter izmjena tona
+	 * Vraća oktavu u kojoj se nalazi ton.
+	 *
+	 * @return oktavu u kojoj se nalazi ton
 	 */
-	public void setAlter(int alter) {
-		this.alter = alter;
-	}
-	
-	@Override
-	public String toString() {
-		return "alphabet: " + alphabet.toString() + " octave: " + octave;
-	}
-
-	@Override
-	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((alphabet == null) ? 0 : alphabet.hashCode());
-		result = prime * result + octave;
-		return result;
+	public int getOctave() {
+		return midi/OCTAVE - 1;
 	}
 
 	@Override
-	public boolean equals(Object obj) {
-		if (this == obj)
-			return true;
-		if (obj == null)
-			return false;
-		if (getClass() != obj.getClass())
-			return false;
-		Pitch other = (Pitch) obj;
-		if (alphabet != other.alphabet)
-			return false;
-		if (octave != other.octave)
-			return false;
-		return true;
+	public String toString() {
+		return "alphabet: " + getAlphabet().toString() + " octave: " + getOctave();
 	}
 
 	@Override
 	public int compareTo(Pitch o) {
-		int byOctave = Integer.compare(octave, o.octave);
-		if(byOctave == 0) {
-			return alphabet.compareTo(o.alphabet);
-		}
-		
-		return byOctave;
+		return Integer.compare(midi, o.midi);
 	}
-	
+
 }
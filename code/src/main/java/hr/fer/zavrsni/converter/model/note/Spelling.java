@@ -0,0 +1,74 @@
+package hr.fer.zavrsni.converter.model.note;
+
+/**
+ * Razred predstavlja zapis tona u notnom pismu: notnu abecedu, oktavu i izmjenu.
+ * Isti ton se, ovisno o tonalitetu pjesme, može zapisati kao povišena ili snižena nota.
+ *
+ * @author Ana Bagić
+ *
+ */
+public class Spelling {
+
+	/** Ton note unutar oktave. */
+	private final NoteAlphabet alphabet;
+	/** Oktava tona. */
+	private final int octave;
+	/** Izmjena note: -1 za sniženu notu, 1 za povišenu, 0 inače. */
+	private final int alter;
+
+	/**
+	 * Stvara novi zapis tona.
+	 *
+	 * @param alphabet abeceda tona unutar oktave
+	 * @param octave oktava tona
+	 * @param alter izmjena note: -1 za sniženu notu, 1 za povišenu, 0 inače
+	 */
+	public Spelling(NoteAlphabet alphabet, int octave, int alter) {
+		this.alphabet = alphabet;
+		this.octave = octave;
+		this.alter = alter;
+	}
+
+	/**
+	 * Vraća zapis danog tona bez izmjene.
+	 *
+	 * @param pitch ton koji se zapisuje
+	 * @return zapis tona bez izmjene
+	 */
+	public static Spelling of(Pitch pitch) {
+		return new Spelling(pitch.getAlphabet(), pitch.getOctave(), 0);
+	}
+
+	/**
+	 * Vraća abecedu tona unutar oktave.
+	 *
+	 * @return abecedu tona unutar oktave
+	 */
+	public NoteAlphabet getAlphabet() {
+		return alphabet;
+	}
+
+	/**
+	 * Vraća oktavu u kojoj se nalazi ton.
+	 *
+	 * @return oktavu u kojoj se nalazi ton
+	 */
+	public int getOctave() {
+		return octave;
+	}
+
+	/**
+	 * Vraća izmjenu tona. Izmjena: -1 za sniženu notu, 1 za povišenu, 0 inače.
+	 *
+	 * @return izmjenu tona
+	 */
+	public int getAlter() {
+		return alter;
+	}
+
+	@Override
+	public String toString() {
+		return "alphabet: " + alphabet.toString() + " octave: " + octave + " alter: " + alter;
+	}
+
+}
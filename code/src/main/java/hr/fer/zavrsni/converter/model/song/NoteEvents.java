@@ -0,0 +1,180 @@
+package hr.fer.zavrsni.converter.model.song;
+
+import java.util.Arrays;
+
+import hr.fer.zavrsni.converter.model.note.Note;
+import hr.fer.zavrsni.converter.model.note.Pitch;
+
+/**
+ * Razred pohranjuje note pročitane iz videozapisa u stupcima primitivnih polja: početak, kraj, MIDI broj tona i zastavice.
+ * Note se dodaju na kraj, a sortiraju se jednom, tek kada su potrebne po redu.
+ * Objekti razreda {@link Note} stvaraju se tek na zahtjev, metodom {@link #toNote(int)}.
+ *
+ * @author Ana Bagić
+ *
+ */
+public class NoteEvents {
+
+	/** Zastavica note koja se svira lijevom rukom. */
+	public static final int LEFT_HAND = 1;
+	/** Zastavica note koja je vezana sa sljedećom notom istog tona. */
+	public static final int TIE = 2;
+	/** Zastavica stanke. */
+	public static final int REST = 4;
+
+	/** Početni kapacitet polja. */
+	private static final int INITIAL_CAPACITY = 64;
+	/** Broj bitova za redni broj note u ključu sortiranja. */
+	private static final int INDEX_BITS = 25;
+	/** Broj bitova za MIDI broj tona u ključu sortiranja. */
+	private static final int KEY_BITS = 7;
+
+	/** Brojevi slika u kojima su note započele. */
+	private int[] start = new int[INITIAL_CAPACITY];
+	/** Brojevi slika u kojima su note završile. */
+	private int[] end = new int[INITIAL_CAPACITY];
+	/** MIDI brojevi tonova nota. */
+	private int[] key = new int[INITIAL_CAPACITY];
+	/** Zastavice nota. */
+	private int[] flags = new int[INITIAL_CAPACITY];
+	/** Broj nota. */
+	private int size;
+	/** Jesu li note sortirane. */
+	private boolean sorted = true;
+
+	/**
+	 * Dodaje notu na kraj.
+	 *
+	 * @param start broj slike u kojoj je nota započela
+	 * @param end broj slike u kojoj je nota završila
+	 * @param key MIDI broj tona note
+	 * @param flags zastavice note
+	 */
+	public void add(int start, int end, int key, int flags) {
+		if(size == this.start.length) {
+			int capacity = 2*size;
+			this.start = Arrays.copyOf(this.start, capacity);
+			this.end = Arrays.copyOf(this.end, capacity);
+			this.key = Arrays.copyOf(this.key, capacity);
+			this.flags = Arrays.copyOf(this.flags, capacity);
+		}
+
+		this.start[size] = start;
+		this.end[size] = end;
+		this.key[size] = key;
+		this.flags[size] = flags;
+		size++;
+		sorted = false;
+	}
+
+	/**
+	 * Sortira note po početku, pa po tonu. Od više nota s istim početkom i tonom zadržava se prva dodana.
+	 *
+	 * @throws IllegalStateException ako je nota previše za sortiranje
+	 */
+	public void sort() {
+		if(sorted) return;
+		if(size >= 1 << INDEX_BITS) {
+			throw new IllegalStateException("Previše nota za sortiranje: " + size + ".");
+		}
+
+		long[] order = new long[size];
+		for(int i = 0; i < size; i++) {
+			order[i] = (long) start[i] << (KEY_BITS + INDEX_BITS) | (long) key[i] << INDEX_BITS | i;
+		}
+		Arrays.sort(order);
+
+		int[] sortedStart = new int[start.length];
+		int[] sortedEnd = new int[end.length];
+		int[] sortedKey = new int[key.length];
+		int[] sortedFlags = new int[flags.length];
+		int count = 0;
+		for(int j = 0; j < size; j++) {
+			int i = (int) (order[j] & ((1 << INDEX_BITS) - 1));
+			if(count > 0 && sortedStart[count - 1] == start[i] && sortedKey[count - 1] == key[i]) continue;
+
+			sortedStart[count] = start[i];
+			sortedEnd[count] = end[i];
+			sortedKey[count] = key[i];
+			sortedFlags[count] = flags[i];
+			count++;
+		}
+
+		start = sortedStart;
+		end = sortedEnd;
+		key = sortedKey;
+		flags = sortedFlags;
+		size = count;
+		sorted = true;
+	}
+
+	/**
+	 * Vraća broj nota.
+	 *
+	 * @return broj nota
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Vraća broj slike u kojoj je nota započela.
+	 *
+	 * @param i redni broj note
+	 * @return broj slike u kojoj je nota započela
+	 */
+	public int getStart(int i) {
+		return start[i];
+	}
+
+	/**
+	 * Vraća broj slike u kojoj je nota završila.
+	 *
+	 * @param i redni broj note
+	 * @return broj slike u kojoj je nota završila
+	 */
+	public int getEnd(int i) {
+		return end[i];
+	}
+
+	/**
+	 * Vraća MIDI broj tona note.
+	 *
+	 * @param i redni broj note
+	 * @return MIDI broj tona note
+	 */
+	public int getKey(int i) {
+		return key[i];
+	}
+
+	/**
+	 * Vraća zastavice note.
+	 *
+	 * @param i redni broj note
+	 * @return zastavice note
+	 */
+	public int getFlags(int i) {
+		return flags[i];
+	}
+
+	/**
+	 * Svim notama mijenja ruku kojom se sviraju.
+	 */
+	public void swapHands() {
+		for(int i = 0; i < size; i++) {
+			flags[i] ^= LEFT_HAND;
+		}
+	}
+
+	/**
+	 * Stvara objekt note s podatcima dane note.
+	 *
+	 * @param i redni broj note
+	 * @return nova nota
+	 */
+	public Note toNote(int i) {
+		Note note = new Note(Pitch.of(key[i]), (flags[i] & LEFT_HAND) != 0, start[i]);
+		note.setEndTime(end[i]);
+		return note;
+	}
+}
@@ -0,0 +1,319 @@
+package hr.fer.zavrsni.converter.model.song;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Razred čita binarnu datoteku nota mapiranu u memoriju, bez stvaranja objekata razreda {@link hr.fer.zavrsni.converter.model.note.Note}.
+ * <p>
+ * Datoteka počinje zaglavljem od {@value #HEADER_SIZE} bajtova: oznaka formata, inačica, broj slika po sekundi,
+ * prva slika s notom, broj slika videozapisa, zastavice zaglavlja i točan broj slika po sekundi. Slijede zapisi nota od po {@value #RECORD_SIZE} bajtova:
+ * početak i kraj note kao cijeli brojevi, MIDI broj tona i zastavice note ({@link NoteEvents#LEFT_HAND},
+ * {@link NoteEvents#TIE}, {@link NoteEvents#REST}). Broj nota određuje se iz veličine datoteke, pa se note mogu samo dodavati
+ * na kraj (vidi {@link NoteLogWriter}), a nepotpuni zadnji zapis se zanemaruje.
+ * <p>
+ * Za pretraživanje po vremenu gradi se rijetki indeks: za svaki blok od {@value #INDEX_INTERVAL} zapisa pamte se
+ * najraniji početak i najkasniji kraj nota u bloku, pa se čitaju samo blokovi koji mogu sadržavati tražene note.
+ * Note zato ne moraju biti sortirane. Ako su note zapisane sortirane po početku (zastavica zaglavlja {@link #SORTED}),
+ * prvi blok koji može sadržavati tražene note nalazi se binarnim pretraživanjem, a čitanje staje na prvom bloku
+ * koji počinje nakon traženog intervala.
+ *
+ * @author Ana Bagić
+ *
+ */
+public class NoteLog {
+
+	/** Oznaka formata na početku datoteke, "NOTE". */
+	static final int MAGIC = 0x4E4F5445;
+	/** Inačica formata datoteke. */
+	static final int VERSION = 2;
+	/** Veličina zaglavlja u bajtovima. */
+	static final int HEADER_SIZE = 32;
+	/** Veličina zapisa jedne note u bajtovima: početak, kraj, ton i zastavice. */
+	static final int RECORD_SIZE = 10;
+	/** Zastavica zaglavlja za note koje se sviraju s dvije ruke. */
+	static final int TWO_HANDS = 1;
+	/** Zastavica zaglavlja za note zapisane sortirane po početku. */
+	static final int SORTED = 2;
+	/** Broj zapisa u jednom bloku rijetkog indeksa. */
+	private static final int INDEX_INTERVAL = 256;
+
+	/** Sadržaj datoteke mapiran u memoriju. */
+	private final MappedByteBuffer buffer;
+	/** Broj nota u datoteci. */
+	private final int size;
+	/** Najraniji početak note u svakom bloku, <code>null</code> dok indeks nije izgrađen. */
+	private volatile int[] blockStart;
+	/** Najkasniji kraj note u svakom bloku, a kod sortiranih nota u svakom bloku i svim prethodnim blokovima. */
+	private int[] blockEnd;
+
+	/**
+	 * Stvara čitač nad sadržajem datoteke s provjerenim zaglavljem.
+	 *
+	 * @param buffer sadržaj datoteke mapiran u memoriju
+	 * @param size broj nota u datoteci
+	 */
+	private NoteLog(MappedByteBuffer buffer, int size) {
+		this.buffer = buffer;
+		this.size = size;
+	}
+
+	/**
+	 * Mapira danu datoteku nota u memoriju i provjerava njeno zaglavlje.
+	 *
+	 * @param file putanja do datoteke nota
+	 * @return čitač datoteke nota
+	 * @throws IOException ako se datoteka ne može pročitati ili nije datoteka nota podržane inačice
+	 */
+	public static NoteLog open(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if(length < HEADER_SIZE) {
+				throw new IOException("Datoteka nota " + file + " nema zaglavlje.");
+			}
+			if(length > Integer.MAX_VALUE) {
+				throw new IOException("Datoteka nota " + file + " je prevelika za mapiranje.");
+			}
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			checkHeader(buffer, file);
+			return new NoteLog(buffer, (int) ((length - HEADER_SIZE) / RECORD_SIZE));
+		}
+	}
+
+	/**
+	 * Provjerava oznaku formata i inačicu na početku danog sadržaja datoteke.
+	 *
+	 * @param header sadržaj datoteke od početka zaglavlja
+	 * @param file putanja do datoteke, za poruku o pogrešci
+	 * @throws IOException ako datoteka nije datoteka nota podržane inačice
+	 */
+	static void checkHeader(ByteBuffer header, Path file) throws IOException {
+		if(header.getInt(0) != MAGIC) {
+			throw new IOException("Datoteka " + file + " nije datoteka nota.");
+		}
+		if(header.getInt(4) != VERSION) {
+			throw new IOException("Nepodržana inačica datoteke nota " + file + ": " + header.getInt(4));
+		}
+	}
+
+	/**
+	 * Vraća broj slika po sekundi videozapisa iz zaglavlja.
+	 *
+	 * @return broj slika po sekundi, 0 ako nije poznat
+	 */
+	public int getFramesPerSecond() {
+		return buffer.getInt(8);
+	}
+
+	/**
+	 * Vraća točan broj slika po sekundi videozapisa iz zaglavlja, koji ne mora biti cijeli broj.
+	 *
+	 * @return točan broj slika po sekundi, 0 ako nije poznat
+	 */
+	public double getExactFramesPerSecond() {
+		return buffer.getDouble(24);
+	}
+
+	/**
+	 * Vraća prvu sliku u kojoj se pojavila nota iz zaglavlja.
+	 *
+	 * @return prva slika s notom, -1 ako nije poznata
+	 */
+	public int getFirstFrame() {
+		return buffer.getInt(12);
+	}
+
+	/**
+	 * Vraća broj slika videozapisa iz zaglavlja.
+	 *
+	 * @return broj slika videozapisa, 0 ako nije poznat
+	 */
+	public int getFrameCount() {
+		return buffer.getInt(16);
+	}
+
+	/**
+	 * Vraća sviraju li se note s dvije ruke, prema zaglavlju.
+	 *
+	 * @return <code>true</code> ako se note sviraju s dvije ruke, inače <code>false</code>
+	 */
+	public boolean isTwoHands() {
+		return (buffer.getInt(20) & TWO_HANDS) != 0;
+	}
+
+	/**
+	 * Vraća jesu li note zapisane sortirane po početku, prema zaglavlju.
+	 *
+	 * @return <code>true</code> ako su note sortirane, inače <code>false</code>
+	 */
+	public boolean isSorted() {
+		return (buffer.getInt(20) & SORTED) != 0;
+	}
+
+	/**
+	 * Vraća broj nota u datoteci.
+	 *
+	 * @return broj nota
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Vraća broj slike u kojoj je nota započela.
+	 *
+	 * @param i redni broj note
+	 * @return broj slike u kojoj je nota započela
+	 */
+	public int getStart(int i) {
+		return buffer.getInt(offset(i));
+	}
+
+	/**
+	 * Vraća broj slike u kojoj je nota završila.
+	 *
+	 * @param i redni broj note
+	 * @return broj slike u kojoj je nota završila
+	 */
+	public int getEnd(int i) {
+		return buffer.getInt(offset(i) + 4);
+	}
+
+	/**
+	 * Vraća MIDI broj tona note.
+	 *
+	 * @param i redni broj note
+	 * @return MIDI broj tona note
+	 */
+	public int getKey(int i) {
+		return buffer.get(offset(i) + 8) & 0xFF;
+	}
+
+	/**
+	 * Vraća zastavice note.
+	 *
+	 * @param i redni broj note
+	 * @return zastavice note
+	 */
+	public int getFlags(int i) {
+		return buffer.get(offset(i) + 9) & 0xFF;
+	}
+
+	/**
+	 * Vraća položaj zapisa note u datoteci.
+	 *
+	 * @param i redni broj note
+	 * @return položaj zapisa note u bajtovima od početka datoteke
+	 * @throws IndexOutOfBoundsException ako nota ne postoji
+	 */
+	private int offset(int i) {
+		return HEADER_SIZE + Objects.checkIndex(i, size) * RECORD_SIZE;
+	}
+
+	/**
+	 * Dodaje prvih nekoliko nota iz datoteke na kraj danih nota.
+	 *
+	 * @param events note u koje se dodaju note iz datoteke
+	 * @param count broj nota koje se dodaju
+	 * @throws IndexOutOfBoundsException ako datoteka ima manje nota od traženog broja
+	 */
+	public void addTo(NoteEvents events, int count) {
+		Objects.checkFromToIndex(0, count, size);
+		for(int i = 0; i < count; i++) {
+			events.add(getStart(i), getEnd(i), getKey(i), getFlags(i));
+		}
+	}
+
+	/**
+	 * Poziva danu akciju s rednim brojem svake note koja svira u barem jednoj slici iz intervala [from, to),
+	 * redom kojim su note zapisane. Čitaju se samo blokovi zapisa koji prema rijetkom indeksu mogu sadržavati takve note;
+	 * kod sortiranih nota prvi takav blok nalazi se binarnim pretraživanjem.
+	 *
+	 * @param from prva slika intervala
+	 * @param to slika nakon zadnje slike intervala
+	 * @param action akcija koja prima redni broj note
+	 */
+	public void forEachBetween(int from, int to, IntConsumer action) {
+		if(blockStart == null) {
+			buildIndex();
+		}
+
+		boolean sorted = isSorted();
+		for(int b = sorted ? firstBlockEndingAfter(from) : 0; b < blockStart.length; b++) {
+			if(blockStart[b] >= to) {
+				if(sorted) break;
+				continue;
+			}
+			if(blockEnd[b] <= from) continue;
+
+			int last = Math.min(size, (b + 1) * INDEX_INTERVAL);
+			for(int i = b * INDEX_INTERVAL; i < last; i++) {
+				int start = getStart(i);
+				if(start >= to) {
+					if(sorted) break;
+					continue;
+				}
+				if(getEnd(i) > from) {
+					action.accept(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Binarnim pretraživanjem traži prvi blok sortiranih nota u kojem ili prije kojeg neka nota završava nakon dane slike.
+	 * Najkasniji krajevi blokova sortiranih nota ne padaju, jer uključuju i sve prethodne blokove.
+	 *
+	 * @param from slika nakon koje nota mora završiti
+	 * @return redni broj prvog takvog bloka ili broj blokova ako takvog bloka nema
+	 */
+	private int firstBlockEndingAfter(int from) {
+		int low = 0;
+		int high = blockEnd.length;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(blockEnd[mid] <= from) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Gradi rijetki indeks: najraniji početak i najkasniji kraj nota u svakom bloku zapisa. Kod sortiranih nota najkasniji
+	 * kraj bloka uključuje i sve prethodne blokove, kako bi se prvi blok mogao naći binarnim pretraživanjem.
+	 */
+	private synchronized void buildIndex() {
+		if(blockStart != null) return;
+
+		int blocks = (size + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+		int[] starts = new int[blocks];
+		int[] ends = new int[blocks];
+		for(int b = 0; b < blocks; b++) {
+			starts[b] = Integer.MAX_VALUE;
+			ends[b] = Integer.MIN_VALUE;
+		}
+		for(int i = 0; i < size; i++) {
+			int b = i / INDEX_INTERVAL;
+			starts[b] = Math.min(starts[b], getStart(i));
+			ends[b] = Math.max(ends[b], getEnd(i));
+		}
+		if(isSorted()) {
+			for(int b = 1; b < blocks; b++) {
+				ends[b] = Math.max(ends[b], ends[b - 1]);
+			}
+		}
+
+		blockEnd = ends;
+		blockStart = starts;
+	}
+}
@@ -0,0 +1,182 @@
+package hr.fer.zavrsni.converter.model.song;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import hr.fer.zavrsni.converter.model.note.Note;
+
+/**
+ * Razred zapisuje note u binarnu datoteku nota (vidi {@link NoteLog}). Note se samo dodaju na kraj datoteke,
+ * kroz međuspremnik koji se zapisuje kada se napuni, pozivom {@link #flush()} i pri zatvaranju.
+ *
+ * @author Ana Bagić
+ *
+ */
+public class NoteLogWriter implements Closeable {
+
+	/** Broj zapisa u međuspremniku. */
+	private static final int BUFFER_RECORDS = 4096;
+
+	/** Kanal datoteke nota. */
+	private final FileChannel channel;
+	/** Zapisi koji još nisu zapisani u datoteku. */
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_RECORDS * NoteLog.RECORD_SIZE);
+	/** Broj nota u datoteci, uključujući note u međuspremniku. */
+	private int size;
+
+	/**
+	 * Stvara pisač nad kanalom pozicioniranim na kraj zadnjeg zapisa.
+	 *
+	 * @param channel kanal datoteke nota
+	 * @param size broj nota u datoteci
+	 */
+	private NoteLogWriter(FileChannel channel, int size) {
+		this.channel = channel;
+		this.size = size;
+	}
+
+	/**
+	 * Stvara novu datoteku nota s danim zaglavljem. Postojeća datoteka se briše.
+	 *
+	 * @param file putanja do datoteke nota
+	 * @param fps točan broj slika po sekundi videozapisa, 0 ako nije poznat
+	 * @param firstFrame prva slika u kojoj se pojavila nota, -1 ako nije poznata
+	 * @param frameCount broj slika videozapisa, 0 ako nije poznat
+	 * @param twoHands sviraju li se note s dvije ruke
+	 * @param sorted zapisuju li se note sortirane po početku
+	 * @return pisač nove datoteke nota
+	 * @throws IOException ako se datoteka ne može stvoriti
+	 */
+	public static NoteLogWriter create(Path file, double fps, int firstFrame, int frameCount, boolean twoHands, boolean sorted) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(NoteLog.HEADER_SIZE)
+					.putInt(NoteLog.MAGIC).putInt(NoteLog.VERSION)
+					.putInt((int) fps).putInt(firstFrame).putInt(frameCount).putInt((twoHands ? NoteLog.TWO_HANDS : 0) | (sorted ? NoteLog.SORTED : 0))
+					.putDouble(fps);
+			header.flip();
+			while(header.hasRemaining()) {
+				channel.write(header);
+			}
+			return new NoteLogWriter(channel, 0);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Otvara postojeću datoteku nota za dodavanje. Note iza danog broja nota se brišu.
+	 *
+	 * @param file putanja do datoteke nota
+	 * @param size broj nota koje se zadržavaju
+	 * @return pisač datoteke nota
+	 * @throws IOException ako se datoteka ne može otvoriti, nije datoteka nota podržane inačice ili ima manje nota od danog broja
+	 */
+	public static NoteLogWriter append(Path file, int size) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(NoteLog.HEADER_SIZE);
+			channel.read(header, 0);
+			if(header.hasRemaining()) {
+				throw new IOException("Datoteka nota " + file + " nema zaglavlje.");
+			}
+			NoteLog.checkHeader(header, file);
+
+			long length = NoteLog.HEADER_SIZE + (long) size * NoteLog.RECORD_SIZE;
+			if(channel.size() < length) {
+				throw new IOException("Datoteka nota " + file + " ima manje od " + size + " nota.");
+			}
+			channel.truncate(length);
+			channel.position(length);
+			return new NoteLogWriter(channel, size);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Dodaje notu na kraj datoteke.
+	 *
+	 * @param start broj slike u kojoj je nota započela
+	 * @param end broj slike u kojoj je nota završila
+	 * @param key MIDI broj tona note
+	 * @param flags zastavice note
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	public void append(int start, int end, int key, int flags) throws IOException {
+		if(!buffer.hasRemaining()) {
+			flush();
+		}
+		buffer.putInt(start).putInt(end).put((byte) key).put((byte) flags);
+		size++;
+	}
+
+	/**
+	 * Dodaje notu ili stanku na kraj datoteke. Stanka se zapisuje s tonom 0.
+	 *
+	 * @param note nota ili stanka
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	public void append(Note note) throws IOException {
+		int flags = (note.isLeftHand() ? NoteEvents.LEFT_HAND : 0)
+				| (note.isTiedStart() ? NoteEvents.TIE : 0)
+				| (note.isRest() ? NoteEvents.REST : 0);
+		append(note.getStartTime(), note.getEndTime(), note.isRest() ? 0 : note.getPitch().getMidi(), flags);
+	}
+
+	/**
+	 * Dodaje note s rednim brojevima iz intervala [from, to) na kraj datoteke.
+	 *
+	 * @param events note
+	 * @param from redni broj prve note koja se dodaje
+	 * @param to redni broj note nakon zadnje note koja se dodaje
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	public void append(NoteEvents events, int from, int to) throws IOException {
+		for(int i = from; i < to; i++) {
+			append(events.getStart(i), events.getEnd(i), events.getKey(i), events.getFlags(i));
+		}
+	}
+
+	/**
+	 * Vraća broj nota u datoteci, uključujući note koje još nisu zapisane iz međuspremnika.
+	 *
+	 * @return broj nota
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Zapisuje note iz međuspremnika u datoteku.
+	 *
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	public void flush() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Zapisuje note iz međuspremnika i zatvara datoteku.
+	 *
+	 * @throws IOException ako zapisivanje ili zatvaranje ne uspije
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+}
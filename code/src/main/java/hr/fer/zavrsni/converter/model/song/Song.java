@@ -1,11 +1,9 @@
 package hr.fer.zavrsni.converter.model.song;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
 
 import hr.fer.zavrsni.converter.model.note.Note;
 
@@ -27,10 +25,16 @@ public class Song implements Iterable<Note> {
 	private int beatsPerMinute;
 	/** Relativno trajanje jednog takta. */
 	private int measureDuration;
+	/** Broj slika po sekundi videozapisa iz kojeg je pjesma pročitana. */
+	private int framesPerSecond;
+	/** Trajanje jedinice mjere takta u slikama, određeno iz tempa pjesme. */
+	private double framesPerBeat;
 	/** Svira li se pjesma s dvije ruke. */
 	private boolean twoHands;
-	/** Sve note pjesme pročitane iz videozapisa. */
-	private Set<Note> notes = new TreeSet<>();
+	/** Sve note pjesme pročitane iz videozapisa, pohranjene po stupcima. */
+	private NoteEvents events = new NoteEvents();
+	/** Sortirani pogled na note pjesme kao objekte, stvara se tek kada je potreban. */
+	private List<Note> notes;
 	/** Svi taktovi pjesme. */
 	private List<Measure> measures = new LinkedList<>();
 
@@ -124,6 +128,42 @@ public class Song implements Iterable<Note> {
 		this.measureDuration = measureDuration;
 	}
 	
+	/**
+	 * Vraća broj slika po sekundi videozapisa iz kojeg je pjesma pročitana.
+	 * 
+	 * @return broj slika po sekundi videozapisa
+	 */
+	public int getFramesPerSecond() {
+		return framesPerSecond;
+	}
+
+	/**
+	 * Postavlja broj slika po sekundi videozapisa iz kojeg je pjesma pročitana.
+	 * 
+	 * @param framesPerSecond broj slika po sekundi videozapisa
+	 */
+	public void setFramesPerSecond(int framesPerSecond) {
+		this.framesPerSecond = framesPerSecond;
+	}
+	
+	/**
+	 * Vraća trajanje jedinice mjere takta u slikama.
+	 * 
+	 * @return trajanje jedinice mjere takta u slikama
+	 */
+	public double getFramesPerBeat() {
+		return framesPerBeat;
+	}
+
+	/**
+	 * Postavlja trajanje jedinice mjere takta u slikama.
+	 * 
+	 * @param framesPerBeat trajanje jedinice mjere takta u slikama
+	 */
+	public void setFramesPerBeat(double framesPerBeat) {
+		this.framesPerBeat = framesPerBeat;
+	}
+	
 	/**
 	 * Vraća svira li se pjesma s dvije ruke ili jednom.
 	 * 
@@ -143,21 +183,34 @@ public class Song implements Iterable<Note> {
 	}
 	
 	/**
-	 * Dodaje notu u kolekciju nota pročitanih iz videozapisa.
+	 * Dodaje notu u kolekciju nota pročitanih iz videozapisa. Sortirani pogled na note stvara se ponovno pri
+	 * sljedećem prolasku kroz note.
 	 * 
 	 * @param note nota pročitana iz videozapisa
 	 */
 	public void addNote(Note note) {
-		notes.add(note);
+		events.add(note.getStartTime(), note.getEndTime(), note.getPitch().getMidi(),
+				note.isLeftHand() ? NoteEvents.LEFT_HAND : 0);
+		notes = null;
+	}
+	
+	/**
+	 * Svim notama pjesme mijenja ruku kojom se sviraju.
+	 */
+	public void swapHands() {
+		events.swapHands();
+		if(notes != null) {
+			notes.forEach(n -> n.setLeftHand(!n.isLeftHand()));
+		}
 	}
 	
 	/**
-	 * Izbacuje sve note dane kolekcije iz kolekcije nota ove pjesme.
+	 * Vraća note pjesme pročitane iz videozapisa, pohranjene po stupcima.
 	 * 
-	 * @param notes note koje se žele izbaciti iz pjesme
+	 * @return note pjesme pohranjene po stupcima
 	 */
-	public void removeNotes(Collection<Note> notes) {
-		this.notes.removeAll(notes);
+	public NoteEvents getEvents() {
+		return events;
 	}
 	
 	/**
@@ -180,7 +233,25 @@ public class Song implements Iterable<Note> {
 
 	@Override
 	public Iterator<Note> iterator() {
-		return notes.iterator();
+		return getNotes().iterator();
+	}
+	
+	/**
+	 * Vraća sortirani pogled na note pjesme kao objekte. Pogled se stvara pri prvom pozivu, redom iz već sortiranih
+	 * stupaca.
+	 * 
+	 * @return sortirana lista nota pjesme
+	 */
+	private List<Note> getNotes() {
+		if(notes == null) {
+			events.sort();
+			notes = new ArrayList<>(events.size());
+			for(int i = 0; i < events.size(); i++) {
+				notes.add(events.toNote(i));
+			}
+		}
+		
+		return notes;
 	}
 
 }
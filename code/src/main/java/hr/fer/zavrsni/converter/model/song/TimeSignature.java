@@ -26,6 +26,42 @@ public class TimeSignature {
 		this.beatUnit = beatUnit;
 	}
 
+	/**
+	 * Stvara mjeru iz zapisa oblika <code>doba/jedinica</code>, npr. <code>3/4</code>.
+	 * 
+	 * @param text zapis mjere
+	 * @return mjera iz zapisa
+	 * @throws IllegalArgumentException ako zapis nije ispravna mjera ili broj doba nije pozitivan
+	 */
+	public static TimeSignature parse(String text) {
+		String[] parts = text.split("/");
+		if(parts.length != 2) {
+			throw new IllegalArgumentException("Mjera treba biti oblika doba/jedinica: " + text);
+		}
+		
+		NoteType beatUnit = switch (parts[1].trim()) {
+		case "1" -> NoteType.WHOLE;
+		case "2" -> NoteType.HALF;
+		case "4" -> NoteType.QUARTER;
+		case "8" -> NoteType.EIGHTH;
+		case "16" -> NoteType.N16TH;
+		case "32" -> NoteType.N32TH;
+		default -> throw new IllegalArgumentException("Nepoznata jedinica mjere: " + parts[1]);
+		};
+		
+		int beats;
+		try {
+			beats = Integer.parseInt(parts[0].trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Broj doba nije cijeli broj: " + parts[0]);
+		}
+		if(beats <= 0) {
+			throw new IllegalArgumentException("Broj doba treba biti pozitivan: " + parts[0]);
+		}
+		
+		return new TimeSignature(beats, beatUnit);
+	}
+
 	/**
 	 * Vraća broj doba unutar jednog takta.
 	 * 
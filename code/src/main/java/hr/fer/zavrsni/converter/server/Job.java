@@ -0,0 +1,269 @@
+package hr.fer.zavrsni.converter.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.opencv.core.Rect;
+
+import hr.fer.zavrsni.converter.cache.NoteCache;
+import hr.fer.zavrsni.converter.cache.ResultCache;
+import hr.fer.zavrsni.converter.converting.Converter;
+import hr.fer.zavrsni.converter.keyboard.KeyboardFactory;
+import hr.fer.zavrsni.converter.model.song.Song;
+import hr.fer.zavrsni.converter.model.song.SongMetadata;
+import hr.fer.zavrsni.converter.model.song.TimeSignature;
+import hr.fer.zavrsni.converter.util.Constants;
+import hr.fer.zavrsni.converter.util.ScaleUtil;
+import hr.fer.zavrsni.converter.util.TempoUtil;
+import hr.fer.zavrsni.converter.util.Util;
+import hr.fer.zavrsni.converter.util.XMLUtil;
+
+/**
+ * Razred predstavlja jedan posao poslužitelja: generiranje MusicXML dokumenta iz jednog videozapisa.
+ * Stanje posla može se čitati iz bilo koje dretve dok se posao izvodi.
+ *
+ * @author Ana Bagić
+ *
+ */
+class Job implements Runnable {
+
+	/**
+	 * Stanja posla.
+	 */
+	enum Status {
+		/** Posao čeka slobodnu dretvu za obradu. */
+		QUEUED,
+		/** Videozapis se obrađuje. */
+		RUNNING,
+		/** Dokument je generiran. */
+		DONE,
+		/** Generiranje nije uspjelo. */
+		FAILED
+	}
+
+	/** Identifikator posla. */
+	private final int id;
+	/** Putanja do videozapisa. */
+	private final Path video;
+	/** Pravokutnik slike u kojem padaju note. */
+	private final Rect area;
+	/** Obrada videozapisa, <code>null</code> nakon što posao završi. */
+	private Converter converter = new Converter();
+	/** Priručna memorija generiranih dokumenata ili <code>null</code>. */
+	private final ResultCache cache;
+
+	/** Trenutno stanje posla. */
+	private volatile Status status = Status.QUEUED;
+	/** Poruka o pogrešci ako generiranje nije uspjelo. */
+	private volatile String error;
+	/** Generirani MusicXML dokument. */
+	private volatile byte[] result;
+	/** Vrijeme završetka posla u milisekundama ili 0 ako posao nije završen. */
+	private volatile long finishedAt;
+
+	/**
+	 * Stvara novi posao iz danih parametara zahtjeva. Obavezni parametri su <code>video</code> (putanja do videozapisa)
+	 * i <code>roi</code> (pravokutnik slike oblika <code>x0,y0,x1,y1</code>), a neobavezni <code>keyboard</code>,
+	 * <code>bpm</code>, <code>time</code>, <code>name</code> i <code>artist</code>.
+	 *
+	 * @param id identifikator posla
+	 * @param params parametri zahtjeva
+	 * @param cache priručna memorija generiranih dokumenata ili <code>null</code>
+	 * @param noteCache priručna memorija prepoznatih nota ili <code>null</code>
+	 * @throws IllegalArgumentException ako parametri nisu ispravni
+	 */
+	Job(int id, Map<String, String> params, ResultCache cache, NoteCache noteCache) {
+		this.id = id;
+		this.cache = cache;
+		converter.setNoteCache(noteCache);
+
+		String video = required(params, "video");
+		this.video = Path.of(video);
+		if(!Files.isRegularFile(this.video)) {
+			throw new IllegalArgumentException("Videozapis ne postoji: " + video);
+		}
+		this.area = Util.parseRect(required(params, "roi"));
+
+		String range = params.get("keyboard");
+		if(range == null && KeyboardFactory.getKeyboards().isEmpty()) {
+			throw new IllegalArgumentException("Nije dostupna nijedna klavijatura (" + Constants.PATH_TO_KEYBOARDS + ").");
+		}
+		converter.getPitchConverter().setKeyboard(range == null ? KeyboardFactory.getKeyboards().get(0) : KeyboardFactory.getKeyboard(range));
+		converter.getPitchConverter().setKeyboardWidth(area.width);
+
+		int beatsPerMinute = Constants.DEFAULT_BEATS_PER_MINUTE;
+		if(params.containsKey("bpm")) {
+			try {
+				beatsPerMinute = Integer.parseInt(params.get("bpm"));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Zadani tempo nije cijeli broj.");
+			}
+			if(beatsPerMinute < 5 || beatsPerMinute > 500) {
+				throw new IllegalArgumentException("Tempo treba biti u intervalu 5-500");
+			}
+		}
+
+		converter.setPathToVideo(video);
+		converter.setSongMetadata(new SongMetadata(params.getOrDefault("name", Constants.DEFAULT_SONG_NAME),
+				params.getOrDefault("artist", Constants.DEFAULT_ARTIST_NAME)));
+		converter.getSong().setTimeSignature(TimeSignature.parse(params.getOrDefault("time", "4/4")));
+		converter.getSong().setBeatsPerMinute(beatsPerMinute);
+	}
+
+	/**
+	 * Vraća vrijednost obaveznog parametra zahtjeva.
+	 *
+	 * @param params parametri zahtjeva
+	 * @param name ime parametra
+	 * @return vrijednost parametra
+	 * @throws IllegalArgumentException ako parametar nije zadan
+	 */
+	private static String required(Map<String, String> params, String name) {
+		String value = params.get(name);
+		if(value == null || value.isBlank()) {
+			throw new IllegalArgumentException("Parametar " + name + " nije zadan.");
+		}
+		return value;
+	}
+
+	/**
+	 * Obrađuje videozapis i generira MusicXML dokument. Ako je dokument već generiran, uzima se iz priručne memorije.
+	 * Nakon završetka posao zadržava samo generirani dokument ili poruku o pogrešci.
+	 */
+	@Override
+	public void run() {
+		status = Status.RUNNING;
+
+		try {
+			String key = null;
+			if(cache != null) {
+				key = ResultCache.keyOf(converter, area);
+				byte[] cached = cache.get(key);
+				if(cached != null) {
+					result = cached;
+					status = Status.DONE;
+					return;
+				}
+			}
+
+			Song song = converter.extractNotes(area.tl(), area.br());
+
+			ScaleUtil.findScale(song);
+			ScaleUtil.fitToScale(song);
+
+			TempoUtil.findTempo(song);
+			TempoUtil.createTimeline(song, converter.getFirstFrame());
+
+			if(key != null) {
+				cache.put(key, song, null);
+				result = cache.get(key);
+			}
+			if(result == null) {
+				result = generate(song);
+			}
+			status = Status.DONE;
+		} catch (IOException | RuntimeException e) {
+			error = e.toString();
+			status = Status.FAILED;
+		} finally {
+			converter = null;
+			finishedAt = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Vraća identifikator posla.
+	 *
+	 * @return identifikator posla
+	 */
+	int getId() {
+		return id;
+	}
+
+	/**
+	 * Vraća trenutno stanje posla.
+	 *
+	 * @return trenutno stanje posla
+	 */
+	Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Vraća vrijeme završetka posla.
+	 *
+	 * @return vrijeme završetka posla u milisekundama ili 0 ako posao nije završen
+	 */
+	long getFinishedAt() {
+		return finishedAt;
+	}
+
+	/**
+	 * Vraća generirani MusicXML dokument.
+	 *
+	 * @return generirani dokument ili <code>null</code> ako posao nije završen
+	 */
+	byte[] getResult() {
+		return result;
+	}
+
+	/**
+	 * Generira MusicXML dokument pjesme kodiran u UTF-8, bez stvaranja dokumenta kao {@link String} objekta.
+	 *
+	 * @param song pjesma iz koje se generira dokument
+	 * @return generirani dokument
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	private static byte[] generate(Song song) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+			XMLUtil.generate(song, out);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Vraća opis posla u JSON obliku.
+	 *
+	 * @return opis posla u JSON obliku
+	 */
+	String toJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"id\":").append(id)
+			.append(",\"status\":\"").append(status).append('"')
+			.append(",\"video\":\"").append(escape(video.toString())).append('"');
+		if(status == Status.DONE) {
+			sb.append(",\"result\":\"/jobs/").append(id).append("/result\"");
+		}
+		if(error != null) {
+			sb.append(",\"error\":\"").append(escape(error)).append('"');
+		}
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Priprema dani tekst za zapis unutar JSON niza znakova.
+	 *
+	 * @param text tekst
+	 * @return tekst s označenim posebnim znakovima
+	 */
+	static String escape(String text) {
+		StringBuilder sb = new StringBuilder();
+		for(char c : text.toCharArray()) {
+			if(c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if(c < ' ') {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
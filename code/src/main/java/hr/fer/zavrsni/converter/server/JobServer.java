@@ -0,0 +1,365 @@
+package hr.fer.zavrsni.converter.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import hr.fer.zavrsni.converter.cache.NoteCache;
+import hr.fer.zavrsni.converter.cache.ResultCache;
+import hr.fer.zavrsni.converter.util.Constants;
+import hr.fer.zavrsni.converter.util.Util;
+
+/**
+ * Poslužitelj koji generira notne zapise iz videozapisa kao poslove, bez korisničkog sučelja.
+ * Sluša samo na lokalnoj adresi i nudi sljedeće zahtjeve:
+ * <ul>
+ * <li><code>POST /jobs</code> – stvara posao iz parametara zahtjeva (vidi {@link Job#Job(int, Map, ResultCache, NoteCache)}) i vraća njegov opis,</li>
+ * <li><code>GET /jobs/{id}</code> – vraća opis i stanje posla,</li>
+ * <li><code>GET /jobs/{id}/result</code> – vraća generirani MusicXML dokument,</li>
+ * <li><code>DELETE /jobs/{id}</code> – briše završeni posao i njegov dokument.</li>
+ * </ul>
+ * Završeni poslovi čuvaju se najviše {@value Constants#SERVER_JOB_TTL_SECONDS} sekundi, i to najviše
+ * {@value Constants#SERVER_MAX_FINISHED_JOBS} najnovijih, pa memorija poslužitelja ne raste s brojem zahtjeva.
+ * Parametri se šalju u upitu adrese ili u tijelu zahtjeva oblika <code>application/x-www-form-urlencoded</code>.
+ * <p>
+ * Zahtjevi se obrađuju u virtualnim dretvama ako ih Java platforma podržava, a inače u dretvama koje se stvaraju po potrebi.
+ * Videozapisi se obrađuju u zasebnom skupu s ograničenim brojem dretvi platforme, pa istovremeni zahtjevi
+ * ne mogu preopteretiti nativnu obradu slika. Već generirani dokumenti vraćaju se iz {@link ResultCache} bez obrade videozapisa,
+ * a već prepoznate note čitaju se iz {@link NoteCache}.
+ *
+ * @author Ana Bagić
+ *
+ */
+public class JobServer {
+
+	/** Putanja poslova. */
+	private static final String JOBS_PATH = "/jobs";
+	/** Sufiks putanje generiranog dokumenta posla. */
+	private static final String RESULT_SUFFIX = "/result";
+
+	/** HTTP poslužitelj. */
+	private HttpServer server;
+	/** Izvršitelj koji obrađuje zahtjeve. */
+	private ExecutorService requests;
+	/** Skup dretvi koji obrađuje videozapise. */
+	private ExecutorService extraction;
+	/** Svi poslovi po identifikatoru. */
+	private Map<Integer, Job> jobs = new ConcurrentHashMap<>();
+	/** Identifikator sljedećeg posla. */
+	private AtomicInteger nextId = new AtomicInteger(1);
+	/** Priručna memorija generiranih dokumenata ili <code>null</code>. */
+	private ResultCache cache;
+	/** Priručna memorija prepoznatih nota ili <code>null</code>. */
+	private NoteCache noteCache;
+
+	/**
+	 * Stvara novi poslužitelj na lokalnoj adresi i danom portu.
+	 *
+	 * @param port port poslužitelja, 0 za bilo koji slobodan port
+	 * @param extractionThreads najveći broj videozapisa koji se istovremeno obrađuju
+	 * @param cache priručna memorija generiranih dokumenata ili <code>null</code>
+	 * @param noteCache priručna memorija prepoznatih nota ili <code>null</code>
+	 * @throws IOException ako se poslužitelj ne može stvoriti
+	 */
+	public JobServer(int port, int extractionThreads, ResultCache cache, NoteCache noteCache) throws IOException {
+		this.cache = cache;
+		this.noteCache = noteCache;
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		requests = newRequestExecutor();
+		extraction = Executors.newFixedThreadPool(extractionThreads);
+
+		server.setExecutor(requests);
+		server.createContext(JOBS_PATH, this::handle);
+	}
+
+	/**
+	 * Pokreće poslužitelj.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Zaustavlja poslužitelj i prekida obradu videozapisa.
+	 */
+	public void stop() {
+		server.stop(0);
+		extraction.shutdownNow();
+		requests.shutdownNow();
+	}
+
+	/**
+	 * Vraća port na kojem poslužitelj sluša.
+	 *
+	 * @return port poslužitelja
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stvara izvršitelj koji svaki zahtjev obrađuje u novoj virtualnoj dretvi. Virtualne dretve se dohvaćaju refleksijom,
+	 * pa se na platformi bez njih zahtjevi obrađuju u dretvama platforme koje se stvaraju po potrebi.
+	 *
+	 * @return izvršitelj zahtjeva
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Obrađuje zahtjev na putanji poslova.
+	 *
+	 * @param exchange zahtjev i odgovor
+	 * @throws IOException ako slanje odgovora ne uspije
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String method = exchange.getRequestMethod();
+			String path = exchange.getRequestURI().getPath();
+
+			if(path.equals(JOBS_PATH) || path.equals(JOBS_PATH + "/")) {
+				if(!method.equals("POST")) {
+					respond(exchange, 405, "Dozvoljen je samo zahtjev POST.");
+					return;
+				}
+				submit(exchange);
+				return;
+			}
+
+			String rest = path.substring(JOBS_PATH.length() + 1);
+			if(method.equals("DELETE") && !rest.endsWith(RESULT_SUFFIX)) {
+				delete(exchange, rest);
+				return;
+			}
+			if(!method.equals("GET")) {
+				respond(exchange, 405, "Dozvoljeni su samo zahtjevi GET i DELETE.");
+				return;
+			}
+
+			boolean result = rest.endsWith(RESULT_SUFFIX);
+			Job job = findJob(result ? rest.substring(0, rest.length() - RESULT_SUFFIX.length()) : rest);
+			if(job == null) {
+				respond(exchange, 404, "Posao ne postoji.");
+			} else if(!result) {
+				respondJson(exchange, 200, job.toJson());
+			} else if(job.getStatus() != Job.Status.DONE) {
+				respondJson(exchange, 409, job.toJson());
+			} else {
+				respond(exchange, 200, Constants.MUSICXML_MIMETYPE, job.getResult());
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Stvara posao iz parametara zahtjeva i predaje ga skupu dretvi za obradu videozapisa.
+	 *
+	 * @param exchange zahtjev i odgovor
+	 * @throws IOException ako čitanje zahtjeva ili slanje odgovora ne uspije
+	 */
+	private void submit(HttpExchange exchange) throws IOException {
+		evictFinished();
+
+		Map<String, String> params = new HashMap<>();
+		parseParams(exchange.getRequestURI().getRawQuery(), params);
+		parseParams(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8), params);
+
+		Job job;
+		try {
+			job = new Job(nextId.getAndIncrement(), params, cache, noteCache);
+		} catch (IllegalArgumentException e) {
+			respond(exchange, 400, e.getMessage());
+			return;
+		}
+
+		jobs.put(job.getId(), job);
+		try {
+			extraction.execute(job);
+		} catch (RejectedExecutionException e) {
+			jobs.remove(job.getId());
+			respond(exchange, 503, "Poslužitelj se zaustavlja.");
+			return;
+		}
+
+		exchange.getResponseHeaders().set("Location", JOBS_PATH + "/" + job.getId());
+		respondJson(exchange, 202, job.toJson());
+	}
+
+	/**
+	 * Briše završeni posao s danim identifikatorom.
+	 *
+	 * @param exchange zahtjev i odgovor
+	 * @param id identifikator posla iz putanje zahtjeva
+	 * @throws IOException ako slanje odgovora ne uspije
+	 */
+	private void delete(HttpExchange exchange, String id) throws IOException {
+		Job job = findJob(id);
+		if(job == null) {
+			respond(exchange, 404, "Posao ne postoji.");
+		} else if(job.getFinishedAt() == 0) {
+			respondJson(exchange, 409, job.toJson());
+		} else {
+			jobs.remove(job.getId());
+			exchange.sendResponseHeaders(204, -1);
+		}
+	}
+
+	/**
+	 * Briše završene poslove starije od {@value Constants#SERVER_JOB_TTL_SECONDS} sekundi i najstarije završene poslove
+	 * iznad {@value Constants#SERVER_MAX_FINISHED_JOBS}.
+	 */
+	private void evictFinished() {
+		long expired = System.currentTimeMillis() - Constants.SERVER_JOB_TTL_SECONDS * 1000;
+		List<Job> finished = new ArrayList<>();
+		for(Job job : jobs.values()) {
+			long finishedAt = job.getFinishedAt();
+			if(finishedAt == 0) continue;
+
+			if(finishedAt < expired) {
+				jobs.remove(job.getId());
+			} else {
+				finished.add(job);
+			}
+		}
+
+		if(finished.size() > Constants.SERVER_MAX_FINISHED_JOBS) {
+			finished.sort(Comparator.comparingLong(Job::getFinishedAt));
+			for(Job job : finished.subList(0, finished.size() - Constants.SERVER_MAX_FINISHED_JOBS)) {
+				jobs.remove(job.getId());
+			}
+		}
+	}
+
+	/**
+	 * Pronalazi posao s danim identifikatorom.
+	 *
+	 * @param id identifikator posla iz putanje zahtjeva
+	 * @return posao ili <code>null</code> ako ne postoji
+	 */
+	private Job findJob(String id) {
+		try {
+			return jobs.get(Integer.parseInt(id));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Čita parametre oblika <code>ime=vrijednost&amp;ime=vrijednost</code> u danu mapu.
+	 *
+	 * @param text kodirani parametri ili <code>null</code>
+	 * @param params mapa u koju se spremaju parametri
+	 */
+	private static void parseParams(String text, Map<String, String> params) {
+		if(text == null || text.isBlank()) return;
+
+		for(String pair : text.trim().split("&")) {
+			int eq = pair.indexOf('=');
+			if(eq <= 0) continue;
+			params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+					URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Šalje odgovor s JSON sadržajem.
+	 *
+	 * @param exchange zahtjev i odgovor
+	 * @param code statusni kod odgovora
+	 * @param json sadržaj odgovora
+	 * @throws IOException ako slanje odgovora ne uspije
+	 */
+	private static void respondJson(HttpExchange exchange, int code, String json) throws IOException {
+		respond(exchange, code, "application/json; charset=utf-8", json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Šalje odgovor s porukom o pogrešci u JSON obliku.
+	 *
+	 * @param exchange zahtjev i odgovor
+	 * @param code statusni kod odgovora
+	 * @param message poruka
+	 * @throws IOException ako slanje odgovora ne uspije
+	 */
+	private static void respond(HttpExchange exchange, int code, String message) throws IOException {
+		respondJson(exchange, code, "{\"error\":\"" + Job.escape(message) + "\"}");
+	}
+
+	/**
+	 * Šalje odgovor s danim sadržajem.
+	 *
+	 * @param exchange zahtjev i odgovor
+	 * @param code statusni kod odgovora
+	 * @param contentType vrsta sadržaja
+	 * @param body sadržaj odgovora
+	 * @throws IOException ako slanje odgovora ne uspije
+	 */
+	private static void respond(HttpExchange exchange, int code, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(code, body.length);
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Pokreće poslužitelj. Prima opcije <code>--port &lt;port&gt;</code> i <code>--workers &lt;n&gt;</code>,
+	 * najveći broj videozapisa koji se istovremeno obrađuju.
+	 *
+	 * @param args argumenti naredbenog retka
+	 * @throws IOException ako se poslužitelj ne može pokrenuti
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = Constants.SERVER_PORT;
+		int workers = Runtime.getRuntime().availableProcessors();
+
+		try {
+			if(args.length % 2 != 0) {
+				throw new IllegalArgumentException("Opcija " + args[args.length - 1] + " nema vrijednost.");
+			}
+			for(int i = 0; i < args.length; i += 2) {
+				switch(args[i]) {
+				case "--port" -> port = Integer.parseInt(args[i + 1]);
+				case "--workers" -> workers = Math.max(1, Integer.parseInt(args[i + 1]));
+				default -> throw new IllegalArgumentException("Nepoznata opcija: " + args[i]);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Korištenje: JobServer [--port <port>] [--workers <n>]");
+			System.exit(2);
+		}
+
+		Util.loadOpenCV();
+
+		ResultCache cache = new ResultCache(Path.of(Constants.RESULT_CACHE_DIRECTORY), Constants.RESULT_CACHE_MAX_BYTES);
+		NoteCache noteCache = new NoteCache(Path.of(Constants.NOTE_CACHE_DIRECTORY), Constants.NOTE_CACHE_MAX_BYTES);
+		JobServer server = new JobServer(port, workers, cache, noteCache);
+		Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+		server.start();
+		System.out.println("Poslužitelj sluša na http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort() + JOBS_PATH);
+	}
+}
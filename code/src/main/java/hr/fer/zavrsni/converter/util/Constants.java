@@ -13,12 +13,22 @@ public class Constants {
 	/** Putanja u aplikaciji do datoteke s popisom svih klavijatura. */
 	public static final String PATH_TO_KEYBOARDS = "config/keyboards.txt";
 	/** Putanja u aplikaciji do direktorija koji sadrži datoteke sa predlošcima za generiranje MusicXML dokumenta.  */
-	public static final String PATH_TO_XML_TEMPLATES = "musicxml/";
+	public static final String PATH_TO_XML_TEMPLATES = "/hr/fer/zavrsni/converter/musicxml/";
+	/** Nastavak datoteke komprimiranog MusicXML dokumenta. */
+	public static final String MXL_EXTENSION = ".mxl";
+	/** MIME tip komprimiranog MusicXML dokumenta. */
+	public static final String MXL_MIMETYPE = "application/vnd.recordare.musicxml";
+	/** Ime zapisa partiture unutar komprimiranog MusicXML dokumenta. */
+	public static final String MXL_SCORE_ENTRY = "score.musicxml";
+	/** Nastavak MIDI datoteke. */
+	public static final String MIDI_EXTENSION = ".mid";
 	
 	/** Pretpostavljeno ime pjesme. */
 	public static final String DEFAULT_SONG_NAME = "Pjesma";
 	/** Pretpostavljen autor pjesme. */
 	public static final String DEFAULT_ARTIST_NAME = "Autor";
+	/** Pretpostavljeni tempo pjesme ako ga korisnik ne zada. */
+	public static final int DEFAULT_BEATS_PER_MINUTE = 120;
 	
 	/** Širina prozora. */
 	public static final int WIDTH = 1280;
@@ -34,8 +44,14 @@ public class Constants {
 	public static final int MIN_WIDTH = 12;
 	/** Minimalna visina pravokutnika potrebna da se smatra notom. */
 	public static final int MIN_HEIGHT = 10;
+	/** Pretpostavljeni najveći broj piksela za koji se nota pomakne između dvije uzastopne slike, dok se brzina padanja ne procijeni. */
+	public static final int MAX_FALL_PER_FRAME = 12;
+	/** Koliko puta se procijenjena brzina padanja uvećava pri određivanju visine trake oko kontrolne linije. */
+	public static final double BAND_SPEED_MARGIN = 1.5;
 	/** Koliko slika se dopušta da se ne može detektirati pravokutnik prije nego što se to smatra greškom.  */
 	public static final Integer EXISTENCE = 4;
+	/** Broj uzoraka iz kojih se procjenjuje brzina padanja nota. */
+	public static final int SPEED_SAMPLES = 15;
 	/** Dozvoljeno odstupanje boje pravokutnika od boje pravokutnika koji se sviraju određenom rukom. */
 	public static final double HUE_ERROR = 15;
 	
@@ -49,6 +65,10 @@ public class Constants {
 	public static final double CANNY_MAX = 250;
 	/** Veličina jezgre za Sobel operator u Canny funkciji. */
 	public static final int CANNY_APERTURE = 3;
+	/** Minimalna V vrijednost piksela da bi se smatrao dijelom note. */
+	public static final double NOTE_VALUE_MIN = 80;
+	/** Najveći razmak u pikselima unutar niza piksela jedne note na uzorkovanoj liniji. */
+	public static final int SCANLINE_GAP = 2;
 	
 	/** Dozvoljeno odstupanje dužine note u slikama od traženog. */
 	public static final int NOTE_LEN_ERROR = 3;
@@ -56,4 +76,48 @@ public class Constants {
 	public static final int CHORD_ERROR = 2;
 	/** Minimalni potrebni razmak između nota da bi se smatrao pauzom. */
 	public static final int REST_ERROR = 2;
+	/** Jačina kojom se zapisuju note u MIDI datoteku. */
+	public static final int MIDI_VELOCITY = 64;
+	
+	/** Minimalni broj slika u jednom segmentu videozapisa pri paralelnoj obradi. */
+	public static final int MIN_SEGMENT_FRAMES = 600;
+	/** Broj slika prije početka segmenta koje se obrađuju da bi se uhvatile note koje su već na kontrolnoj liniji. */
+	public static final int SEGMENT_WARMUP = 30;
+	/** Najveći broj slika nakon kraja segmenta koje se obrađuju da bi se završile note započete u segmentu. */
+	public static final int SEGMENT_MAX_TAIL = 3000;
+	/** Broj slika koje se istovremeno mogu nalaziti u protočnoj obradi. */
+	public static final int PIPELINE_CAPACITY = 16;
+	/** Broj sekundi od prve note iz kojih se pri postupnom generiranju procjenjuju tonalitet i tempo pjesme. */
+	public static final int STREAM_WARMUP_SECONDS = 10;
+	
+	/** Svaka koliko slika se zapisuje kontrolna točka obrade videozapisa, 0 ako se ne zapisuje. */
+	public static final int CHECKPOINT_INTERVAL = 1000;
+	/** Direktorij kontrolnih točaka obrade videozapisa. */
+	public static final String CHECKPOINT_DIRECTORY = "cache/checkpoints";
+	/** Nastavak datoteke kontrolne točke, dodaje se sažetku opisa videozapisa i parametara obrade. */
+	public static final String CHECKPOINT_EXTENSION = ".checkpoint";
+	/** Nastavak datoteke završenih nota kontrolne točke, dodaje se putanji do datoteke kontrolne točke. */
+	public static final String CHECKPOINT_NOTES_EXTENSION = ".notes";
+	/** Nastavak datoteke zaključavanja kontrolne točke, dodaje se putanji do datoteke kontrolne točke. */
+	public static final String CHECKPOINT_LOCK_EXTENSION = ".lock";
+	
+	/** Inačica postupka generiranja notnog zapisa, povećava se kada se promijeni rezultat za iste ulaze. */
+	public static final int PIPELINE_VERSION = 4;
+	/** Direktorij priručne memorije generiranih notnih zapisa. */
+	public static final String RESULT_CACHE_DIRECTORY = "cache/results";
+	/** Najveća ukupna veličina priručne memorije generiranih notnih zapisa u bajtovima. */
+	public static final long RESULT_CACHE_MAX_BYTES = 256L << 20;
+	/** Direktorij priručne memorije nota prepoznatih u videozapisima. */
+	public static final String NOTE_CACHE_DIRECTORY = "cache/notes";
+	/** Najveća ukupna veličina priručne memorije nota prepoznatih u videozapisima u bajtovima. */
+	public static final long NOTE_CACHE_MAX_BYTES = 64L << 20;
+	
+	/** Pretpostavljeni port poslužitelja za obradu videozapisa. */
+	public static final int SERVER_PORT = 8080;
+	/** Vrsta sadržaja MusicXML dokumenta. */
+	public static final String MUSICXML_MIMETYPE = "application/vnd.recordare.musicxml+xml";
+	/** Najveći broj završenih poslova koje poslužitelj čuva. */
+	public static final int SERVER_MAX_FINISHED_JOBS = 100;
+	/** Koliko dugo poslužitelj čuva završeni posao, u sekundama. */
+	public static final long SERVER_JOB_TTL_SECONDS = 3600;
 }
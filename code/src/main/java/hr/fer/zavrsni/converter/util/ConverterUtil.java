@@ -1,29 +1,19 @@
 package hr.fer.zavrsni.converter.util;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.function.Predicate;
 
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.MatOfPoint2f;
-import org.opencv.core.Point;
 import org.opencv.core.Rect;
-import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
-import hr.fer.zavrsni.converter.converting.PitchConverter;
-import hr.fer.zavrsni.converter.model.note.Note;
-import hr.fer.zavrsni.converter.model.note.Pitch;
-import hr.fer.zavrsni.converter.model.song.Song;
+import hr.fer.zavrsni.converter.keyboard.Keyboard;
 
 /**
  * Pomoćni razred za operacije obrade videozapisa i prepoznavanje nota iz njega.
@@ -38,99 +28,272 @@ public class ConverterUtil {
 	/** Komparator po y koordinati gornje lijeve točke pravokutnika. */
 	private static final Comparator<Rect> byY = (n1, n2) -> Integer.compare(n1.y, n2.y);
 	
-	/**
-	 * Pomoćna metoda koja danu sliku obrezuje na pravokutnik određen gornjom lijevom točkom i donjom desnom točkom.
-	 * 
-	 * @param originalFrame slika koja se želi obrezati
-	 * @param tl gornja lijeva točka pravokutnika
-	 * @param br donja desna točka pravokutnika
-	 * @return obrezana slika
-	 */
-	public static Mat cropFrame(Mat originalFrame, Point tl, Point br) {
-		return originalFrame.submat(new Rect(tl, br));
-	}
-	
 	/**
 	 * Metoda priprema sliku za obradu.
-	 * Originalna slika se zamućuje i pretvara u HSV format slike.
-	 * Procesirana slika se pretvara u canny oblik za temelju V vrijednosti HSV slike dobivene pretvaranjem originalne slike.
+	 * Obrezana slika se zamućuje, a iz zamućene slike računa se samo V vrijednost HSV formata, kao najveća od B, G i R vrijednosti piksela.
+	 * Procesirana slika se pretvara u canny oblik za temelju V vrijednosti.
+	 * Sve međuslike se spremaju u unaprijed alocirane slike danog konteksta.
 	 * 
-	 * @param originalFrame slika koja se želi pripremiti
-	 * @param processedFrame pripremljena slika
+	 * @param croppedFrame slika koja se želi pripremiti
+	 * @param context kontekst obrade slike
 	 */
-	public static void prepareFrameForProcessing(Mat originalFrame, Mat processedFrame) {
-		Imgproc.GaussianBlur(originalFrame, originalFrame, new Size(Constants.GAUSS_BLUR_SIZE, Constants.GAUSS_BLUR_SIZE), Constants.GAUSS_BLUR_DEV);
-		Imgproc.cvtColor(originalFrame, originalFrame, Imgproc.COLOR_BGR2HSV);
-		
-		List<Mat> hsv = new LinkedList<>();
-		Core.split(originalFrame, hsv);
+	public static void prepareFrameForProcessing(Mat croppedFrame, FrameContext context) {
+		Imgproc.GaussianBlur(croppedFrame, context.getBlurredFrame(), context.getBlurSize(), Constants.GAUSS_BLUR_DEV);
+		Core.reduce(context.getBlurredPixels(), context.getValueColumn(), 1, Core.REDUCE_MAX);
 		
-		//HighGui.imshow("Image", hsv.get(2));
+		//HighGui.imshow("Image", context.getValueFrame());
 		//HighGui.waitKey();
 		
-        Imgproc.Canny(hsv.get(2), processedFrame, Constants.CANNY_MIN, Constants.CANNY_MAX, Constants.CANNY_APERTURE, false);
+        Imgproc.Canny(context.getValueFrame(), context.getProcessedFrame(), Constants.CANNY_MIN, Constants.CANNY_MAX, Constants.CANNY_APERTURE, false);
         
-		//HighGui.imshow("Image", processedFrame);
+		//HighGui.imshow("Image", context.getProcessedFrame());
 		//HighGui.waitKey();
 	}
 	
 	/**
-	 * Metoda iz poslane slike traži konture i za svaku pronađenu određuje pravokutnik koji ju opisuje,
-	 * te ako on zadovoljava poslani predikat, dodaje ga se u povratni {@link Set}.
+	 * Metoda iz procesirane slike danog konteksta traži konture i za svaku pronađenu određuje pravokutnik koji ju opisuje,
+	 * te ako on zadovoljava poslani predikat, dodaje ga se u povratnu listu.
+	 * Nativna memorija kontura oslobađa se odmah nakon određivanja pravokutnika.
 	 * 
 	 * @param tester predikat koji određuje zadovoljava li pravokutnik ograničenja
-	 * @param processedFrame slika iz koje se traže konture
-	 * @return {@link Set} pravokutnika koji opisuju konture, a zadovoljavaju pravilo predikata
+	 * @param context kontekst obrade slike
+	 * @return lista pravokutnika koji opisuju konture, a zadovoljavaju pravilo predikata, sortirana po y pa po x koordinati;
+	 * 			lista pripada kontekstu i vrijedi do obrade sljedeće slike
 	 */
-	public static Set<Rect> getBoundingRectangles(Predicate<Rect> tester, Mat processedFrame) {
-        List<MatOfPoint> contours = new ArrayList<>();
-        Imgproc.findContours(processedFrame, contours, new Mat(), Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+	public static List<Rect> getBoundingRectangles(Predicate<Rect> tester, FrameContext context) {
+		List<MatOfPoint> contours = context.getContours();
+		MatOfPoint2f points = context.getContourPoints();
+        Imgproc.findContours(context.getProcessedFrame(), contours, context.getHierarchy(), Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+        
+		List<Rect> rectangles = context.getRectangles();
+		rectangles.clear();
+        for (int i = 0; i < contours.size(); i++) {
+        	context.getAccounting().registerFrameLocal(contours.get(i), "ConverterUtil.getBoundingRectangles:contour");
+        }
         
-		Set<Rect> rectangles = new TreeSet<>(byY.reversed().thenComparing(byX));
         for (int i = 0; i < contours.size(); i++) {
-        	Rect bounding = Imgproc.minAreaRect(new MatOfPoint2f(contours.get(i).toArray())).boundingRect();
+        	contours.get(i).convertTo(points, CvType.CV_32F);
+        	Rect bounding = Imgproc.minAreaRect(points).boundingRect();
         	if(tester.test(bounding)) rectangles.add(bounding);
         }
+        context.releaseContours();
         
+        rectangles.sort(byY.reversed().thenComparing(byX));
         return rectangles;
 	}
 	
 	/**
-	 * Pronalazi ton svakog pravokutnika (note), te izbacuje notu ako se cijela nalazi ispod kontrolne linije, a nije trenutno praćena.
+	 * Metoda zatvara rubove nota koje prelaze gornji ili donji rub slike.
+	 * Canny funkcija ne pronalazi rub na rubu slike, pa nota koja prelazi oba ruba daje samo dvije okomite crte.
+	 * U prvom i zadnjem retku procesirane slike popunjava se razmak između dva susjedna ruba koje je pronašla Canny funkcija,
+	 * ako većina piksela u razmaku ima V vrijednost note. Tako se zatvaraju samo note čiji su okomiti rubovi pronađeni,
+	 * a svijetli pikseli pozadine ne spajaju se s notama.
+	 * 
+	 * @param context kontekst obrade slike s procesiranom slikom
+	 */
+	public static void closeBorders(FrameContext context) {
+		Mat[] rows = context.getBorderRows();
+		
+		closeBorder(context, rows[0], rows[2]);
+		closeBorder(context, rows[1], rows[3]);
+	}
+	
+	/**
+	 * Metoda zatvara rubove nota u jednom rubnom retku procesirane slike.
+	 * Razmak između kraja jednog ruba i početka sljedećeg ruba popunjava se ako je V vrijednost većine njegovih piksela
+	 * barem {@link Constants#NOTE_VALUE_MIN}.
+	 * 
+	 * @param context kontekst obrade slike s međuspremnicima rubnog retka
+	 * @param valueRow rubni redak V vrijednosti slike
+	 * @param edgeRow rubni redak procesirane slike
+	 */
+	private static void closeBorder(FrameContext context, Mat valueRow, Mat edgeRow) {
+		int cols = edgeRow.cols();
+		byte[] values = context.getBorderValues(cols);
+		byte[] edges = context.getBorderEdges(cols);
+		valueRow.get(0, 0, values);
+		edgeRow.get(0, 0, edges);
+		
+		boolean changed = false;
+		int gapStart = -1;
+		for(int x = 0; x < cols; x++) {
+			if(edges[x] == 0) continue;
+			
+			if(gapStart != -1 && gapStart < x) {
+				int notePixels = 0;
+				for(int i = gapStart; i < x; i++) {
+					if((values[i] & 0xFF) >= Constants.NOTE_VALUE_MIN) notePixels++;
+				}
+				if(2 * notePixels > x - gapStart) {
+					Arrays.fill(edges, gapStart, x, (byte) 255);
+					changed = true;
+				}
+			}
+			gapStart = x + 1;
+		}
+		
+		if(changed) edgeRow.put(0, 0, edges);
+	}
+	
+	/**
+	 * Metoda pronalazi pravokutnike nota na obrezanoj slici. Slika se priprema za obradu, a zadržavaju se samo pravokutnici
+	 * dovoljne veličine čije dno se nalazi ispod kontrolne linije.
+	 * 
+	 * @param croppedFrame obrezana slika videozapisa
+	 * @param context kontekst obrade slike, nakon poziva sadrži zamućenu sliku
+	 * @param controlY y koordinata kontrolne linije
+	 * @param closeBorders trebaju li se zatvoriti rubovi nota koje prelaze gornji ili donji rub slike
+	 * @return lista pravokutnika koji predstavljaju note; lista pripada kontekstu i vrijedi do obrade sljedeće slike
+	 */
+	public static List<Rect> findNotes(Mat croppedFrame, FrameContext context, int controlY, boolean closeBorders) {
+		prepareFrameForProcessing(croppedFrame, context);
+		if(closeBorders) {
+			closeBorders(context);
+		}
+		
+		return getBoundingRectangles(
+				r -> r.br().y > controlY && r.width > Constants.MIN_WIDTH && r.height > Constants.MIN_HEIGHT,
+				context);
+	}
+	
+	/**
+	 * Metoda pronalazi note koje prelaze kontrolnu liniju bez traženja kontura.
+	 * Uzorkuju se samo kontrolna linija i linija minimalne visine note iznad nje. Pikseli kontrolne linije čija je V vrijednost
+	 * dovoljno velika spajaju se u nizove, a niz širi od tipke dijeli se na granicama tipki klavijature (vidi
+	 * {@link #addCrossingRun(List, byte[], int, int, int, Keyboard)}), pa se note susjednih tipki ne spajaju u jednu.
+	 * Svaki dovoljno širok dio niza predstavlja jednu notu.
+	 * Ako je iznad dijela niza pokrivena i gornja linija, za notu se vraća pravokutnik od gornje linije do kontrolne linije,
+	 * a inače pravokutnik visine jednog piksela na kontrolnoj liniji, koji nije dovoljno visok da započne novu notu.
+	 * Dno svakog pravokutnika leži ispod kontrolne linije.
+	 * 
+	 * @param croppedFrame obrezana slika videozapisa
+	 * @param context kontekst obrade slike, nakon poziva sadrži uzorkovane linije
+	 * @param controlY y koordinata kontrolne linije
+	 * @param keyboard klavijatura čija je širina jednaka širini obrezane slike
+	 * @return lista pravokutnika koji predstavljaju note; lista pripada kontekstu i vrijedi do obrade sljedeće slike
+	 */
+	public static List<Rect> findCrossingNotes(Mat croppedFrame, FrameContext context, int controlY, Keyboard keyboard) {
+		int cols = croppedFrame.cols();
+		int upperY = Math.max(0, controlY - Constants.MIN_HEIGHT);
+		
+		byte[] controlRow = context.getControlRow(cols);
+		byte[] upperRow = context.getUpperRow(cols);
+		croppedFrame.get(controlY, 0, controlRow);
+		croppedFrame.get(upperY, 0, upperRow);
+		
+		List<Rect> rectangles = context.getRectangles();
+		rectangles.clear();
+		
+		int runStart = -1;
+		int runEnd = -1;
+		for(int x = 0; x <= cols; x++) {
+			if(x < cols && isNotePixel(controlRow, x)) {
+				if(runStart == -1) {
+					runStart = x;
+				}
+				runEnd = x;
+			} else if(runStart != -1 && (x == cols || x - runEnd > Constants.SCANLINE_GAP)) {
+				addCrossingRun(rectangles, upperRow, runStart, runEnd, controlY, keyboard);
+				runStart = -1;
+			}
+		}
+		
+		return rectangles;
+	}
+	
+	/**
+	 * Dodaje pravokutnike nota za niz piksela kontrolne linije. Nota nije šira od jedne tipke, pa se niz širi od bijele tipke
+	 * (uz razmak {@value Constants#SCANLINE_GAP}) sastoji od nota susjednih tipki i dijeli se na granici bijelih tipki najbližoj
+	 * sredini niza, tako da su oba dijela šira od minimalne širine note. Dijelovi se dalje dijele na isti način.
 	 * 
-	 * @param notes note čiji se notovi žele pronaći
-	 * @param currNotes note koje se trenutno prate
+	 * @param rectangles lista u koju se dodaju pravokutnici nota
+	 * @param upperRow linija minimalne visine note iznad kontrolne linije
+	 * @param start prvi stupac niza
+	 * @param end zadnji stupac niza
 	 * @param controlY y koordinata kontrolne linije
-	 * @return mapa koja preslikava pravokutnike na njihove tonove
+	 * @param keyboard klavijatura čija je širina jednaka širini obrezane slike
 	 */
-	public static Map<Rect, Pitch> findPitchesAndFilter(Set<Rect> notes, Map<Pitch, Note> currNotes, int controlY) {
-		Map<Rect, Pitch> filtered = new TreeMap<>(byX.thenComparing(byY).reversed());
-		Set<Pitch> pitches = new HashSet<>();
+	private static void addCrossingRun(List<Rect> rectangles, byte[] upperRow, int start, int end, int controlY, Keyboard keyboard) {
+		double keyWidth = keyboard.getKeyWidth();
 		
-		for(Rect r : notes) {
-			Pitch p = PitchConverter.getInstance().findPitch(r);
-			if(r.tl().y > controlY && !currNotes.containsKey(p)) continue;
-			if(!pitches.contains(p)) {
-				filtered.put(r, p);
-				pitches.add(p);
+		if(keyWidth > 0 && end - start + 1 > keyWidth + Constants.SCANLINE_GAP) {
+			double offset = keyboard.getOffset();
+			double center = (start + end + 1) / 2.0;
+			int split = -1;
+			for(double boundary = (Math.floor((start + offset) / keyWidth) + 1) * keyWidth - offset; boundary <= end; boundary += keyWidth) {
+				int x = (int) Math.round(boundary);
+				if(x - start <= Constants.MIN_WIDTH || end + 1 - x <= Constants.MIN_WIDTH) continue;
+				if(split == -1 || Math.abs(x - center) < Math.abs(split - center)) {
+					split = x;
+				}
+			}
+			
+			if(split != -1) {
+				addCrossingRun(rectangles, upperRow, start, split - 1, controlY, keyboard);
+				addCrossingRun(rectangles, upperRow, split, end, controlY, keyboard);
+				return;
 			}
 		}
 		
-		return filtered;
+		addCrossingNote(rectangles, upperRow, start, end, controlY);
 	}
 	
 	/**
-	 * Provjeri note kojih boja se pretežito sviraju na lijevoj a koje na desnoj strani, i ako je početna pretpostavka kriva, zamijene se ruke.
+	 * Dodaje pravokutnik note za dio niza piksela kontrolne linije ako je dio dovoljno širok.
 	 * 
-	 * @param hands mapira dvije boje na listu x koordinata nota
-	 * @param song pjesma čije se note treba eventualno korigirati
+	 * @param rectangles lista u koju se dodaje pravokutnik note
+	 * @param upperRow linija minimalne visine note iznad kontrolne linije
+	 * @param start prvi stupac dijela niza
+	 * @param end zadnji stupac dijela niza
+	 * @param controlY y koordinata kontrolne linije
 	 */
-	public static void correctHands(Map<Boolean, List<Double>> hands, Song song) {
-		double meanFirst = hands.get(true).stream().mapToDouble(d -> d).average().orElse(0.0);
-		double meanSecond = hands.get(false).stream().mapToDouble(d -> d).average().orElse(0.0);
+	private static void addCrossingNote(List<Rect> rectangles, byte[] upperRow, int start, int end, int controlY) {
+		int width = end - start + 1;
+		if(width <= Constants.MIN_WIDTH) return;
 		
-		if(meanFirst > meanSecond) {
-			song.forEach(n -> n.setLeftHand(!n.isLeftHand()));
+		int upperCovered = 0;
+		for(int x = start; x <= end; x++) {
+			if(isNotePixel(upperRow, x)) upperCovered++;
 		}
+		
+		int upperY = Math.max(0, controlY - Constants.MIN_HEIGHT);
+		rectangles.add(2*upperCovered > width
+				? new Rect(start, upperY, width, controlY - upperY + 1)
+				: new Rect(start, controlY, width, 1));
+	}
+	
+	/**
+	 * Provjerava pripada li piksel linije noti, tj. je li njegova V vrijednost dovoljno velika.
+	 * 
+	 * @param row linija slike s po tri vrijednosti (B, G, R) za svaki piksel
+	 * @param x stupac piksela
+	 * @return <code>true</code> ako piksel pripada noti, inače <code>false</code>
+	 */
+	private static boolean isNotePixel(byte[] row, int x) {
+		int i = 3*x;
+		int value = Math.max(row[i] & 0xFF, Math.max(row[i + 1] & 0xFF, row[i + 2] & 0xFF));
+		return value > Constants.NOTE_VALUE_MIN;
+	}
+	
+	/**
+	 * Vraća boju (H vrijednost) note na kontrolnoj liniji, u sredini danog pravokutnika, na zadnjoj slici uzorkovanoj u danom kontekstu.
+	 * 
+	 * @param context kontekst obrade slike
+	 * @param r pravokutnik note koji je vratila metoda {@link #findCrossingNotes(Mat, FrameContext, int, Keyboard)}
+	 * @return boja note
+	 */
+	public static double getScanlineHue(FrameContext context, Rect r) {
+		return context.getControlRowHue(r.x + r.width/2);
+	}
+	
+	/**
+	 * Vraća boju (H vrijednost) u središtu danog pravokutnika na zadnjoj slici obrađenoj u danom kontekstu.
+	 * 
+	 * @param context kontekst obrade slike
+	 * @param r pravokutnik čija se boja traži
+	 * @return boja u središtu pravokutnika
+	 */
+	public static double getHue(FrameContext context, Rect r) {
+		return context.getHue((int)r.tl().y + r.height/2, (int)r.tl().x + r.width/2);
 	}
 }
@@ -0,0 +1,401 @@
+package hr.fer.zavrsni.converter.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+
+/**
+ * Razred sadrži unaprijed alocirane slike i kolekcije koje se koriste pri obradi jedne slike videozapisa.
+ * Svaka dretva koja obrađuje slike koristi vlastiti kontekst, pa se pri obradi slika u stabilnom stanju ne alocira nova nativna memorija.
+ * Nativna memorija konteksta oslobađa se pozivom metode {@link #release()}.
+ *
+ * @author Ana Bagić
+ *
+ */
+public class FrameContext {
+
+	/** Praćenje slika obrade kojoj kontekst pripada. */
+	private final MatAccounting accounting;
+	/** Slika u koju se čita videozapis. */
+	private Mat frame;
+	/** Obrezani dio slike videozapisa, dijeli memoriju sa slikom videozapisa. */
+	private Mat croppedFrame;
+	/** Adresa podataka slike videozapisa nad kojom je napravljen obrezani dio. */
+	private long croppedDataAddr;
+	/** Pravokutnik po kojemu se obrezuje slika. */
+	private Rect roi;
+
+	/** Zamućena slika. */
+	private Mat blurredFrame;
+	/** Pikseli zamućene slike u jednom stupcu s po tri vrijednosti u retku, dijeli memoriju sa zamućenom slikom. */
+	private Mat blurredPixels;
+	/** Adresa podataka zamućene slike nad kojom su napravljeni pikseli u stupcu. */
+	private long blurredPixelsAddr;
+	/** V vrijednosti piksela u jednom stupcu. */
+	private Mat valueColumn;
+	/** V vrijednost slike, dijeli memoriju sa stupcem V vrijednosti. */
+	private Mat valueFrame;
+	/** Adresa podataka stupca V vrijednosti nad kojim je napravljena V vrijednost slike. */
+	private long valueFrameAddr;
+	/** Procesirana slika u canny obliku. */
+	private Mat processedFrame;
+	/** Hijerarhija kontura. */
+	private Mat hierarchy;
+	/** Točke jedne konture u formatu s pomičnim zarezom. */
+	private MatOfPoint2f contourPoints;
+	/** Konture pronađene na slici. */
+	private List<MatOfPoint> contours = new ArrayList<>();
+	/** Pravokutnici pronađeni na slici. */
+	private List<Rect> rectangles = new ArrayList<>();
+	/** Veličina jezgre Gaussovog zamućivanja. */
+	private Size blurSize = new Size(Constants.GAUSS_BLUR_SIZE, Constants.GAUSS_BLUR_SIZE);
+	/** Prvi i zadnji redak V vrijednosti slike te prvi i zadnji redak procesirane slike. */
+	private Mat[] borderRows;
+	/** Adresa podataka procesirane slike nad kojom su napravljeni rubni retci. */
+	private long borderDataAddr;
+	/** Adresa podataka V vrijednosti slike nad kojom su napravljeni rubni retci. */
+	private long borderValueAddr;
+	/** Međuspremnik za čitanje jednog piksela. */
+	private byte[] pixel = new byte[3];
+	/** Pikseli kontrolne linije obrezane slike. */
+	private byte[] controlRow = new byte[0];
+	/** Pikseli linije iznad kontrolne linije obrezane slike. */
+	private byte[] upperRow = new byte[0];
+	/** V vrijednosti piksela rubnog retka slike. */
+	private byte[] borderValues = new byte[0];
+	/** Pikseli rubnog retka procesirane slike. */
+	private byte[] borderEdges = new byte[0];
+
+	/**
+	 * Stvara kontekst čije se slike prate novim objektom za praćenje slika.
+	 */
+	public FrameContext() {
+		this(new MatAccounting());
+	}
+
+	/**
+	 * Stvara kontekst čije se slike prate danim objektom za praćenje slika.
+	 *
+	 * @param accounting praćenje slika obrade kojoj kontekst pripada
+	 */
+	public FrameContext(MatAccounting accounting) {
+		this.accounting = accounting;
+		frame = accounting.register(new Mat(), "FrameContext.frame");
+		blurredFrame = accounting.register(new Mat(), "FrameContext.blurredFrame");
+		valueColumn = accounting.register(new Mat(), "FrameContext.valueColumn");
+		processedFrame = accounting.register(new Mat(), "FrameContext.processedFrame");
+		hierarchy = accounting.register(new Mat(), "FrameContext.hierarchy");
+		contourPoints = accounting.register(new MatOfPoint2f(), "FrameContext.contourPoints");
+	}
+
+	/**
+	 * Vraća praćenje slika obrade kojoj kontekst pripada.
+	 *
+	 * @return praćenje slika
+	 */
+	public MatAccounting getAccounting() {
+		return accounting;
+	}
+
+	/**
+	 * Vraća sliku u koju se čita videozapis.
+	 *
+	 * @return slika u koju se čita videozapis
+	 */
+	public Mat getFrame() {
+		return frame;
+	}
+
+	/**
+	 * Vraća dio slike videozapisa obrezan na pravokutnik određen gornjom lijevom točkom i donjom desnom točkom.
+	 * Obrezani dio se stvara samo ako se promijenio pravokutnik ili memorija slike videozapisa.
+	 *
+	 * @param tl gornja lijeva točka pravokutnika
+	 * @param br donja desna točka pravokutnika
+	 * @return obrezana slika
+	 */
+	public Mat crop(Point tl, Point br) {
+		if(croppedFrame == null || croppedDataAddr != frame.dataAddr()
+				|| roi.x != (int) tl.x || roi.y != (int) tl.y || roi.x + roi.width != (int) br.x || roi.y + roi.height != (int) br.y) {
+			if(croppedFrame != null) accounting.release(croppedFrame);
+
+			roi = new Rect(tl, br);
+			croppedFrame = accounting.register(frame.submat(roi), "FrameContext.croppedFrame");
+			croppedDataAddr = frame.dataAddr();
+		}
+
+		return croppedFrame;
+	}
+
+	/**
+	 * Vraća prvi i zadnji redak V vrijednosti slike te prvi i zadnji redak procesirane slike, tim redoslijedom.
+	 * Retci se stvaraju samo ako se promijenila memorija procesirane slike ili V vrijednosti slike.
+	 *
+	 * @return rubni retci V vrijednosti slike i procesirane slike
+	 */
+	Mat[] getBorderRows() {
+		Mat valueFrame = getValueFrame();
+		if(borderRows == null || borderDataAddr != processedFrame.dataAddr() || borderValueAddr != valueFrame.dataAddr()) {
+			releaseBorderRows();
+
+			int last = processedFrame.rows() - 1;
+			borderRows = new Mat[] {
+					accounting.register(valueFrame.row(0), "FrameContext.borderRows"),
+					accounting.register(valueFrame.row(last), "FrameContext.borderRows"),
+					accounting.register(processedFrame.row(0), "FrameContext.borderRows"),
+					accounting.register(processedFrame.row(last), "FrameContext.borderRows")
+			};
+			borderDataAddr = processedFrame.dataAddr();
+			borderValueAddr = valueFrame.dataAddr();
+		}
+
+		return borderRows;
+	}
+
+	/**
+	 * Vraća boju (H vrijednost) u danoj točki zadnje obrađene zamućene slike.
+	 * Boja se računa samo za traženi piksel, na isti način kao pri pretvaranju slike u HSV format, u rasponu od 0 do 180.
+	 *
+	 * @param row redak piksela
+	 * @param col stupac piksela
+	 * @return boja piksela
+	 */
+	public double getHue(int row, int col) {
+		blurredFrame.get(row, col, pixel);
+		return hue(pixel, 0);
+	}
+
+	/**
+	 * Vraća boju (H vrijednost) u danom stupcu zadnje uzorkovane kontrolne linije.
+	 *
+	 * @param col stupac piksela
+	 * @return boja piksela
+	 */
+	public double getControlRowHue(int col) {
+		return hue(controlRow, 3*col);
+	}
+
+	/**
+	 * Računa boju (H vrijednost) piksela na isti način kao pri pretvaranju slike u HSV format, u rasponu od 0 do 180.
+	 *
+	 * @param data polje s B, G i R vrijednostima piksela
+	 * @param i indeks B vrijednosti piksela
+	 * @return boja piksela
+	 */
+	private static double hue(byte[] data, int i) {
+		int b = data[i] & 0xFF;
+		int g = data[i + 1] & 0xFF;
+		int r = data[i + 2] & 0xFF;
+
+		int max = Math.max(r, Math.max(g, b));
+		int diff = max - Math.min(r, Math.min(g, b));
+		if(diff == 0) return 0;
+
+		double hue;
+		if(max == r) {
+			hue = 60.0 * (g - b) / diff;
+		} else if(max == g) {
+			hue = 120 + 60.0 * (b - r) / diff;
+		} else {
+			hue = 240 + 60.0 * (r - g) / diff;
+		}
+		if(hue < 0) hue += 360;
+
+		return Math.round(hue / 2);
+	}
+
+	/**
+	 * Oslobađa nativnu memoriju svih slika konteksta.
+	 */
+	public void release() {
+		if(croppedFrame != null) accounting.release(croppedFrame);
+		accounting.release(frame);
+		if(blurredPixels != null) accounting.release(blurredPixels);
+		if(valueFrame != null) accounting.release(valueFrame);
+		accounting.release(blurredFrame);
+		accounting.release(valueColumn);
+		accounting.release(processedFrame);
+		accounting.release(hierarchy);
+		accounting.release(contourPoints);
+		releaseContours();
+		releaseBorderRows();
+	}
+
+	/**
+	 * Oslobađa rubne retke slika ako postoje.
+	 */
+	private void releaseBorderRows() {
+		if(borderRows == null) return;
+
+		for(Mat row : borderRows) {
+			accounting.release(row);
+		}
+		borderRows = null;
+	}
+
+	/**
+	 * Oslobađa nativnu memoriju kontura pronađenih na zadnjoj obrađenoj slici.
+	 */
+	void releaseContours() {
+		for(MatOfPoint contour : contours) {
+			accounting.release(contour);
+		}
+		contours.clear();
+	}
+
+	/**
+	 * Vraća zamućenu sliku.
+	 *
+	 * @return zamućenu sliku
+	 */
+	Mat getBlurredFrame() {
+		return blurredFrame;
+	}
+
+	/**
+	 * Vraća piksele zamućene slike u jednom stupcu s po tri vrijednosti (B, G, R) u retku.
+	 * Stupac dijeli memoriju sa zamućenom slikom i stvara se samo ako se promijenila njena memorija ili veličina.
+	 *
+	 * @return piksele zamućene slike u jednom stupcu
+	 */
+	Mat getBlurredPixels() {
+		if(blurredPixels == null || blurredPixelsAddr != blurredFrame.dataAddr() || blurredPixels.rows() != blurredFrame.total()) {
+			if(blurredPixels != null) accounting.release(blurredPixels);
+
+			blurredPixels = accounting.register(blurredFrame.reshape(1, (int) blurredFrame.total()), "FrameContext.blurredPixels");
+			blurredPixelsAddr = blurredFrame.dataAddr();
+		}
+
+		return blurredPixels;
+	}
+
+	/**
+	 * Vraća V vrijednosti piksela zamućene slike u jednom stupcu.
+	 *
+	 * @return V vrijednosti piksela u jednom stupcu
+	 */
+	Mat getValueColumn() {
+		return valueColumn;
+	}
+
+	/**
+	 * Vraća V vrijednost zamućene slike, oblikovanu kao zamućena slika.
+	 * Slika dijeli memoriju sa stupcem V vrijednosti i stvara se samo ako se promijenila njegova memorija ili veličina zamućene slike.
+	 *
+	 * @return V vrijednost zamućene slike
+	 */
+	Mat getValueFrame() {
+		if(valueFrame == null || valueFrameAddr != valueColumn.dataAddr() || valueFrame.rows() != blurredFrame.rows()) {
+			if(valueFrame != null) accounting.release(valueFrame);
+
+			valueFrame = accounting.register(valueColumn.reshape(1, blurredFrame.rows()), "FrameContext.valueFrame");
+			valueFrameAddr = valueColumn.dataAddr();
+		}
+
+		return valueFrame;
+	}
+
+	/**
+	 * Vraća procesiranu sliku u canny obliku.
+	 *
+	 * @return procesiranu sliku u canny obliku
+	 */
+	Mat getProcessedFrame() {
+		return processedFrame;
+	}
+
+	/**
+	 * Vraća hijerarhiju kontura.
+	 *
+	 * @return hijerarhiju kontura
+	 */
+	Mat getHierarchy() {
+		return hierarchy;
+	}
+
+	/**
+	 * Vraća točke jedne konture u formatu s pomičnim zarezom.
+	 *
+	 * @return točke jedne konture u formatu s pomičnim zarezom
+	 */
+	MatOfPoint2f getContourPoints() {
+		return contourPoints;
+	}
+
+	/**
+	 * Vraća konture pronađene na zadnjoj obrađenoj slici.
+	 *
+	 * @return konture pronađene na zadnjoj obrađenoj slici
+	 */
+	List<MatOfPoint> getContours() {
+		return contours;
+	}
+
+	/**
+	 * Vraća pravokutnike pronađene na zadnjoj obrađenoj slici.
+	 *
+	 * @return pravokutnike pronađene na zadnjoj obrađenoj slici
+	 */
+	List<Rect> getRectangles() {
+		return rectangles;
+	}
+
+	/**
+	 * Vraća međuspremnik za V vrijednosti piksela rubnog retka slike dane širine.
+	 *
+	 * @param cols širina slike
+	 * @return međuspremnik za V vrijednosti rubnog retka
+	 */
+	byte[] getBorderValues(int cols) {
+		if(borderValues.length != cols) borderValues = new byte[cols];
+		return borderValues;
+	}
+
+	/**
+	 * Vraća međuspremnik za piksele rubnog retka procesirane slike dane širine.
+	 *
+	 * @param cols širina slike
+	 * @return međuspremnik za piksele rubnog retka procesirane slike
+	 */
+	byte[] getBorderEdges(int cols) {
+		if(borderEdges.length != cols) borderEdges = new byte[cols];
+		return borderEdges;
+	}
+
+	/**
+	 * Vraća međuspremnik za piksele kontrolne linije slike dane širine.
+	 *
+	 * @param cols širina slike
+	 * @return međuspremnik za piksele kontrolne linije
+	 */
+	byte[] getControlRow(int cols) {
+		if(controlRow.length != 3*cols) controlRow = new byte[3*cols];
+		return controlRow;
+	}
+
+	/**
+	 * Vraća međuspremnik za piksele linije iznad kontrolne linije slike dane širine.
+	 *
+	 * @param cols širina slike
+	 * @return međuspremnik za piksele linije iznad kontrolne linije
+	 */
+	byte[] getUpperRow(int cols) {
+		if(upperRow.length != 3*cols) upperRow = new byte[3*cols];
+		return upperRow;
+	}
+
+	/**
+	 * Vraća veličinu jezgre Gaussovog zamućivanja.
+	 *
+	 * @return veličinu jezgre Gaussovog zamućivanja
+	 */
+	Size getBlurSize() {
+		return blurSize;
+	}
+}
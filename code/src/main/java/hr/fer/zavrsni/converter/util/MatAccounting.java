@@ -0,0 +1,232 @@
+package hr.fer.zavrsni.converter.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.opencv.core.Mat;
+
+/**
+ * Pomoćni razred za praćenje nativne memorije slika ({@link Mat}) koje se stvaraju pri obradi videozapisa.
+ * Slike se nalaze izvan Java gomile, pa se njihova potrošnja memorije ne vidi u veličini gomile.
+ * Kada je praćenje uključeno, za svaku registriranu sliku pamti se mjesto na kojem je stvorena,
+ * a broj i veličina živih slika mogu se dohvatiti u bilo kojem trenutku.
+ * U strogom načinu rada obrada slike videozapisa nakon koje ostanu žive privremene slike završava iznimkom.
+ * <p>
+ * Jedan objekt ovog razreda prati slike jedne obrade videozapisa (vidi {@link hr.fer.zavrsni.converter.converting.Converter#getMatAccounting()}),
+ * pa obrade koje se izvode istovremeno ne vide i ne prijavljuju slike jedna druge.
+ * Praćenje se za cijeli proces uključuje sustavskim svojstvom <code>converter.matAccounting</code> s vrijednošću
+ * <code>true</code> ili <code>strict</code>, ili metodama {@link #setEnabled(boolean)} i {@link #setStrict(boolean)}.
+ *
+ * @author Ana Bagić
+ *
+ */
+public class MatAccounting {
+
+	/** Je li praćenje slika uključeno. */
+	private static volatile boolean enabled;
+	/** Je li uključen strogi način rada. */
+	private static volatile boolean strict;
+	/** Sve žive registrirane slike po adresi nativnog objekta. */
+	private final Map<Long, Allocation> live = new ConcurrentHashMap<>();
+
+	static {
+		String mode = System.getProperty("converter.matAccounting", "false");
+		strict = mode.equals("strict");
+		enabled = strict || mode.equals("true");
+	}
+
+	/**
+	 * Vraća je li praćenje slika uključeno.
+	 *
+	 * @return <code>true</code> ako je praćenje uključeno, inače <code>false</code>
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Uključuje ili isključuje praćenje slika. Slike registrirane dok je praćenje bilo isključeno se ne prate.
+	 *
+	 * @param enabled treba li pratiti slike
+	 */
+	public static void setEnabled(boolean enabled) {
+		MatAccounting.enabled = enabled;
+	}
+
+	/**
+	 * Vraća je li uključen strogi način rada.
+	 *
+	 * @return <code>true</code> ako je uključen strogi način rada, inače <code>false</code>
+	 */
+	public static boolean isStrict() {
+		return strict;
+	}
+
+	/**
+	 * Uključuje ili isključuje strogi način rada. Uključivanje strogog načina rada uključuje i praćenje slika.
+	 *
+	 * @param strict treba li uključiti strogi način rada
+	 */
+	public static void setStrict(boolean strict) {
+		MatAccounting.strict = strict;
+		if(strict) enabled = true;
+	}
+
+	/**
+	 * Registrira dugoživuću sliku, npr. međuspremnik koji se koristi kroz obradu više slika videozapisa.
+	 *
+	 * @param <T> razred slike
+	 * @param mat slika koja se registrira
+	 * @param site mjesto na kojem je slika stvorena
+	 * @return registrirana slika
+	 */
+	public <T extends Mat> T register(T mat, String site) {
+		if(enabled) live.put(mat.nativeObj, new Allocation(mat, site, -1));
+		return mat;
+	}
+
+	/**
+	 * Registrira privremenu sliku koja mora biti oslobođena prije kraja obrade trenutne slike videozapisa.
+	 *
+	 * @param <T> razred slike
+	 * @param mat slika koja se registrira
+	 * @param site mjesto na kojem je slika stvorena
+	 * @return registrirana slika
+	 */
+	public <T extends Mat> T registerFrameLocal(T mat, String site) {
+		if(enabled) live.put(mat.nativeObj, new Allocation(mat, site, Thread.currentThread().getId()));
+		return mat;
+	}
+
+	/**
+	 * Oslobađa nativnu memoriju dane slike i prestaje ju pratiti.
+	 *
+	 * @param mat slika koja se oslobađa
+	 */
+	public void release(Mat mat) {
+		mat.release();
+		if(enabled) live.remove(mat.nativeObj);
+	}
+
+	/**
+	 * Provjerava jesu li sve privremene slike koje je stvorila trenutna dretva oslobođene.
+	 * Metoda se poziva na kraju obrade svake slike videozapisa.
+	 * U strogom načinu rada, ako je ostala živa privremena slika, baca se iznimka.
+	 *
+	 * @param frame broj obrađene slike videozapisa
+	 * @throws IllegalStateException ako je u strogom načinu rada ostala živa privremena slika
+	 */
+	public void endFrame(int frame) {
+		if(!strict) return;
+
+		long thread = Thread.currentThread().getId();
+		List<String> leaked = new ArrayList<>();
+		for(Allocation a : live.values()) {
+			if(a.thread == thread) leaked.add(a.toString());
+		}
+
+		if(!leaked.isEmpty()) {
+			throw new IllegalStateException("Nakon obrade slike " + frame + " ostale su žive slike: " + leaked);
+		}
+	}
+
+	/**
+	 * Vraća broj živih praćenih slika.
+	 *
+	 * @return broj živih praćenih slika
+	 */
+	public int getLiveCount() {
+		return live.size();
+	}
+
+	/**
+	 * Vraća ukupnu veličinu podataka živih praćenih slika u bajtovima.
+	 * Podslike dijele memoriju s originalnom slikom, pa se ne ubrajaju.
+	 *
+	 * @return ukupna veličina podataka živih praćenih slika u bajtovima
+	 */
+	public long getLiveBytes() {
+		long bytes = 0;
+		for(Allocation a : live.values()) {
+			bytes += a.bytes();
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Vraća opise svih živih praćenih slika s mjestom na kojem su stvorene i njihovom veličinom.
+	 * Ako se pozove nakon što su oslobođeni svi konteksti obrade, vraća slike koje nikada nisu oslobođene.
+	 *
+	 * @return lista opisa živih praćenih slika
+	 */
+	public List<String> getLiveAllocations() {
+		List<String> allocations = new ArrayList<>();
+		for(Allocation a : live.values()) {
+			allocations.add(a.toString());
+		}
+
+		return allocations;
+	}
+
+	/**
+	 * Ispisuje sve žive slike praćene ovim objektom kao neoslobođene i prestaje ih pratiti.
+	 * U strogom načinu rada, ako postoje neoslobođene slike, baca se iznimka.
+	 *
+	 * @throws IllegalStateException ako u strogom načinu rada postoje neoslobođene slike
+	 */
+	public void reportLeaks() {
+		if(!enabled || live.isEmpty()) return;
+
+		List<String> leaked = getLiveAllocations();
+		long bytes = getLiveBytes();
+		live.clear();
+
+		String report = "Neoslobođeno slika: " + leaked.size() + " (" + bytes + " B): " + leaked;
+		if(strict) {
+			throw new IllegalStateException(report);
+		}
+		System.err.println(report);
+	}
+
+	/**
+	 * Podatci o jednoj praćenoj slici.
+	 */
+	private static class Allocation {
+		/** Praćena slika. */
+		private Mat mat;
+		/** Mjesto na kojem je slika stvorena. */
+		private String site;
+		/** Dretva koja je stvorila privremenu sliku ili -1 za dugoživuće slike. */
+		private long thread;
+
+		/**
+		 * Stvara nove podatke o praćenoj slici.
+		 *
+		 * @param mat praćena slika
+		 * @param site mjesto na kojem je slika stvorena
+		 * @param thread dretva koja je stvorila privremenu sliku ili -1 za dugoživuće slike
+		 */
+		private Allocation(Mat mat, String site, long thread) {
+			this.mat = mat;
+			this.site = site;
+			this.thread = thread;
+		}
+
+		/**
+		 * Vraća veličinu podataka slike u bajtovima, 0 za podslike.
+		 *
+		 * @return veličina podataka slike u bajtovima
+		 */
+		private long bytes() {
+			return mat.isSubmatrix() ? 0 : mat.total() * mat.elemSize();
+		}
+
+		@Override
+		public String toString() {
+			return site + " " + bytes() + " B";
+		}
+	}
+}
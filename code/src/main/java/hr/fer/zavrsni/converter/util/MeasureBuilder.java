@@ -0,0 +1,103 @@
+package hr.fer.zavrsni.converter.util;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import hr.fer.zavrsni.converter.model.note.Note;
+import hr.fer.zavrsni.converter.model.song.Measure;
+import hr.fer.zavrsni.converter.model.song.Song;
+import hr.fer.zavrsni.converter.model.song.TimeSignature;
+
+/**
+ * Razred gradi taktove pjesme jedan za drugim. Note koje prelaze u sljedeći takt razdvajaju se
+ * i čuvaju dok se ne izgradi sljedeći takt.
+ *
+ * @author Ana Bagić
+ *
+ */
+public class MeasureBuilder {
+
+	/** Pjesma čiji se taktovi grade. */
+	private Song song;
+	/** Dijelovi nota prethodnog takta koji prelaze u sljedeći takt. */
+	private List<Note> prevMeasureNotes = new ArrayList<>();
+	/** Broj prve slike sljedećeg takta. */
+	private int firstFrameOfMeasure;
+	/** Redni broj sljedećeg takta. */
+	private int measureCounter = 1;
+
+	/**
+	 * Stvara novi graditelj taktova dane pjesme.
+	 *
+	 * @param song pjesma čiji se taktovi grade
+	 * @param startFrame slika u kojoj je prvi put zabilježena nota
+	 */
+	public MeasureBuilder(Song song, int startFrame) {
+		this.song = song;
+		this.firstFrameOfMeasure = startFrame;
+	}
+
+	/**
+	 * Vraća broj slike prije koje moraju započeti note koje pripadaju sljedećem taktu.
+	 *
+	 * @return granica početaka nota sljedećeg takta
+	 */
+	public int getNextBoundary() {
+		return (int) (firstFrameOfMeasure + TempoUtil.getMeasureFrames(song)) - 2;
+	}
+
+	/**
+	 * Gradi sljedeći takt pjesme od danih nota i dijelova nota prethodnog takta.
+	 *
+	 * @param notes note sortirane po početku koje su započele prije granice dobivene metodom {@link #getNextBoundary()}
+	 * @param lastMeasure je li ovo zadnji takt pjesme
+	 * @return novi takt pjesme
+	 */
+	public Measure build(List<Note> notes, boolean lastMeasure) {
+		TimeSignature ts = song.getTimeSignature();
+		Measure measure = new Measure(measureCounter);
+
+		int lastFrameOfMeasure = (int) (firstFrameOfMeasure + TempoUtil.getMeasureFrames(song));
+		List<Note> notesInMeasure = new ArrayList<>(prevMeasureNotes);
+		notesInMeasure.addAll(notes);
+		prevMeasureNotes.clear();
+
+		int highestFrameInMeasure = -1;
+		for(Note n : notesInMeasure) {
+			if(n.getEndTime() <= lastFrameOfMeasure + 3 && n.getEndTime() > highestFrameInMeasure) {
+				highestFrameInMeasure = n.getEndTime();
+			}
+		}
+
+		if(Math.abs(highestFrameInMeasure - lastFrameOfMeasure) <= 3) {
+			lastFrameOfMeasure = highestFrameInMeasure;
+		}
+
+		for(Note n : notesInMeasure) {
+			if(n.getEndTime() > lastFrameOfMeasure) {
+				if(!lastMeasure) {
+					prevMeasureNotes.add(TempoUtil.splitNotes(n, lastFrameOfMeasure));
+				} else {
+					n.setEndTime(lastFrameOfMeasure);
+				}
+			}
+		}
+
+		for(Note n : notesInMeasure) {
+			List<Note> foundNotes = new LinkedList<>();
+			TempoUtil.determineType(song, n, ts.getBeatUnit(), null, foundNotes);
+			measure.addElements(foundNotes, foundNotes.get(0).isLeftHand());
+		}
+
+		TempoUtil.addChordsAndRests(song, measure.getRightElements(), false, firstFrameOfMeasure, lastFrameOfMeasure);
+		if(song.isTwoHands()) {
+			TempoUtil.addChordsAndRests(song, measure.getLeftElements(), true, firstFrameOfMeasure, lastFrameOfMeasure);
+		}
+
+		measureCounter++;
+		firstFrameOfMeasure = lastFrameOfMeasure + 1;
+
+		return measure;
+	}
+}
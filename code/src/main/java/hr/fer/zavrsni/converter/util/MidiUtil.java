@@ -0,0 +1,250 @@
+package hr.fer.zavrsni.converter.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.PriorityQueue;
+
+import hr.fer.zavrsni.converter.model.song.NoteEvents;
+
+/**
+ * Pomoćni razred za generiranje MIDI datoteka (Standard MIDI File, tip 1) izravno iz nota pročitanih iz videozapisa,
+ * bez određivanja tonaliteta, tempa i taktova.
+ * Četvrtinka je podijeljena na onoliko otkucaja koliko videozapis ima cijelih slika po sekundi, a tempo se zapisuje tako da
+ * jedan otkucaj traje točno jednu sliku videozapisa, i kada broj slika po sekundi nije cijeli broj (npr. 29,97).
+ *
+ * @author Ana Bagić
+ *
+ */
+public class MidiUtil {
+
+	/** Broj mikrosekundi u sekundi. */
+	private static final double MICROSECONDS_PER_SECOND = 1e6;
+	/** Najveći broj otkucaja po četvrtinki koji se može zapisati u zaglavlje. */
+	private static final int MAX_DIVISION = 0x7FFF;
+	/** Veličina međuspremnika za zapisivanje u bajtovima. */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** Najveća veličina jednog događaja u bajtovima. */
+	private static final int MAX_EVENT_SIZE = 16;
+
+	/**
+	 * Vraća treba li u datoteku na danoj putanji zapisati MIDI datoteku, na temelju nastavka datoteke.
+	 *
+	 * @param file putanja do datoteke
+	 * @return <code>true</code> ako datoteka ima nastavak {@value Constants#MIDI_EXTENSION}, inače <code>false</code>
+	 */
+	public static boolean isMidi(Path file) {
+		return file.getFileName().toString().toLowerCase().endsWith(Constants.MIDI_EXTENSION);
+	}
+
+	/**
+	 * Zapisuje dane note u MIDI datoteku na danoj putanji. Prva staza sadrži tempo, a note desne i lijeve ruke
+	 * zapisuju se u zasebne staze i kanale. Vrijeme se računa od početka prve note.
+	 *
+	 * @param events note pročitane iz videozapisa
+	 * @param fps točan broj slika po sekundi videozapisa
+	 * @param file putanja do datoteke u koju se zapisuju note
+	 * @throws IOException ako zapisivanje ne uspije
+	 * @throws IllegalArgumentException ako se broj slika po sekundi ne može zapisati u MIDI datoteku
+	 */
+	public static void generate(NoteEvents events, double fps, Path file) throws IOException {
+		int division = (int) fps;
+		if(division <= 0 || division > MAX_DIVISION) {
+			throw new IllegalArgumentException("Broj slika po sekundi mora biti između 1 i " + MAX_DIVISION + ".");
+		}
+		int tempo = (int) Math.round(MICROSECONDS_PER_SECOND * division / fps);
+
+		events.sort();
+		boolean twoHands = false;
+		for(int i = 0; i < events.size(); i++) {
+			twoHands |= (events.getFlags(i) & NoteEvents.LEFT_HAND) != 0;
+		}
+		int origin = events.size() == 0 ? 0 : events.getStart(0);
+
+		try(SmfWriter out = new SmfWriter(file)) {
+			out.buffer.put("MThd".getBytes(StandardCharsets.US_ASCII));
+			out.buffer.putInt(6);
+			out.buffer.putShort((short) 1);
+			out.buffer.putShort((short) (twoHands ? 3 : 2));
+			out.buffer.putShort((short) division);
+
+			out.startTrack();
+			out.putVariableLength(0);
+			out.buffer.put((byte) 0xFF).put((byte) 0x51).put((byte) 0x03);
+			out.buffer.put((byte) (tempo >> 16)).put((byte) (tempo >> 8)).put((byte) tempo);
+			out.endTrack();
+
+			writeHand(out, events, false, 0, origin);
+			if(twoHands) {
+				writeHand(out, events, true, 1, origin);
+			}
+		}
+	}
+
+	/**
+	 * Zapisuje stazu s notama jedne ruke. Završetak note zapisuje se kao početak note s jačinom 0,
+	 * pa svi događaji staze dijele isti status i status se zapisuje samo jednom.
+	 *
+	 * @param out izlaz u koji se zapisuje datoteka
+	 * @param events sortirane note pročitane iz videozapisa
+	 * @param leftHand zapisuju li se note lijeve ruke
+	 * @param channel MIDI kanal staze
+	 * @param origin broj slike od koje se računa vrijeme
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	private static void writeHand(SmfWriter out, NoteEvents events, boolean leftHand, int channel, int origin) throws IOException {
+		out.startTrack();
+		out.status = (byte) (0x90 | channel);
+
+		PriorityQueue<Long> endings = new PriorityQueue<>();
+		int time = 0;
+		for(int i = 0; i < events.size(); i++) {
+			if(((events.getFlags(i) & NoteEvents.LEFT_HAND) != 0) != leftHand) continue;
+
+			int start = events.getStart(i) - origin;
+			while(!endings.isEmpty() && endings.peek() >> 8 <= start) {
+				long ending = endings.poll();
+				time = out.putNote((int) (ending >> 8), time, (int) ending & 0x7F, 0);
+			}
+
+			time = out.putNote(start, time, events.getKey(i), Constants.MIDI_VELOCITY);
+			int end = Math.max(events.getEnd(i) - origin, start + 1);
+			endings.add((long) end << 8 | events.getKey(i));
+		}
+		while(!endings.isEmpty()) {
+			long ending = endings.poll();
+			time = out.putNote((int) (ending >> 8), time, (int) ending & 0x7F, 0);
+		}
+
+		out.endTrack();
+	}
+
+	/**
+	 * Izlaz MIDI datoteke koji zapisuje u kanal datoteke kroz međuspremnik i naknadno upisuje duljine staza.
+	 */
+	private static class SmfWriter implements AutoCloseable {
+		/** Kanal datoteke. */
+		private FileChannel channel;
+		/** Međuspremnik za zapisivanje. */
+		private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		/** Položaj polja duljine trenutne staze u datoteci. */
+		private long lengthPosition;
+		/** Status koji trebaju imati događaji note trenutne staze. */
+		private byte status;
+		/** Status zadnjeg zapisanog događaja trenutne staze, 0 ako nije zapisan nijedan. */
+		private byte lastStatus;
+
+		/**
+		 * Otvara izlaz u datoteku na danoj putanji.
+		 *
+		 * @param file putanja do datoteke
+		 * @throws IOException ako se datoteka ne može otvoriti
+		 */
+		private SmfWriter(Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		}
+
+		/**
+		 * Započinje novu stazu i ostavlja mjesto za njezinu duljinu.
+		 *
+		 * @throws IOException ako zapisivanje ne uspije
+		 */
+		private void startTrack() throws IOException {
+			ensure(8);
+			buffer.put("MTrk".getBytes(StandardCharsets.US_ASCII));
+			lengthPosition = channel.position() + buffer.position();
+			buffer.putInt(0);
+			lastStatus = 0;
+		}
+
+		/**
+		 * Zapisuje kraj staze odmah nakon zadnjeg događaja i upisuje duljinu staze.
+		 *
+		 * @throws IOException ako zapisivanje ne uspije
+		 */
+		private void endTrack() throws IOException {
+			ensure(MAX_EVENT_SIZE);
+			putVariableLength(0);
+			buffer.put((byte) 0xFF).put((byte) 0x2F).put((byte) 0x00);
+			flush();
+
+			ByteBuffer length = ByteBuffer.allocate(4);
+			length.putInt((int) (channel.position() - lengthPosition - 4)).flip();
+			channel.write(length, lengthPosition);
+		}
+
+		/**
+		 * Zapisuje početak note, ili završetak note ako je jačina 0.
+		 *
+		 * @param eventTime trenutak događaja u otkucajima
+		 * @param time trenutak prethodnog događaja staze u otkucajima
+		 * @param key MIDI broj tona note
+		 * @param velocity jačina note
+		 * @return trenutak zapisanog događaja
+		 * @throws IOException ako zapisivanje ne uspije
+		 */
+		private int putNote(int eventTime, int time, int key, int velocity) throws IOException {
+			ensure(MAX_EVENT_SIZE);
+			putVariableLength(eventTime - time);
+			if(lastStatus != status) {
+				buffer.put(status);
+				lastStatus = status;
+			}
+			buffer.put((byte) key).put((byte) velocity);
+			return eventTime;
+		}
+
+		/**
+		 * Zapisuje broj u zapisu promjenjive duljine, po sedam bitova u bajtu, od najznačajnijih bitova.
+		 *
+		 * @param value nenegativan broj
+		 */
+		private void putVariableLength(int value) {
+			int shift = 28;
+			while(shift > 0 && (value >>> shift) == 0) {
+				shift -= 7;
+			}
+			for(; shift > 0; shift -= 7) {
+				buffer.put((byte) (0x80 | ((value >>> shift) & 0x7F)));
+			}
+			buffer.put((byte) (value & 0x7F));
+		}
+
+		/**
+		 * Prazni međuspremnik ako u njemu nema mjesta za dani broj bajtova.
+		 *
+		 * @param bytes broj bajtova koji se zapisuje
+		 * @throws IOException ako zapisivanje ne uspije
+		 */
+		private void ensure(int bytes) throws IOException {
+			if(buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		/**
+		 * Zapisuje sadržaj međuspremnika u datoteku.
+		 *
+		 * @throws IOException ako zapisivanje ne uspije
+		 */
+		private void flush() throws IOException {
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+}
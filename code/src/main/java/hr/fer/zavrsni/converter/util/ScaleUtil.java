@@ -10,6 +10,7 @@ import java.util.TreeMap;
 import hr.fer.zavrsni.converter.model.note.Note;
 import hr.fer.zavrsni.converter.model.note.NoteAlphabet;
 import hr.fer.zavrsni.converter.model.note.Pitch;
+import hr.fer.zavrsni.converter.model.note.Spelling;
 import hr.fer.zavrsni.converter.model.song.Scale;
 import hr.fer.zavrsni.converter.model.song.Song;
 
@@ -134,39 +135,54 @@ public class ScaleUtil {
 	
 	/**
 	 * Note dane pjesme prilagođava tonalitetu pjesme. Dodaje povisilice/snizilice/razrješilce.
+	 * Ton note se ne mijenja, nego se noti postavlja zapis tona u skladu s tonalitetom.
 	 * 
 	 * @param song pjesma koju se želi prilagoditi tonalitetu
 	 */
 	public static void fitToScale(Song song) {
-		int fifths = song.getScale().getFifths();
+		fitToScale(song, song.getScale());
+	}
+	
+	/**
+	 * Dane note prilagođava danom tonalitetu. Dodaje povisilice/snizilice/razrješilce.
+	 * 
+	 * @param notes note koje se žele prilagoditi tonalitetu
+	 * @param scale tonalitet kojem se note prilagođavaju
+	 */
+	public static void fitToScale(Iterable<Note> notes, Scale scale) {
+		int fifths = scale.getFifths();
 		
-		Set<NoteAlphabet> notesInScale = getMajorScale(song.getScale().getStartAlphabet());
+		Set<NoteAlphabet> notesInScale = getMajorScale(scale.getStartAlphabet());
 		Set<NoteAlphabet> alters = fifths < 0 ? getFlats(-fifths) : getSharps(fifths);
 		
-		for(Note n : song) {
+		for(Note n : notes) {
 			Pitch p = n.getPitch();
 			NoteAlphabet prevAl = p.getAlphabet();
+			int octave = p.getOctave();
+			int alter = 0;
+			NoteAlphabet alphabet = prevAl;
 			
 			if(alters.contains(prevAl) || (!notesInScale.contains(prevAl) && sharps.subList(0, 5).contains(prevAl))) {
 				if(fifths < 0) {
 					if(prevAl == NoteAlphabet.H) {
-						p.increaseOctave();
+						octave++;
 					}
 					
-					p.setAlter(-1);
-					p.setAlphabet(getSharp(prevAl));
+					alter = -1;
+					alphabet = getSharp(prevAl);
 				} else {
 					if(prevAl == NoteAlphabet.C) {
-						p.decreaseOctave();
+						octave--;
 					}
 					
-					p.setAlter(1);
-					p.setAlphabet(getFlat(prevAl));
+					alter = 1;
+					alphabet = getFlat(prevAl);
 				}
 			}
+			n.setSpelling(new Spelling(alphabet, octave, alter));
 			
 			if(!notesInScale.contains(prevAl)) {
-				n.setAccidental(p.getAlter());
+				n.setAccidental(alter);
 			}
 		}
 	}
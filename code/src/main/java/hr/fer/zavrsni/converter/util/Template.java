@@ -0,0 +1,95 @@
+package hr.fer.zavrsni.converter.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Razred predstavlja predložak dijela MusicXML dokumenta, jednom rastavljen na nepromjenjive dijelove:
+ * doslovni tekst i oznake oblika <code>#OZNAKA#</code> na čije se mjesto pri zapisivanju upisuje sadržaj.
+ *
+ * @author Ana Bagić
+ *
+ */
+class Template {
+
+	/** Dijelovi predloška: doslovni tekst je u parnim, a oznake u neparnim mjestima liste. */
+	private final List<String> segments;
+
+	/**
+	 * Stvara predložak rastavljanjem danog teksta na doslovni tekst i oznake.
+	 *
+	 * @param text tekst predloška
+	 */
+	Template(String text) {
+		List<String> segments = new ArrayList<>();
+
+		int from = 0;
+		int start;
+		int end;
+		while((start = text.indexOf('#', from)) != -1 && (end = text.indexOf('#', start + 1)) != -1) {
+			segments.add(text.substring(from, start));
+			segments.add(text.substring(start + 1, end).intern());
+			from = end + 1;
+		}
+		segments.add(text.substring(from));
+
+		this.segments = Collections.unmodifiableList(segments);
+	}
+
+	/**
+	 * Učitava tekst predloška s danim imenom iz direktorija predložaka na classpathu.
+	 *
+	 * @param name ime datoteke predloška
+	 * @return tekst predloška
+	 * @throws IllegalStateException ako se predložak ne može učitati
+	 */
+	static String load(String name) {
+		try(InputStream in = Template.class.getResourceAsStream(Constants.PATH_TO_XML_TEMPLATES + name)) {
+			if(in == null) {
+				throw new IllegalStateException("Predložak " + name + " ne postoji.");
+			}
+
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new IllegalStateException("Predložak " + name + " se ne može učitati.", e);
+		}
+	}
+
+	/**
+	 * Zapisuje predložak u dani izlaz. Doslovni tekst zapisuje se nepromijenjen,
+	 * a umjesto svake oznake zapisuje se sadržaj koji daje dani popunjivač.
+	 *
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @param filler popunjivač oznaka predloška
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	void write(Writer out, Filler filler) throws IOException {
+		int last = segments.size() - 1;
+		for(int i = 0; i < last; i += 2) {
+			out.write(segments.get(i));
+			filler.fill(segments.get(i + 1), out);
+		}
+		out.write(segments.get(last));
+	}
+
+	/**
+	 * Popunjivač oznaka predloška.
+	 */
+	@FunctionalInterface
+	interface Filler {
+
+		/**
+		 * Zapisuje sadržaj dane oznake predloška u dani izlaz.
+		 *
+		 * @param key oznaka predloška, bez znakova <code>#</code>
+		 * @param out izlaz u koji se zapisuje dokument
+		 * @throws IOException ako zapisivanje ne uspije
+		 */
+		void fill(String key, Writer out) throws IOException;
+	}
+}
@@ -1,17 +1,18 @@
 package hr.fer.zavrsni.converter.util;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
-import hr.fer.zavrsni.converter.converting.Converter;
 import hr.fer.zavrsni.converter.model.note.Note;
 import hr.fer.zavrsni.converter.model.note.NoteType;
-import hr.fer.zavrsni.converter.model.song.Measure;
 import hr.fer.zavrsni.converter.model.song.Song;
 import hr.fer.zavrsni.converter.model.song.TimeSignature;
 
@@ -25,8 +26,6 @@ public class TempoUtil {
 
 	/** Tipovi nota po trajanju. */
 	private static List<NoteType> types = new LinkedList<>();
-	/** Prave vrijednosti trajanja tipova nota u broju slika. */
-	private static Map<NoteType, Double> realDurations = new HashMap<>();
 	/** Relativne vrijednosti trajanja tipova nota u broju slika. */
 	private static Map<NoteType, Integer> relativeDurations = new HashMap<>();
 	
@@ -53,13 +52,23 @@ public class TempoUtil {
 	 * @param song pjesma za koju se traži tempo
 	 */
 	public static void findTempo(Song song) {
+		findTempo(song, Util.getFrequencies(song, n -> n.getLength()));
+	}
+	
+	/**
+	 * Metoda računa najvjerojatnije trajanje jedinice mjere takta u slikama na temelju danih učestalosti trajanja nota
+	 * i trenutno pretpostavljenog tempa pjesme. Postavlja novi tempo pjesme i trajanje takta.
+	 * 
+	 * @param song pjesma za koju se traži tempo
+	 * @param durations mapa koja trajanju note u slikama pridružuje broj nota s tim trajanjem
+	 */
+	public static void findTempo(Song song, Map<Integer, Integer> durations) {
 		TimeSignature ts = song.getTimeSignature();
 		
-		Map<Integer, Integer> durations = Util.getFrequencies(song, n -> n.getLength());
 		List<Integer> sortedDurations = Util.getListSortedByValues(durations);
 		List<Integer> firstFive = sortedDurations.size() < 5 ? sortedDurations : sortedDurations.subList(0, 5);
 		
-		int fps = Converter.getInstance().getFramesPerSecond();
+		int fps = song.getFramesPerSecond();
 		double guessedFPB = (60.0 * fps)/song.getBeatsPerMinute();
 		
 		double framesPerBeat = Integer.MAX_VALUE;
@@ -75,98 +84,57 @@ public class TempoUtil {
 			}
 		}
 		
-		setRealDurations(framesPerBeat, ts.getBeatUnit());
+		song.setFramesPerBeat(framesPerBeat);
 		song.setMeasureDuration(ts.getBeats() * relativeDurations.get(ts.getBeatUnit()));
 		song.setBeatsPerMinute((int) ((60 * fps)/framesPerBeat));
 	}
 	
 	/**
-	 * Metoda postavlja stvarno trajanje svakog tipa note na temelju jedinice mjere i njenog trajanja.
+	 * Metoda vraća stvarno trajanje danog tipa note u slikama na temelju jedinice mjere pjesme i njenog trajanja.
 	 * 
-	 * @param framesPerBeat trajanje jedinice mjere
-	 * @param beatUnit jedinica mjere
+	 * @param song pjesma s određenim tempom
+	 * @param type tip note
+	 * @return stvarno trajanje tipa note u slikama
 	 */
-	private static void setRealDurations(double framesPerBeat, NoteType beatUnit) {
-		realDurations.put(beatUnit, framesPerBeat);
-		
-		for(int i = types.indexOf(beatUnit) - 1; i >= 0; i--) {
-			realDurations.put(types.get(i), realDurations.get(types.get(i+1))*2);
-		}
-		
-		for(int i = types.indexOf(beatUnit) + 1; i < types.size(); i++) {
-			realDurations.put(types.get(i), realDurations.get(types.get(i-1))/2);
-		}
+	private static double getRealDuration(Song song, NoteType type) {
+		return song.getFramesPerBeat() * relativeDurations.get(type) / relativeDurations.get(song.getTimeSignature().getBeatUnit());
 	}
 	
 	/**
 	 * Metoda gradi vremensku crtu pojavljivanja nota i pauza na temelju izračunatog tempa.
+	 * Note pjesme obilaze se jednom, redom po početku, a note koje prelaze u sljedeći takt čuva {@link MeasureBuilder}.
 	 * 
 	 * @param song pjesma za koju se gradi vremenska crta
 	 * @param startFrame slika u kojoj je prvi put zabilježena nota
 	 */
 	public static void createTimeline(Song song, int startFrame) {
-		List<Note> prevMeasureNotes = new LinkedList<>();
-		TimeSignature ts = song.getTimeSignature();
+		MeasureBuilder builder = new MeasureBuilder(song, startFrame);
 		
-		double measureDuration = realDurations.get(ts.getBeatUnit()) * ts.getBeats();
-		int firstFrameOfMeasure = startFrame;
-		
-		int measureCounter = 1;
-		boolean lastMeasure;
+		Iterator<Note> cursor = song.iterator();
+		Note nextNote = cursor.hasNext() ? cursor.next() : null;
 		
 		do {
-			Measure measure = new Measure(measureCounter);
-			lastMeasure = true;
-			
-			int lastFrameOfMeasure = (int) (firstFrameOfMeasure + measureDuration);
-			List<Note> notesInMeasure = new LinkedList<>(prevMeasureNotes);
-			prevMeasureNotes.clear();
-			
-			for(Note n : song) {
-				if(!(n.getStartTime() < lastFrameOfMeasure - 2)) {
-					lastMeasure = false;
-					break;
-				}
-				notesInMeasure.add(n);
-			}
-			song.removeNotes(notesInMeasure);
-			
-			int highestFrameInMeasure = -1;
-			for(Note n : notesInMeasure) {
-				if(n.getEndTime() <= lastFrameOfMeasure + 3 && n.getEndTime() > highestFrameInMeasure) {
-					highestFrameInMeasure = n.getEndTime();
-				}
-			}
-			
-			if(Math.abs(highestFrameInMeasure - lastFrameOfMeasure) <= 3) {
-				lastFrameOfMeasure = highestFrameInMeasure;
-			}
-			
-			for(Note n : notesInMeasure) {				
-				if(n.getEndTime() > lastFrameOfMeasure) {
-					if(!lastMeasure) {
-						prevMeasureNotes.add(splitNotes(n, lastFrameOfMeasure));
-					} else {
-						n.setEndTime(lastFrameOfMeasure);
-					}
-				}
-			}
+			int boundary = builder.getNextBoundary();
+			List<Note> notesInMeasure = new ArrayList<>();
 			
-			for(Note n : notesInMeasure) {
-				List<Note> foundNotes = new LinkedList<>();
-				determineType(n, ts.getBeatUnit(), null, foundNotes);
-				measure.addElements(foundNotes, foundNotes.get(0).isLeftHand());
+			while(nextNote != null && nextNote.getStartTime() < boundary) {
+				notesInMeasure.add(nextNote);
+				nextNote = cursor.hasNext() ? cursor.next() : null;
 			}
 			
-			addChordsAndRests(measure.getRightElements(), false, firstFrameOfMeasure, lastFrameOfMeasure);
-			if(song.isTwoHands()) {
-				addChordsAndRests(measure.getLeftElements(), true, firstFrameOfMeasure, lastFrameOfMeasure);
-			}
-			
-			song.addMeasure(measure);
-			measureCounter++;
-			firstFrameOfMeasure = lastFrameOfMeasure + 1;
-		} while(!lastMeasure);
+			song.addMeasure(builder.build(notesInMeasure, nextNote == null));
+		} while(nextNote != null);
+	}
+	
+	/**
+	 * Vraća trajanje jednog takta u slikama za mjeru i trenutno izračunati tempo dane pjesme.
+	 * 
+	 * @param song pjesma s određenim tempom
+	 * @return trajanje jednog takta u slikama
+	 */
+	static double getMeasureFrames(Song song) {
+		TimeSignature ts = song.getTimeSignature();
+		return getRealDuration(song, ts.getBeatUnit()) * ts.getBeats();
 	}
 	
 	/**
@@ -176,8 +144,9 @@ public class TempoUtil {
 	 * @param splitFrame broj slike po kojemu se želi prepoloviti nota
 	 * @return nova nota (druga po redu) koja je nastala propolavljanjem dane
 	 */
-	private static Note splitNotes(Note n, int splitFrame) {		
+	static Note splitNotes(Note n, int splitFrame) {		
 		Note newNote = new Note(n.isRest(), n.getPitch(), n.getAccidental(), n.isChord(), n.isLeftHand(), splitFrame + 1, n.getEndTime());
+		newNote.setSpelling(n.getSpelling());
 		newNote.setTiedStop();
 		
 		if(n.isTiedStart()) {
@@ -193,31 +162,32 @@ public class TempoUtil {
 	/**
 	 * Metoda određuje tip note po trajanju rekurzivnim algoritmom i sprema dobivenu notu (ili note ako se sastoji od više tipova) u danu listu.
 	 * 
+	 * @param song pjesma s određenim tempom
 	 * @param note nota za koju se želi odrediti tip
 	 * @param type trenutno pretpostavljeni tip note
 	 * @param prevSmaller je li se u prošlom pozivu tražila manja nota ili veća (<code>null</code> ako je prvi poziv)
 	 * @param foundNotes lista nota u koju se trebaju pohraniti dobivene
 	 */
-	private static void determineType(Note note, NoteType type, Boolean prevSmaller, List<Note> foundNotes) {
-		if(realDurations.get(type) - note.getLength() > Constants.NOTE_LEN_ERROR && type != NoteType.N32TH) {			
+	static void determineType(Song song, Note note, NoteType type, Boolean prevSmaller, List<Note> foundNotes) {
+		if(getRealDuration(song, type) - note.getLength() > Constants.NOTE_LEN_ERROR && type != NoteType.N32TH) {			
 			if(prevSmaller == null || prevSmaller) {
-				determineType(note, getSmaller(type), true, foundNotes);
+				determineType(song, note, getSmaller(type), true, foundNotes);
 				return;
 			}
 			
-			Note newNote = splitNotes(note, (int) (note.getStartTime() + realDurations.get(getSmaller(type))));
+			Note newNote = splitNotes(note, (int) (note.getStartTime() + getRealDuration(song, getSmaller(type))));
 			addNote(foundNotes, note, getSmaller(type));
-			determineType(newNote, getSmaller(type), null, foundNotes);
+			determineType(song, newNote, getSmaller(type), null, foundNotes);
 			
-		} else if(note.getLength() - realDurations.get(type) > Constants.NOTE_LEN_ERROR && type != NoteType.WHOLE) {
+		} else if(note.getLength() - getRealDuration(song, type) > Constants.NOTE_LEN_ERROR && type != NoteType.WHOLE) {
 			if(prevSmaller == null || !prevSmaller) {
-				determineType(note, getBigger(type), false, foundNotes);
+				determineType(song, note, getBigger(type), false, foundNotes);
 				return;
 			}
 			
-			Note newNote = splitNotes(note, (int) (note.getStartTime() + realDurations.get(type)));
+			Note newNote = splitNotes(note, (int) (note.getStartTime() + getRealDuration(song, type)));
 			addNote(foundNotes, note, type);
-			determineType(newNote, getSmaller(type), null, foundNotes);
+			determineType(song, newNote, getSmaller(type), null, foundNotes);
 			
 		} else {
 			addNote(foundNotes, note, type);
@@ -262,14 +232,15 @@ public class TempoUtil {
 	/**
 	 * Dodaje pauze i stvara akorde gdje je potrebno.
 	 * 
+	 * @param song pjesma s određenim tempom
 	 * @param notes note takta u koje se dodaje pauza/akordi
 	 * @param leftHand pripadaju li note lijevoj ruci takta ili ne
 	 * @param firstFrameOfMeasure broj prve slike takta
 	 * @param lastFrameOfMeasure broj zadnje slike takta
 	 */
-	private static void addChordsAndRests(Set<Note> notes, boolean leftHand, int firstFrameOfMeasure, int lastFrameOfMeasure) {
+	static void addChordsAndRests(Song song, Set<Note> notes, boolean leftHand, int firstFrameOfMeasure, int lastFrameOfMeasure) {
 		int biggestEndFrame = firstFrameOfMeasure;
-		Set<Note> notesToAdd = new HashSet<>();
+		Set<Note> notesToAdd = new LinkedHashSet<>();
 		Set<Note> chords = new TreeSet<>();
 		
 		for(Note n : notes) {
@@ -282,11 +253,11 @@ public class TempoUtil {
 							Note newNote = splitNotes(ch, n.getStartTime() - 1);
 							
 							List<Note> foundNotes = new LinkedList<>();
-							determineType(ch, ch.getNoteType(), null, foundNotes);
+							determineType(song, ch, ch.getNoteType(), null, foundNotes);
 							oldChords.addAll(foundNotes);
 							
 							foundNotes.clear();
-							determineType(newNote, ch.getNoteType(), null, foundNotes);
+							determineType(song, newNote, ch.getNoteType(), null, foundNotes);
 							newChords.addAll(foundNotes);
 						} else {
 							newChords.add(ch);
@@ -311,7 +282,7 @@ public class TempoUtil {
 			if(n.getStartTime() - biggestEndFrame > Constants.REST_ERROR) {
 				List<Note> foundRests = new LinkedList<>();
 				Note rest = new Note(true, null, -2, false, leftHand, biggestEndFrame, n.getStartTime());
-				determineType(rest, NoteType.QUARTER, null, foundRests);
+				determineType(song, rest, NoteType.QUARTER, null, foundRests);
 				notesToAdd.addAll(foundRests);
 			}
 			
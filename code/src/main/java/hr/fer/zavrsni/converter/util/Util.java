@@ -7,6 +7,10 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.function.Function;
 
+import org.opencv.core.Core;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
 /**
  * Razred s pomoćnim funkcijama za ovu aplikaciju.
  * 
@@ -53,4 +57,36 @@ public class Util {
 		sorted.putAll(original);
 		return new LinkedList<>(sorted.keySet());
 	}
+
+	/**
+	 * Učitava OpenCV biblioteku iz putanje biblioteka, ili iz jar datoteke OpenCV-a ako je nema na putanji.
+	 */
+	public static void loadOpenCV() {
+		try {
+			System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+		} catch (UnsatisfiedLinkError e) {
+			nu.pattern.OpenCV.loadLocally();
+		}
+	}
+	
+	/**
+	 * Stvara pravokutnik slike iz zapisa oblika <code>x0,y0,x1,y1</code>, gdje su dane bilo koje dvije suprotne točke pravokutnika.
+	 * 
+	 * @param text zapis pravokutnika
+	 * @return pravokutnik iz zapisa
+	 * @throws IllegalArgumentException ako zapis nije ispravan pravokutnik
+	 */
+	public static Rect parseRect(String text) {
+		String[] parts = text.split(",");
+		if(parts.length != 4) {
+			throw new IllegalArgumentException("Pravokutnik slike treba biti oblika x0,y0,x1,y1: " + text);
+		}
+		
+		try {
+			return new Rect(new Point(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())),
+					new Point(Integer.parseInt(parts[2].trim()), Integer.parseInt(parts[3].trim())));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Koordinate pravokutnika slike nisu cijeli brojevi: " + text);
+		}
+	}
 }
@@ -1,19 +1,31 @@
 package hr.fer.zavrsni.converter.util;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import hr.fer.zavrsni.converter.model.note.Note;
 import hr.fer.zavrsni.converter.model.note.NoteAlphabet;
 import hr.fer.zavrsni.converter.model.note.NoteType;
+import hr.fer.zavrsni.converter.model.note.Spelling;
 import hr.fer.zavrsni.converter.model.song.Measure;
 import hr.fer.zavrsni.converter.model.song.Song;
+import hr.fer.zavrsni.converter.model.song.TimeSignature;
 
 /**
  * Pomoćni razred za generiranje musicxml datoteka.
@@ -23,38 +35,35 @@ import hr.fer.zavrsni.converter.model.song.Song;
  */
 public class XMLUtil {
 
-	/** Predložak generalnog dokumenta. */
-	private static String mainTemp;
+	/** Predložak generalnog dokumenta do oznake taktova. */
+	private static final Template mainStartTemp;
+	/** Predložak generalnog dokumenta nakon oznake taktova. */
+	private static final String mainEndTemp;
 	/** Oznaka koja označuje kraj zadnjeg takta u pjesmi. */
-	private static String barlineTemp;
+	private static final String barlineTemp = Template.load("barline.xml");
 	/** Oznaka koja označuje bas ključ. */
-	private static String clefFTemp;
+	private static final String clefFTemp = Template.load("clefF.xml");
 	/** Predložak prvog takta u pjesmi. */
-	private static String measure1Temp;
+	private static final Template measure1Temp = new Template(Template.load("measure1.xml"));
 	/** Predložak taktova u pjesmi. */
-	private static String measure2Temp;
+	private static final Template measure2Temp = new Template(Template.load("measure2.xml"));
 	/** Predložak note. */
-	private static String noteTemp;
+	private static final Template noteTemp = new Template(Template.load("note.xml"));
 	/** Predložak pauze.  */
-	private static String restTemp;
+	private static final Template restTemp = new Template(Template.load("rest.xml"));
+	/** Predložak opisa sadržaja komprimiranog MusicXML dokumenta. */
+	private static final Template containerTemp = new Template(Template.load("container.xml"));
+	/** Predložak oznake predznaka note. */
+	private static final Template accidentalTemp = new Template("<accidental>#ACC#</accidental>");
 	
 	/** Mapa dodatnih oznaka za notu. */
 	private static Map<String, String> extras = new HashMap<>();
 	
 	static {
-		try {
-			mainTemp = Files.readString(Paths.get(Constants.PATH_TO_XML_TEMPLATES + "main.xml"));
-			barlineTemp = Files.readString(Paths.get(Constants.PATH_TO_XML_TEMPLATES + "barline.xml"));
-			clefFTemp = Files.readString(Paths.get(Constants.PATH_TO_XML_TEMPLATES + "clefF.xml"));
-			measure1Temp = Files.readString(Paths.get(Constants.PATH_TO_XML_TEMPLATES + "measure1.xml"));
-			measure2Temp = Files.readString(Paths.get(Constants.PATH_TO_XML_TEMPLATES + "measure2.xml"));
-			noteTemp = Files.readString(Paths.get(Constants.PATH_TO_XML_TEMPLATES + "note.xml"));
-			restTemp = Files.readString(Paths.get(Constants.PATH_TO_XML_TEMPLATES + "rest.xml"));
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		String mainTemp = Template.load("main.xml");
+		mainStartTemp = new Template(mainTemp.substring(0, mainTemp.indexOf("#M#")));
+		mainEndTemp = mainTemp.substring(mainTemp.indexOf("#M#") + "#M#".length());
 		
-		extras.put("acc", "<accidental>#ACC#</accidental>");
 		extras.put("chord", "<chord />");
 		extras.put("tieStart", "<tie type=\"start\" />");
 		extras.put("tieStop", "<tie type=\"stop\" />");
@@ -70,174 +79,387 @@ public class XMLUtil {
 	 * @return MusciXML datoteka u {@link String} formatu
 	 */
 	public static String generate(Song song) {
-		String document = new String(mainTemp);
+		StringWriter out = new StringWriter();
+		try {
+			generate(song, out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 		
-		document = document.replaceAll("#D#", song.getMetadata().getDate());
-		document = document.replaceAll("#T#", song.getMetadata().getSongName());
-		document = document.replaceAll("#A#", song.getMetadata().getArtistName());
+		return out.toString();
+	}
+	
+	/**
+	 * Generira MusicXML dokument i zapisuje ga u datoteku na danoj putanji, kodiranu u UTF-8.
+	 * Ako datoteka ima nastavak {@value Constants#MXL_EXTENSION}, dokument se zapisuje kao komprimirani MusicXML.
+	 * 
+	 * @param song pjesma iz koje se generira dokument
+	 * @param file putanja do datoteke u koju se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	public static void generate(Song song, Path file) throws IOException {
+		try(Writer out = newWriter(file)) {
+			generate(song, out);
+		}
+	}
+	
+	/**
+	 * Otvara izlaz za MusicXML dokument u datoteku na danoj putanji, kodiranu u UTF-8. Ako datoteka ima nastavak
+	 * {@value Constants#MXL_EXTENSION}, vraća se izlaz za komprimirani MusicXML (vidi {@link #newCompressedWriter(OutputStream)}).
+	 * 
+	 * @param file putanja do datoteke u koju se zapisuje dokument
+	 * @return izlaz u koji se zapisuje dokument
+	 * @throws IOException ako se datoteka ne može otvoriti
+	 */
+	public static Writer newWriter(Path file) throws IOException {
+		return isCompressed(file)
+				? newCompressedWriter(Files.newOutputStream(file))
+				: Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Kopira već generirani MusicXML dokument iz datoteke u datoteku na danoj putanji, bez čitanja cijelog dokumenta
+	 * u memoriju. Ako datoteka ima nastavak {@value Constants#MXL_EXTENSION}, dokument se zapisuje kao komprimirani MusicXML.
+	 * 
+	 * @param document datoteka s generiranim dokumentom kodiranim u UTF-8
+	 * @param file putanja do datoteke u koju se zapisuje dokument
+	 * @throws IOException ako čitanje ili zapisivanje ne uspije
+	 */
+	public static void copy(Path document, Path file) throws IOException {
+		if(!isCompressed(file)) {
+			Files.copy(document, file, StandardCopyOption.REPLACE_EXISTING);
+			return;
+		}
 		
-		List<String> measures = new LinkedList<>();
-		int i = 1;
-		for(Measure m : song.getMeasures()) {
-			if(i == 1) {
-				measures.add(getFirstMeasure(song, m));
-			} else {
-				measures.add(getMeasure(song, m));
-			}
-			i++;
+		try(Reader in = Files.newBufferedReader(document, StandardCharsets.UTF_8);
+				Writer out = newCompressedWriter(Files.newOutputStream(file))) {
+			in.transferTo(out);
 		}
+	}
+	
+	/**
+	 * Vraća treba li u datoteku na danoj putanji zapisati komprimirani MusicXML, na temelju nastavka datoteke.
+	 * 
+	 * @param file putanja do datoteke
+	 * @return <code>true</code> ako datoteka ima nastavak {@value Constants#MXL_EXTENSION}, inače <code>false</code>
+	 */
+	public static boolean isCompressed(Path file) {
+		return file.getFileName().toString().toLowerCase().endsWith(Constants.MXL_EXTENSION);
+	}
+	
+	/**
+	 * Otvara izlaz za komprimirani MusicXML dokument (.mxl) nad danim izlaznim tokom. U ZIP arhivu se odmah zapisuju
+	 * zapisi <code>mimetype</code> i <code>META-INF/container.xml</code>, a dokument zapisan u vraćeni izlaz komprimira se
+	 * u zapis partiture postupno, bez čuvanja cijelog dokumenta u memoriji. Zatvaranjem vraćenog izlaza završava se arhiva.
+	 * 
+	 * @param out izlazni tok u koji se zapisuje arhiva
+	 * @return izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	public static Writer newCompressedWriter(OutputStream out) throws IOException {
+		ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out));
+		
+		byte[] mimetype = Constants.MXL_MIMETYPE.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(mimetype);
+		ZipEntry mimetypeEntry = new ZipEntry("mimetype");
+		mimetypeEntry.setMethod(ZipEntry.STORED);
+		mimetypeEntry.setSize(mimetype.length);
+		mimetypeEntry.setCompressedSize(mimetype.length);
+		mimetypeEntry.setCrc(crc.getValue());
+		zip.putNextEntry(mimetypeEntry);
+		zip.write(mimetype);
+		zip.closeEntry();
 		
-		document = document.replaceFirst("#M#", measures.stream().collect(Collectors.joining("\n")));
+		Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+		zip.putNextEntry(new ZipEntry("META-INF/container.xml"));
+		containerTemp.write(writer, (key, o) -> o.write(Constants.MXL_SCORE_ENTRY));
+		writer.flush();
+		zip.closeEntry();
 		
-		return document;
+		zip.putNextEntry(new ZipEntry(Constants.MXL_SCORE_ENTRY));
+		return writer;
+	}
+	
+	/**
+	 * Generira MusicXML dokument i zapisuje ga u dani izlaz dio po dio, bez stvaranja cijelog dokumenta u memoriji.
+	 * 
+	 * @param song pjesma iz koje se generira dokument
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	public static void generate(Song song, Writer out) throws IOException {
+		writeStart(song, out);
+		for(Measure m : song.getMeasures()) {
+			writeMeasure(song, m, m.getNumber() == song.getMeasures().size(), out);
+		}
+		writeEnd(out);
+	}
+	
+	/**
+	 * Zapisuje početak MusicXML dokumenta, sve do prvog takta, u dani izlaz.
+	 * 
+	 * @param song pjesma iz koje se generira dokument
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	public static void writeStart(Song song, Writer out) throws IOException {
+		mainStartTemp.write(out, (key, o) -> {
+			switch(key) {
+			case "D" -> writeEscaped(song.getMetadata().getDate(), o);
+			case "T" -> writeEscaped(song.getMetadata().getSongName(), o);
+			case "A" -> writeEscaped(song.getMetadata().getArtistName(), o);
+			default -> writePlaceholder(key, o);
+			}
+		});
+	}
+	
+	/**
+	 * Zapisuje dani takt pjesme u dani izlaz. Taktovi se zapisuju redom, nakon početka dokumenta.
+	 * 
+	 * @param song pjesma iz koje se generira dokument
+	 * @param m takt pjesme
+	 * @param last je li takt zadnji u pjesmi
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	public static void writeMeasure(Song song, Measure m, boolean last, Writer out) throws IOException {
+		if(m.getNumber() == 1) {
+			writeFirstMeasure(song, m, out);
+		} else {
+			out.write("\n");
+			writeNextMeasure(song, m, last, out);
+		}
+	}
+	
+	/**
+	 * Zapisuje kraj MusicXML dokumenta, nakon zadnjeg takta, u dani izlaz.
+	 * 
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	public static void writeEnd(Writer out) throws IOException {
+		out.write(mainEndTemp);
 	}
 
 	/**
-	 * Metoda stvara ispis prvog takta pjesme.
+	 * Metoda zapisuje prvi takt pjesme.
 	 * 
 	 * @param song pjesma iz koje se generira dokument
 	 * @param m prvi takt pjesme
-	 * @return {@link String} xml reprezentacija prvog takta pjesme
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
 	 */
-	private static String getFirstMeasure(Song song, Measure m) {
-		String measure = new String(measure1Temp);
-		
-		measure = measure.replaceFirst("#BU#", getNoteTypeString(song.getTimeSignature().getBeatUnit()));
-		measure = measure.replaceAll("#BPM#", String.valueOf(song.getBeatsPerMinute()));
-		measure = measure.replaceFirst("#DIV#", String.valueOf(song.getMeasureDuration() / song.getTimeSignature().getBeats()));
+	private static void writeFirstMeasure(Song song, Measure m, Writer out) throws IOException {
+		TimeSignature ts = song.getTimeSignature();
 		
-		measure = measure.replaceFirst("#FIF#", String.valueOf(song.getScale().getFifths()));
-		measure = measure.replaceFirst("#MOD#", song.getScale().isMajor() ? "major" : "minor");
-		
-		measure = measure.replaceFirst("#BTS#", String.valueOf(song.getTimeSignature().getBeats()));
-		measure = measure.replaceFirst("#BT#", switch(song.getTimeSignature().getBeatUnit()) {
-		case HALF -> "2";
-		case EIGHTH -> "8";
-		default -> "4";
+		measure1Temp.write(out, (key, o) -> {
+			switch(key) {
+			case "BU" -> o.write(getNoteTypeString(ts.getBeatUnit()));
+			case "BPM" -> o.write(String.valueOf(song.getBeatsPerMinute()));
+			case "DIV" -> o.write(String.valueOf(song.getMeasureDuration() / ts.getBeats()));
+			case "FIF" -> o.write(String.valueOf(song.getScale().getFifths()));
+			case "MOD" -> o.write(song.getScale().isMajor() ? "major" : "minor");
+			case "BTS" -> o.write(String.valueOf(ts.getBeats()));
+			case "BT" -> o.write(switch(ts.getBeatUnit()) {
+			case HALF -> "2";
+			case EIGHTH -> "8";
+			default -> "4";
+			});
+			case "ST" -> o.write(song.isTwoHands() ? "2" : "1");
+			case "CLF" -> o.write(song.isTwoHands() ? clefFTemp : "");
+			default -> writeNotes(song, m, key, o);
+			}
 		});
-		
-		measure = measure.replaceFirst("#ST#", song.isTwoHands() ? "2" : "1");
-		measure = measure.replaceFirst("#CLF#", song.isTwoHands() ? new String(clefFTemp) : "");
-		
-		measure = fillWithNotes(song, m, measure);
-		
-		return measure;
 	}
 	
 	/**
-	 * Metoda stvara ispis takta pjesme.
+	 * Metoda zapisuje takt pjesme koji nije prvi.
 	 * 
 	 * @param song pjesma iz koje se generira dokument
 	 * @param m takt pjesme
-	 * @return {@link String} xml reprezentacija takta pjesme
+	 * @param last je li takt zadnji u pjesmi
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
 	 */
-	private static String getMeasure(Song song, Measure m) {
-		String measure = new String(measure2Temp);
-		
-		measure = measure.replaceFirst("#NR#", String.valueOf(m.getNumber()));
-		measure = fillWithNotes(song, m, measure);
-		measure = measure.replaceFirst("#BL#", m.getNumber() == song.getMeasures().size() ? new String(barlineTemp) : "");
-		
-		return measure;
+	private static void writeNextMeasure(Song song, Measure m, boolean last, Writer out) throws IOException {
+		measure2Temp.write(out, (key, o) -> {
+			switch(key) {
+			case "NR" -> o.write(String.valueOf(m.getNumber()));
+			case "BL" -> o.write(last ? barlineTemp : "");
+			default -> writeNotes(song, m, key, o);
+			}
+		});
 	}
 	
 	/**
-	 * Metoda puni dani {@link String} sa notama danog takta i postavlja mu trajanje.
+	 * Metoda zapisuje trajanje i note danog takta na mjesto dane oznake predloška takta.
 	 * 
 	 * @param song pjesma iz koje se generira dokument
-	 * @param m takt čije se note žele dodati u {@link String} takta
-	 * @param measure {@link String} koji se želi napuniti sa notama takta
-	 * @return novi {@link String} takta
+	 * @param m takt čije se note zapisuju
+	 * @param key oznaka predloška takta
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
 	 */
-	private static String fillWithNotes(Song song, Measure m, String measure) {
-		measure = measure.replaceFirst("#DUR#", String.valueOf(song.getMeasureDuration()));
-		
-		StringBuilder noteRight = new StringBuilder();
-		for(Note n : m.getRightElements()) {
-			noteRight.append(n.isRest() ? getRest(n) : getNote(n)).append("\n");
+	private static void writeNotes(Song song, Measure m, String key, Writer out) throws IOException {
+		switch(key) {
+		case "DUR" -> out.write(String.valueOf(song.getMeasureDuration()));
+		case "NOTR" -> writeElements(m.getRightElements(), out);
+		case "NOTL" -> {
+			if(song.isTwoHands()) {
+				writeElements(m.getLeftElements(), out);
+			}
 		}
-		measure = measure.replaceFirst("#NOTR#", noteRight.toString());
-		
-		if(song.isTwoHands()) {
-			StringBuilder noteLeft = new StringBuilder();
-			for(Note n : m.getLeftElements()) {
-				noteLeft.append(n.isRest() ? getRest(n) : getNote(n)).append("\n");
+		default -> writePlaceholder(key, out);
+		}
+	}
+	
+	/**
+	 * Metoda zapisuje dane note i pauze, svaku u svom retku.
+	 * 
+	 * @param elements note i pauze koje se zapisuju
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	private static void writeElements(Iterable<Note> elements, Writer out) throws IOException {
+		for(Note n : elements) {
+			if(n.isRest()) {
+				writeRest(n, out);
+			} else {
+				writeNote(n, out);
 			}
-			measure = measure.replaceFirst("#NOTL#", noteLeft.toString());
-		} else {
-			measure = measure.replaceFirst("#NOTL#", "");
+			out.write("\n");
 		}
-		
-		return measure;
 	}
 	
 	/**
-	 * Metoda stvara ispis jedne note pjesme.
+	 * Metoda zapisuje jednu notu pjesme.
 	 * 
 	 * @param n nota pjesme
-	 * @return {@link String} xml reprezentacija note pjesme
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
 	 */
-	private static String getNote(Note n) {
-		String note = new String(noteTemp);
+	private static void writeNote(Note n, Writer out) throws IOException {
+		Spelling spelling = n.getSpelling();
 		
-		NoteAlphabet a = n.getPitch().getAlphabet();
-		note = note.replaceFirst("#S#", a == NoteAlphabet.H ? "B" : a.toString());
-		note = note.replaceFirst("#O#", String.valueOf(n.getPitch().getOctave()));
-		note = note.replaceFirst("#AL#", n.getPitch().getAlter() != 0
-				? "<alter>" + String.valueOf(n.getPitch().getAlter()) + "</alter>"
-				: "");
-		
-		note = note.replaceFirst("#ND#", String.valueOf(n.getDuration()));
-		note = note.replaceFirst("#NT#", getNoteTypeString(n.getNoteType()));
-		note = note.replaceFirst("#HD#", n.isLeftHand() ? String.valueOf(2) : String.valueOf(1));
-		
-		StringBuilder extrasString = new StringBuilder();
+		noteTemp.write(out, (key, o) -> {
+			switch(key) {
+			case "S" -> o.write(spelling.getAlphabet() == NoteAlphabet.H ? "B" : spelling.getAlphabet().toString());
+			case "O" -> o.write(String.valueOf(spelling.getOctave()));
+			case "AL" -> {
+				if(spelling.getAlter() != 0) {
+					o.write("<alter>");
+					o.write(String.valueOf(spelling.getAlter()));
+					o.write("</alter>");
+				}
+			}
+			case "ND" -> o.write(String.valueOf(n.getDuration()));
+			case "NT" -> o.write(getNoteTypeString(n.getNoteType()));
+			case "HD" -> o.write(n.isLeftHand() ? "2" : "1");
+			case "EXT" -> writeExtras(n, o);
+			default -> writePlaceholder(key, o);
+			}
+		});
+	}
+	
+	/**
+	 * Metoda zapisuje dodatne oznake note: predznak, akord i ligature.
+	 * 
+	 * @param n nota pjesme
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	private static void writeExtras(Note n, Writer out) throws IOException {
 		if(n.getAccidental() != -2) {
-			String acc = extras.get("acc");
-			acc = acc.replaceFirst("#ACC#", switch(n.getAccidental()) {
+			accidentalTemp.write(out, (key, o) -> o.write(switch(n.getAccidental()) {
 			case -1 -> "flat";
 			case 1 -> "sharp";
 			default -> "natural";
-			});
-			
-			extrasString.append(acc).append("\n");
+			}));
+			out.write("\n");
 		}
 		
 		if(n.isChord()) {
-			extrasString.append(extras.get("chord")).append("\n");
+			writeExtra("chord", out);
 		}
 		
 		if(n.isTiedStart()) {
-			extrasString.append(extras.get("tieStart")).append("\n");
+			writeExtra("tieStart", out);
 			if(n.isTiedStop()) {
-				extrasString.append(extras.get("tieStop")).append("\n");
-				extrasString.append(extras.get("notStartStop")).append("\n");
+				writeExtra("tieStop", out);
+				writeExtra("notStartStop", out);
 			} else {
-				extrasString.append(extras.get("notStart")).append("\n");
+				writeExtra("notStart", out);
 			}
 		} else if(n.isTiedStop()) {
-			extrasString.append(extras.get("tieStop")).append("\n");
-			extrasString.append(extras.get("notStop")).append("\n");
+			writeExtra("tieStop", out);
+			writeExtra("notStop", out);
 		}
-		
-		note = note.replaceFirst("#EXT#", extrasString.toString());
-		return note;
 	}
 	
 	/**
-	 * Metoda stvara ispis jedne pauze pjesme.
+	 * Metoda zapisuje dodatnu oznaku note s danim imenom u svom retku.
+	 * 
+	 * @param name ime dodatne oznake
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	private static void writeExtra(String name, Writer out) throws IOException {
+		out.write(extras.get(name));
+		out.write("\n");
+	}
+	
+	/**
+	 * Metoda zapisuje jednu pauzu pjesme.
 	 * 
 	 * @param n pauza pjesme
-	 * @return {@link String} xml reprezentacija pauze pjesme
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
 	 */
-	private static String getRest(Note n) {
-		String rest = new String(restTemp);
-		
-		rest = rest.replaceFirst("#ND#", String.valueOf(n.getDuration()));
-		rest = rest.replaceFirst("#NT#", getNoteTypeString(n.getNoteType()));
-		rest = rest.replaceFirst("#HD#", n.isLeftHand() ? String.valueOf(2) : String.valueOf(1));
-		
-		return rest;
+	private static void writeRest(Note n, Writer out) throws IOException {
+		restTemp.write(out, (key, o) -> {
+			switch(key) {
+			case "ND" -> o.write(String.valueOf(n.getDuration()));
+			case "NT" -> o.write(getNoteTypeString(n.getNoteType()));
+			case "HD" -> o.write(n.isLeftHand() ? "2" : "1");
+			default -> writePlaceholder(key, o);
+			}
+		});
+	}
+	
+	/**
+	 * Metoda zapisuje dani tekst u sadržaj XML elementa, zamjenjujući znakove koji imaju posebno značenje u XML-u
+	 * odgovarajućim entitetima.
+	 * 
+	 * @param text tekst koji se zapisuje
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	static void writeEscaped(String text, Writer out) throws IOException {
+		for(int i = 0, n = text.length(); i < n; i++) {
+			char c = text.charAt(i);
+			switch(c) {
+			case '&' -> out.write("&amp;");
+			case '<' -> out.write("&lt;");
+			case '>' -> out.write("&gt;");
+			case '"' -> out.write("&quot;");
+			case '\'' -> out.write("&apos;");
+			default -> out.write(c);
+			}
+		}
+	}
+	
+	/**
+	 * Metoda zapisuje oznaku predloška za koju ne postoji sadržaj nepromijenjenu.
+	 * 
+	 * @param key oznaka predloška
+	 * @param out izlaz u koji se zapisuje dokument
+	 * @throws IOException ako zapisivanje ne uspije
+	 */
+	private static void writePlaceholder(String key, Writer out) throws IOException {
+		out.write('#');
+		out.write(key);
+		out.write('#');
 	}
 	
 	/**
@@ -2,18 +2,20 @@ package hr.fer.zavrsni.converter.visualization;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.Writer;
 
 import org.opencv.core.Point;
 
 import hr.fer.zavrsni.converter.SheetMusicConverter;
 import hr.fer.zavrsni.converter.converting.Converter;
+import hr.fer.zavrsni.converter.util.Constants;
+import hr.fer.zavrsni.converter.util.MidiUtil;
 import hr.fer.zavrsni.converter.util.ScaleUtil;
 import hr.fer.zavrsni.converter.util.TempoUtil;
 import hr.fer.zavrsni.converter.util.XMLUtil;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.text.Text;
 import javafx.stage.FileChooser;
@@ -26,6 +28,8 @@ import javafx.stage.FileChooser;
  */
 public class EndSceneController extends AbstractController {
 
+	/** Obrada videozapisa koja se pokreće. */
+	private Converter converter;
 	/** Gornja lijeva točka pravokutnika po kojemu se obrezuje videozapis. */
 	private Point p0;
 	/** Donja desna točka pravokutnika po kojemu se obrezuje videozapis. */
@@ -36,8 +40,12 @@ public class EndSceneController extends AbstractController {
 	private Text enjoyLabel;
 	@FXML
 	private Button generateButton;
+	/** Zapisuje li se notni zapis takt po takt dok se videozapis obrađuje. */
+	@FXML
+	private CheckBox streamBox;
 	
-	public void init(Point p0, Point p1) {
+	public void init(Converter converter, Point p0, Point p1) {
+		this.converter = converter;
 		this.p0 = p0;
 		this.p1 = p1;
 		
@@ -46,27 +54,35 @@ public class EndSceneController extends AbstractController {
 	}
 	
 	@FXML
-	private void generate(MouseEvent event) throws IOException {		
-		Converter con = Converter.getInstance();
-		con.extractNotes(p0, p1);
-		
-		ScaleUtil.findScale(con.getSong());
-		ScaleUtil.fitToScale(con.getSong());
-		
-		TempoUtil.findTempo(con.getSong());
-		TempoUtil.createTimeline(con.getSong(), con.getFirstFrame());
+	private void generate(MouseEvent event) throws IOException {
+		if(streamBox.isSelected()) {
+			generateStreaming();
+			return;
+		}
 		
-		String document = XMLUtil.generate(con.getSong());
+		converter.extractNotes(p0, p1);
 		
 		FileChooser fileChooser = new FileChooser();
         FileChooser.ExtensionFilter extFilter = new FileChooser.ExtensionFilter("MusicXML files (*.musicxml)", "*.musicxml", ".xml");
         fileChooser.getExtensionFilters().add(extFilter);
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Compressed MusicXML files (*.mxl)", "*" + Constants.MXL_EXTENSION));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("MIDI files (*.mid)", "*" + Constants.MIDI_EXTENSION));
 
         File file = fileChooser.showSaveDialog(SheetMusicConverter.getStage());
 
         if (file != null) {
     		try {
-				Files.write(file.toPath(), document.getBytes(StandardCharsets.UTF_8));
+    			if(MidiUtil.isMidi(file.toPath())) {
+    				MidiUtil.generate(converter.getSong().getEvents(), converter.getExactFramesPerSecond(), file.toPath());
+    			} else {
+    				ScaleUtil.findScale(converter.getSong());
+    				ScaleUtil.fitToScale(converter.getSong());
+    				
+    				TempoUtil.findTempo(converter.getSong());
+    				TempoUtil.createTimeline(converter.getSong(), converter.getFirstFrame());
+    				
+    				XMLUtil.generate(converter.getSong(), file.toPath());
+    			}
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -75,5 +91,30 @@ public class EndSceneController extends AbstractController {
         readyLabel.setVisible(false);
         enjoyLabel.setVisible(true);
         generateButton.setVisible(false);
+        streamBox.setVisible(false);
+	}
+	
+	/**
+	 * Nakon odabira datoteke obrađuje videozapis i zapisuje MusicXML dokument takt po takt, dok se videozapis još obrađuje
+	 * (vidi {@link Converter#convertStreaming(Point, Point, Writer)}).
+	 */
+	private void generateStreaming() {
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("MusicXML files (*.musicxml)", "*.musicxml", ".xml"));
+		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Compressed MusicXML files (*.mxl)", "*" + Constants.MXL_EXTENSION));
+		
+		File file = fileChooser.showSaveDialog(SheetMusicConverter.getStage());
+		if(file == null) return;
+		
+		try(Writer out = XMLUtil.newWriter(file.toPath())) {
+			converter.convertStreaming(p0, p1, out);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		readyLabel.setVisible(false);
+		enjoyLabel.setVisible(true);
+		generateButton.setVisible(false);
+		streamBox.setVisible(false);
 	}
 }
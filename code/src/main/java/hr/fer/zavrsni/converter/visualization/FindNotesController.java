@@ -10,7 +10,6 @@ import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.videoio.VideoCapture;
 
 import hr.fer.zavrsni.converter.converting.Converter;
-import hr.fer.zavrsni.converter.converting.PitchConverter;
 import hr.fer.zavrsni.converter.util.Constants;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -29,6 +28,8 @@ import javafx.scene.shape.Line;
  */
 public class FindNotesController extends AbstractController {
 	
+	/** Obrada videozapisa za koju se bira područje s notama. */
+	private Converter converter;
 	@FXML
 	private AnchorPane frameAnchor;
 	@FXML
@@ -50,8 +51,10 @@ public class FindNotesController extends AbstractController {
 	@FXML
 	private Slider sliderY1;
 	
-	public void init() {
-		VideoCapture cap = new VideoCapture(Converter.getInstance().getPathToVideo());
+	public void init(Converter converter) {
+		this.converter = converter;
+		
+		VideoCapture cap = new VideoCapture(converter.getPathToVideo());
 		
 		Mat frame = new Mat();
 		for(int i = 0; i < 150; i++) {
@@ -117,13 +120,13 @@ public class FindNotesController extends AbstractController {
 		int y0 = (int) sliderY0.getValue();
 		int y1 = (int) sliderY1.getValue();
 		
-		PitchConverter.getInstance().setKeyboardWidth(x1 - x0);
+		converter.getPitchConverter().setKeyboardWidth(x1 - x0);
 		
 		FXMLLoader loader = new FXMLLoader(
 					getClass().getResource(Constants.PATH_TO_VISUALIZATION + "EndScene.fxml"));
 		loader.load();
 		EndSceneController controller = loader.getController();
 		controller.setPreviousSceneRoot(rootPane);
-		controller.init(new Point(Math.min(x0, x1), Math.min(y0, y1)), new Point(Math.max(x0, x1), Math.max(y0, y1)));
+		controller.init(converter, new Point(Math.min(x0, x1), Math.min(y0, y1)), new Point(Math.max(x0, x1), Math.max(y0, y1)));
 	}
 }
@@ -3,7 +3,6 @@ package hr.fer.zavrsni.converter.visualization;
 import java.io.IOException;
 
 import hr.fer.zavrsni.converter.converting.Converter;
-import hr.fer.zavrsni.converter.converting.PitchConverter;
 import hr.fer.zavrsni.converter.keyboard.Keyboard;
 import hr.fer.zavrsni.converter.keyboard.KeyboardFactory;
 import hr.fer.zavrsni.converter.model.note.NoteType;
@@ -27,6 +26,8 @@ import javafx.util.Callback;
  */
 public class ParametersController extends AbstractController {
 
+	/** Obrada videozapisa čiji se parametri definiraju. */
+	private Converter converter;
 	@FXML
 	private ComboBox<Keyboard> keyboardPick;
 	@FXML
@@ -36,7 +37,9 @@ public class ParametersController extends AbstractController {
 	@FXML
 	private Label errorMsg;
 	
-	public void init() {
+	public void init(Converter converter) {
+		this.converter = converter;
+		
 		Callback<ListView<Keyboard>, ListCell<Keyboard>> factoryKeyboard = lv -> new ListCell<Keyboard>() {
 		    @Override
 		    protected void updateItem(Keyboard item, boolean empty) {
@@ -87,15 +90,15 @@ public class ParametersController extends AbstractController {
 			return;
 		}
 		
-		PitchConverter.getInstance().setKeyboard(keyboardPick.getValue());
-		Converter.getInstance().getSong().setTimeSignature(timeSignaturePick.getValue());
-		Converter.getInstance().getSong().setBeatsPerMinute(tempo);
+		converter.getPitchConverter().setKeyboard(keyboardPick.getValue());
+		converter.getSong().setTimeSignature(timeSignaturePick.getValue());
+		converter.getSong().setBeatsPerMinute(tempo);
 		
 		FXMLLoader loader = new FXMLLoader(
 				getClass().getResource(Constants.PATH_TO_VISUALIZATION + "FindNotesScene.fxml"));
 		loader.load();
 		FindNotesController controller = loader.getController();
 		controller.setPreviousSceneRoot(rootPane);
-		controller.init();
+		controller.init(converter);
 	}
 }
@@ -65,15 +65,16 @@ public class PickSongSceneController extends AbstractController {
 		SongMetadata metadata = new SongMetadata(songName.length() == 0 ? Constants.DEFAULT_SONG_NAME : songName,
 				artistName.length() == 0 ? Constants.DEFAULT_ARTIST_NAME : artistName);
 
-		Converter c = Converter.getInstance();
+		Converter c = new Converter();
 		c.setPathToVideo(pathToVideo);
 		c.setSongMetadata(metadata);
+		c.setNoteCache(SheetMusicConverter.getNoteCache());
 
 		FXMLLoader loader = new FXMLLoader(
 				getClass().getResource(Constants.PATH_TO_VISUALIZATION + "ParametersScene.fxml"));
 		loader.load();
 		ParametersController controller = loader.getController();
 		controller.setPreviousSceneRoot(rootPane);
-		controller.init();
+		controller.init(c);
 	}
 }
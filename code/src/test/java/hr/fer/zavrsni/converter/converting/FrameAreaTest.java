@@ -0,0 +1,43 @@
+package hr.fer.zavrsni.converter.converting;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Point;
+
+import hr.fer.zavrsni.converter.util.Constants;
+
+/**
+ * Testovi područja obrade: traka oko kontrolne linije iznad nje obuhvaća minimalnu visinu note i dani pomak note,
+ * ali ne izlazi iz odabranog pravokutnika.
+ *
+ * @author Ana Bagić
+ *
+ */
+class FrameAreaTest {
+
+	/** Gornja lijeva točka odabranog pravokutnika. */
+	private static final Point TL = new Point(0, 20);
+	/** Donja desna točka odabranog pravokutnika. */
+	private static final Point BR = new Point(1280, 500);
+
+	@Test
+	void bandHoldsMinimalHeightAndFall() {
+		FrameArea band = FrameArea.band(TL, BR, 12);
+		assertEquals(Constants.MIN_HEIGHT + 12, band.getControlY());
+		assertEquals(BR.y - Constants.CONTROL_DISTANCE, band.getTl().y + band.getControlY());
+
+		FrameArea wider = band.withFall(36);
+		assertEquals(Constants.MIN_HEIGHT + 36, wider.getControlY());
+		assertEquals(BR.y - Constants.CONTROL_DISTANCE, wider.getTl().y + wider.getControlY());
+		assertSame(wider, wider.withFall(36));
+
+		FrameArea clipped = band.withFall(1000);
+		assertEquals(TL.y, clipped.getTl().y);
+		assertEquals(BR.y - Constants.CONTROL_DISTANCE - TL.y, clipped.getControlY());
+
+		FrameArea full = FrameArea.full(TL, BR);
+		assertSame(full, full.withFall(36));
+	}
+}
@@ -0,0 +1,182 @@
+package hr.fer.zavrsni.converter.converting;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Rect;
+
+import hr.fer.zavrsni.converter.keyboard.FullKeyboard;
+import hr.fer.zavrsni.converter.model.note.Note;
+import hr.fer.zavrsni.converter.model.note.NoteType;
+import hr.fer.zavrsni.converter.model.song.Song;
+import hr.fer.zavrsni.converter.model.song.SongMetadata;
+import hr.fer.zavrsni.converter.model.song.TimeSignature;
+import hr.fer.zavrsni.converter.util.Constants;
+import hr.fer.zavrsni.converter.util.ScaleUtil;
+import hr.fer.zavrsni.converter.util.TempoUtil;
+import hr.fer.zavrsni.converter.util.XMLUtil;
+
+/**
+ * Usporedba postupnog generiranja MusicXML dokumenta s generiranjem nakon obrade cijelog videozapisa, na sintetičkom
+ * nizu pravokutnika nota koji pratitelj nota obrađuje slika po slika.
+ *
+ * @author Ana Bagić
+ *
+ */
+class MeasureStreamTest {
+
+	/** Broj slika po sekundi sintetičkog videozapisa. */
+	private static final int FPS = 30;
+	/** Širina klavijature u pikselima. */
+	private static final int WIDTH = 1280;
+	/** Y koordinata kontrolne linije. */
+	private static final int CONTROL_Y = 200;
+	/** Trajanje četvrtinke u slikama, uz tempo od 120 otkucaja u minuti. */
+	private static final int QUARTER = 15;
+	/** Broj taktova sintetičke pjesme. */
+	private static final int MEASURES = 60;
+	/** Slika u kojoj počinje prva nota. */
+	private static final int FIRST_FRAME = 20;
+	/** Tonovi melodije desne ruke, u C-duru. */
+	private static final int[] MELODY = {60, 64, 62, 65, 64, 67, 65, 69, 67, 71, 69, 72};
+	/** Tonovi pratnje lijeve ruke. */
+	private static final int[] BASS = {48, 55};
+	/** Boja nota desne ruke. */
+	private static final double RIGHT_HUE = 100;
+	/** Boja nota lijeve ruke. */
+	private static final double LEFT_HUE = 10;
+
+	@Test
+	void streamedDocumentMatchesBatchDocument() {
+		PitchConverter pitchConverter = new PitchConverter();
+		pitchConverter.setKeyboard(new FullKeyboard());
+		pitchConverter.setKeyboardWidth(WIDTH);
+		int[] keyX = keyPositions(pitchConverter);
+
+		List<int[]> feed = syntheticNotes();
+		int lastFrame = 0;
+		for(int[] note : feed) {
+			lastFrame = Math.max(lastFrame, note[1] + 1);
+		}
+
+		Song streamed = newSong();
+		Song batch = newSong();
+		HandClassifier hands = new HandClassifier();
+		StringWriter out = new StringWriter();
+		MeasureStream stream = new MeasureStream(streamed, hands, out, Constants.STREAM_WARMUP_SECONDS * FPS);
+		NoteTracker tracker = new NoteTracker(pitchConverter, n -> {
+			Note copy = new Note(n.getPitch(), n.isLeftHand(), n.getStartTime());
+			copy.setEndTime(n.getEndTime());
+			batch.addNote(copy);
+			stream.addNote(n);
+		}, (n, hue, x, frame) -> n.setLeftHand(hands.classify(hue, x)), false);
+
+		int measuresBeforeEnd = 0;
+		for(int frame = 1; frame <= lastFrame; frame++) {
+			List<Rect> rects = new ArrayList<>();
+			for(int[] note : feed) {
+				if(note[0] <= frame && frame <= note[1]) {
+					rects.add(new Rect(keyX[note[2]] - 2, CONTROL_Y - (note[1] - frame) + 1, 4, note[1] - note[0] + 20));
+				}
+			}
+
+			tracker.track(rects, CONTROL_Y, frame, r -> r.x < keyX[60] ? LEFT_HUE : RIGHT_HUE);
+			stream.advance(tracker, frame);
+
+			if(frame == lastFrame / 2) {
+				assertTrue(count(out.toString(), "<measure ") > 0, "Nijedan takt nije zapisan do polovine videozapisa");
+			}
+			measuresBeforeEnd = count(out.toString(), "<measure ");
+		}
+		stream.finish(tracker.getFirstFrame());
+
+		batch.setTwoHands(hands.isTwoHands());
+		hands.correctHands(batch);
+		ScaleUtil.findScale(batch);
+		ScaleUtil.fitToScale(batch);
+		TempoUtil.findTempo(batch);
+		TempoUtil.createTimeline(batch, tracker.getFirstFrame());
+		String expected = XMLUtil.generate(batch);
+
+		assertTrue(hands.isTwoHands());
+		assertEquals(batch.getMeasures().size(), count(out.toString(), "<measure "));
+		assertTrue(measuresBeforeEnd >= batch.getMeasures().size() - 2,
+				"Prije kraja videozapisa zapisano je " + measuresBeforeEnd + " od " + batch.getMeasures().size() + " taktova");
+		assertEquals(expected, out.toString());
+	}
+
+	/**
+	 * Stvara sintetičke note kao polja [početak, kraj, MIDI broj tona]: melodiju četvrtinki desne ruke i pratnju polovinki
+	 * lijeve ruke. Uzastopne note iste ruke nikada nemaju isti ton.
+	 *
+	 * @return sintetičke note
+	 */
+	private static List<int[]> syntheticNotes() {
+		List<int[]> notes = new ArrayList<>();
+		for(int i = 0; i < 4 * MEASURES; i++) {
+			int start = FIRST_FRAME + i * QUARTER;
+			notes.add(new int[] {start, start + QUARTER, MELODY[i % MELODY.length]});
+			if(i % 2 == 0) {
+				notes.add(new int[] {start, start + 2 * QUARTER, BASS[(i / 2) % BASS.length]});
+			}
+		}
+		return notes;
+	}
+
+	/**
+	 * Za svaki MIDI broj tona pronalazi x koordinatu sredine područja klavijature koje se prepoznaje kao taj ton.
+	 *
+	 * @param pitchConverter prepoznavanje tona s postavljenom klavijaturom i njenom širinom
+	 * @return x koordinate po MIDI broju tona
+	 */
+	private static int[] keyPositions(PitchConverter pitchConverter) {
+		int[] first = new int[128];
+		int[] last = new int[128];
+		for(int x = WIDTH - 1; x >= 0; x--) {
+			first[pitchConverter.computePitch(x).getMidi()] = x;
+		}
+		for(int x = 0; x < WIDTH; x++) {
+			last[pitchConverter.computePitch(x).getMidi()] = x;
+		}
+
+		int[] center = new int[128];
+		for(int key = 0; key < center.length; key++) {
+			center[key] = (first[key] + last[key]) / 2;
+		}
+		return center;
+	}
+
+	/**
+	 * Stvara pjesmu s metapodatcima, mjerom 4/4 i pretpostavljenim tempom od 120 otkucaja u minuti.
+	 *
+	 * @return nova pjesma
+	 */
+	private static Song newSong() {
+		Song song = new Song();
+		song.setMetadata(new SongMetadata("Sintetička pjesma", "Test"));
+		song.setTimeSignature(new TimeSignature(4, NoteType.QUARTER));
+		song.setBeatsPerMinute(120);
+		song.setFramesPerSecond(FPS);
+		return song;
+	}
+
+	/**
+	 * Broji pojavljivanja danog podniza u tekstu.
+	 *
+	 * @param text tekst
+	 * @param part podniz
+	 * @return broj pojavljivanja podniza
+	 */
+	private static int count(String text, String part) {
+		int count = 0;
+		for(int i = text.indexOf(part); i != -1; i = text.indexOf(part, i + 1)) {
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,46 @@
+package hr.fer.zavrsni.converter.converting;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Rect;
+
+import hr.fer.zavrsni.converter.keyboard.C1G6Keyboard;
+import hr.fer.zavrsni.converter.keyboard.FullKeyboard;
+import hr.fer.zavrsni.converter.keyboard.Keyboard;
+import hr.fer.zavrsni.converter.keyboard.ThreeOctaveKeyboard;
+import hr.fer.zavrsni.converter.model.note.Pitch;
+
+/**
+ * Usporedba prepoznavanja tona iz tablice s izračunom tona iz položaja na klavijaturi.
+ *
+ * @author Ana Bagić
+ *
+ */
+class PitchConverterTest {
+
+	/** Širine klavijature na kojima se uspoređuju tonovi. */
+	private static final int[] WIDTHS = {640, 777, 1280, 1920};
+	/** Najveća širina pravokutnika note. */
+	private static final int MAX_RECT_WIDTH = 60;
+
+	@Test
+	void lookupMatchesComputedPitch() {
+		for(Keyboard keyboard : new Keyboard[] {new FullKeyboard(), new C1G6Keyboard(), new ThreeOctaveKeyboard()}) {
+			for(int width : WIDTHS) {
+				PitchConverter converter = new PitchConverter();
+				converter.setKeyboard(keyboard);
+				converter.setKeyboardWidth(width);
+
+				for(int x = 0; x < width; x++) {
+					for(int w = 1; w <= MAX_RECT_WIDTH && x + w <= width; w++) {
+						Rect rect = new Rect(x, 0, w, 10);
+						Pitch expected = converter.computePitch(x + w/2.0);
+						assertSame(expected, converter.findPitch(rect),
+								keyboard.getRange() + ", širina " + width + ", pravokutnik " + rect);
+					}
+				}
+			}
+		}
+	}
+}
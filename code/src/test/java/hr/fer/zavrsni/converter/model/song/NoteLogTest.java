@@ -0,0 +1,96 @@
+package hr.fer.zavrsni.converter.model.song;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Usporedba pretraživanja datoteke nota po vremenu s pregledom svih nota, za nesortirane i sortirane note.
+ *
+ * @author Ana Bagić
+ *
+ */
+class NoteLogTest {
+
+	/** Broj nota u datoteci. */
+	private static final int NOTES = 20_000;
+	/** Broj nasumičnih intervala pretraživanja. */
+	private static final int QUERIES = 500;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void lookupMatchesFullScan() throws Exception {
+		NoteEvents events = new NoteEvents();
+		Random random = new Random(11);
+		int start = 0;
+		for(int i = 0; i < NOTES; i++) {
+			start += random.nextInt(6);
+			events.add(start, start + 1 + random.nextInt(random.nextInt(50) == 0 ? 2_000 : 40), 21 + random.nextInt(88), 0);
+		}
+
+		Path unsortedFile = directory.resolve("unsorted.notes");
+		try(NoteLogWriter writer = NoteLogWriter.create(unsortedFile, 30, 0, start, false, false)) {
+			writer.append(events, 0, events.size());
+		}
+		events.sort();
+		Path sortedFile = directory.resolve("sorted.notes");
+		try(NoteLogWriter writer = NoteLogWriter.create(sortedFile, 30, 0, start, false, true)) {
+			writer.append(events, 0, events.size());
+		}
+
+		NoteLog unsorted = NoteLog.open(unsortedFile);
+		NoteLog sorted = NoteLog.open(sortedFile);
+		assertFalse(unsorted.isSorted());
+		assertTrue(sorted.isSorted());
+
+		for(int q = 0; q < QUERIES; q++) {
+			int from = random.nextInt(start + 100) - 50;
+			int to = from + random.nextInt(q % 10 == 0 ? 5_000 : 100);
+
+			assertEquals(scan(unsorted, from, to), lookup(unsorted, from, to), "Nesortirane note, [" + from + ", " + to + ")");
+			assertEquals(scan(sorted, from, to), lookup(sorted, from, to), "Sortirane note, [" + from + ", " + to + ")");
+		}
+	}
+
+	/**
+	 * Vraća redne brojeve nota koje sviraju u intervalu, pretraživanjem po vremenu.
+	 *
+	 * @param log datoteka nota
+	 * @param from prva slika intervala
+	 * @param to slika nakon zadnje slike intervala
+	 * @return redni brojevi nota
+	 */
+	private static List<Integer> lookup(NoteLog log, int from, int to) {
+		List<Integer> found = new ArrayList<>();
+		log.forEachBetween(from, to, found::add);
+		return found;
+	}
+
+	/**
+	 * Vraća redne brojeve nota koje sviraju u intervalu, pregledom svih nota.
+	 *
+	 * @param log datoteka nota
+	 * @param from prva slika intervala
+	 * @param to slika nakon zadnje slike intervala
+	 * @return redni brojevi nota
+	 */
+	private static List<Integer> scan(NoteLog log, int from, int to) {
+		List<Integer> found = new ArrayList<>();
+		for(int i = 0; i < log.size(); i++) {
+			if(log.getStart(i) < to && log.getEnd(i) > from) {
+				found.add(i);
+			}
+		}
+		return found;
+	}
+}
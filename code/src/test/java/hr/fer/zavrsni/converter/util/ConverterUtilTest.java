@@ -0,0 +1,119 @@
+package hr.fer.zavrsni.converter.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import hr.fer.zavrsni.converter.converting.PitchConverter;
+import hr.fer.zavrsni.converter.keyboard.FullKeyboard;
+import hr.fer.zavrsni.converter.keyboard.Keyboard;
+import hr.fer.zavrsni.converter.model.note.Pitch;
+
+/**
+ * Testovi prepoznavanja nota: note susjednih bijelih tipki na kontrolnoj liniji ne spajaju se u jednu notu,
+ * povišena nota i nota koja ne leži točno na tipki ne dijele se, a zatvaraju se samo rubovi nota koje prelaze rub slike.
+ *
+ * @author Ana Bagić
+ *
+ */
+class ConverterUtilTest {
+
+	/** Širina slike i klavijature. */
+	private static final int WIDTH = 1280;
+	/** Visina slike. */
+	private static final int HEIGHT = 64;
+	/** Y koordinata kontrolne linije. */
+	private static final int CONTROL_Y = 40;
+
+	@BeforeAll
+	static void loadOpenCV() {
+		Util.loadOpenCV();
+	}
+
+	@Test
+	void crossingNotesAreSplitAtKeyBoundaries() {
+		PitchConverter pitchConverter = new PitchConverter();
+		pitchConverter.setKeyboard(new FullKeyboard());
+		pitchConverter.setKeyboardWidth(WIDTH);
+		Keyboard keyboard = pitchConverter.getKeyboard();
+		double keyWidth = keyboard.getKeyWidth();
+
+		Mat frame = Mat.zeros(HEIGHT, WIDTH, CvType.CV_8UC3);
+		drawNote(frame, 20 * keyWidth + 1, 22 * keyWidth - 1);
+		drawNote(frame, 31 * keyWidth - 7, 31 * keyWidth + 7);
+		drawNote(frame, 40.7 * keyWidth, 40.7 * keyWidth + 21);
+
+		FrameContext context = new FrameContext(new MatAccounting());
+		List<Rect> notes = ConverterUtil.findCrossingNotes(frame, context, CONTROL_Y, keyboard);
+
+		List<Pitch> found = new ArrayList<>();
+		for(Rect r : notes) {
+			found.add(pitchConverter.findPitch(r));
+		}
+		List<Pitch> expected = List.of(
+				pitchAt(pitchConverter, 20.5 * keyWidth),
+				pitchAt(pitchConverter, 21.5 * keyWidth),
+				pitchAt(pitchConverter, 31 * keyWidth),
+				pitchAt(pitchConverter, 40.7 * keyWidth + 10.5));
+		assertEquals(expected, found);
+
+		context.release();
+		frame.release();
+	}
+
+	@Test
+	void bordersAreClosedOnlyBetweenNoteEdges() {
+		Mat frame = Mat.zeros(HEIGHT, WIDTH, CvType.CV_8UC3);
+		drawNote(frame, 100, 130);
+		drawNote(frame, 400, 460);
+		for(int x = 700; x < 900; x++) {
+			double value = 150 - (x - 700) * 0.75;
+			Imgproc.line(frame, new Point(x, 0), new Point(x, HEIGHT - 1), new Scalar(value, value, value));
+		}
+
+		FrameContext context = new FrameContext(new MatAccounting());
+		List<Rect> notes = ConverterUtil.findNotes(frame, context, CONTROL_Y, true);
+
+		assertEquals(2, notes.size());
+		notes.sort((a, b) -> Integer.compare(a.x, b.x));
+		assertEquals(HEIGHT, notes.get(0).height);
+		assertEquals(HEIGHT, notes.get(1).height);
+		assertEquals(100, notes.get(0).x, 2);
+		assertEquals(460, notes.get(1).x + notes.get(1).width, 2);
+
+		context.release();
+		frame.release();
+	}
+
+	/**
+	 * Crta notu koja prelazi kontrolnu liniju i liniju minimalne visine note iznad nje.
+	 *
+	 * @param frame slika u koju se crta
+	 * @param left lijevi rub note
+	 * @param right desni rub note
+	 */
+	private static void drawNote(Mat frame, double left, double right) {
+		Imgproc.rectangle(frame, new Point(Math.ceil(left), 0), new Point(Math.floor(right), HEIGHT - 1), new Scalar(60, 200, 120), -1);
+	}
+
+	/**
+	 * Vraća ton note uske note sa središtem na danoj x koordinati.
+	 *
+	 * @param pitchConverter prepoznavanje tona
+	 * @param x x koordinata središta note
+	 * @return ton note
+	 */
+	private static Pitch pitchAt(PitchConverter pitchConverter, double x) {
+		return pitchConverter.findPitch(new Rect((int) Math.round(x) - 1, 0, 2, 1));
+	}
+}
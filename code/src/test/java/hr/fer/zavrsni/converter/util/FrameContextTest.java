@@ -0,0 +1,136 @@
+package hr.fer.zavrsni.converter.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Test obrade slika u stabilnom stanju: kroz niz sintetičkih slika broj i veličina živih nativnih slika
+ * te alokacija na gomili po slici ne smiju rasti. Provjera kroz 100 000 slika označena je kao spora
+ * i pokreće se samo s profilom <code>slow</code>.
+ *
+ * @author Ana Bagić
+ *
+ */
+class FrameContextTest {
+
+	/** Broj obrađenih slika u brzoj provjeri. */
+	private static final int FRAMES = 12_000;
+	/** Broj obrađenih slika u sporoj provjeri. */
+	private static final int SLOW_FRAMES = 100_000;
+	/** Broj slika nakon kojih se obrada smatra stabilnom. */
+	private static final int WARMUP = 1_024;
+	/** Broj slika u jednom prozoru mjerenja alokacije na gomili, višekratnik perioda sintetičkih slika. */
+	private static final int WINDOW = 2_560;
+	/** Širina sintetičke slike. */
+	private static final int WIDTH = 256;
+	/** Visina sintetičke slike. */
+	private static final int HEIGHT = 64;
+	/** Y koordinata kontrolne linije. */
+	private static final int CONTROL_Y = HEIGHT - 8;
+
+	/** Je li praćenje bilo uključeno prije testa. */
+	private boolean wasEnabled;
+
+	@BeforeAll
+	static void loadOpenCV() {
+		Util.loadOpenCV();
+	}
+
+	@BeforeEach
+	void enable() {
+		wasEnabled = MatAccounting.isEnabled();
+		MatAccounting.setEnabled(true);
+	}
+
+	@AfterEach
+	void restore() {
+		MatAccounting.setEnabled(wasEnabled);
+	}
+
+	@Test
+	void steadyStateAllocationStaysFlat() {
+		runSteadyState(FRAMES);
+	}
+
+	@Test
+	@Tag("slow")
+	void steadyStateAllocationStaysFlatOver100kFrames() {
+		runSteadyState(SLOW_FRAMES);
+	}
+
+	/**
+	 * Obrađuje dani broj sintetičkih slika i nakon svakog prozora mjerenja provjerava da broj i veličina živih slika
+	 * te alokacija na gomili nisu narasli.
+	 *
+	 * @param frames broj obrađenih slika
+	 */
+	private static void runSteadyState(int frames) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		MatAccounting accounting = new MatAccounting();
+		FrameContext context = new FrameContext(accounting);
+		Mat frame = context.getFrame();
+		frame.create(HEIGHT, WIDTH, CvType.CV_8UC3);
+
+		int liveCount = -1;
+		long liveBytes = -1;
+		long firstWindow = -1;
+		long windowStart = 0;
+		for(int i = 1; i <= frames; i++) {
+			drawFrame(frame, i);
+			Mat cropped = context.crop(new Point(0, 0), new Point(WIDTH, HEIGHT));
+			List<Rect> notes = ConverterUtil.findNotes(cropped, context, CONTROL_Y, true);
+			assertFalse(notes.isEmpty(), "Nota nije pronađena u slici " + i);
+			accounting.endFrame(i);
+
+			if(i == WARMUP) {
+				liveCount = accounting.getLiveCount();
+				liveBytes = accounting.getLiveBytes();
+				windowStart = threads.getThreadAllocatedBytes(thread);
+			} else if(i > WARMUP && (i - WARMUP) % WINDOW == 0) {
+				assertEquals(liveCount, accounting.getLiveCount(), "Broj živih slika nakon slike " + i);
+				assertEquals(liveBytes, accounting.getLiveBytes(), "Veličina živih slika nakon slike " + i);
+
+				long allocated = threads.getThreadAllocatedBytes(thread) - windowStart;
+				if(firstWindow == -1) firstWindow = allocated;
+				assertTrue(allocated <= firstWindow + firstWindow / 4,
+						"Alokacija na gomili po prozoru narasla je s " + firstWindow + " na " + allocated + " B");
+				windowStart = threads.getThreadAllocatedBytes(thread);
+			}
+		}
+
+		context.release();
+		assertEquals(0, accounting.getLiveCount());
+	}
+
+	/**
+	 * Crta sintetičku sliku s dvije note koje padaju različitom brzinom. Slike se ponavljaju s periodom od
+	 * {@value #HEIGHT} slika, pa su i veličine slika konteksta jednake nakon svakog perioda.
+	 *
+	 * @param frame slika u koju se crta
+	 * @param i redni broj slike
+	 */
+	private static void drawFrame(Mat frame, int i) {
+		frame.setTo(new Scalar(0, 0, 0));
+		int y = i % HEIGHT;
+		Imgproc.rectangle(frame, new Point(20, y - 30), new Point(40, y), new Scalar(40, 200, 90), -1);
+		Imgproc.rectangle(frame, new Point(120, CONTROL_Y - 20 - i % 8), new Point(150, HEIGHT + 10), new Scalar(200, 120, 40), -1);
+	}
+}
@@ -0,0 +1,79 @@
+package hr.fer.zavrsni.converter.util;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Testovi praćenja slika po obradi i strogog načina rada.
+ *
+ * @author Ana Bagić
+ *
+ */
+class MatAccountingTest {
+
+	/** Je li praćenje bilo uključeno prije testa. */
+	private boolean wasEnabled;
+	/** Je li strogi način rada bio uključen prije testa. */
+	private boolean wasStrict;
+
+	@BeforeAll
+	static void loadOpenCV() {
+		Util.loadOpenCV();
+	}
+
+	@BeforeEach
+	void enable() {
+		wasEnabled = MatAccounting.isEnabled();
+		wasStrict = MatAccounting.isStrict();
+		MatAccounting.setEnabled(true);
+	}
+
+	@AfterEach
+	void restore() {
+		MatAccounting.setStrict(wasStrict);
+		MatAccounting.setEnabled(wasEnabled);
+	}
+
+	@Test
+	void reportLeaksOnlyReportsOwnAllocations() {
+		MatAccounting first = new MatAccounting();
+		MatAccounting second = new MatAccounting();
+		Mat leaked = first.register(new Mat(4, 4, CvType.CV_8UC1), "first");
+		Mat inUse = second.register(new Mat(8, 8, CvType.CV_8UC3), "second");
+
+		first.reportLeaks();
+
+		assertEquals(0, first.getLiveCount());
+		assertEquals(1, second.getLiveCount());
+		assertEquals(8 * 8 * 3, second.getLiveBytes());
+
+		second.release(inUse);
+		assertEquals(0, second.getLiveCount());
+		leaked.release();
+	}
+
+	@Test
+	void strictModeFailsOnlyTheLeakingJob() {
+		MatAccounting.setStrict(true);
+		MatAccounting leaking = new MatAccounting();
+		MatAccounting clean = new MatAccounting();
+
+		Mat leaked = leaking.registerFrameLocal(new Mat(2, 2, CvType.CV_8UC1), "leaking");
+		clean.release(clean.registerFrameLocal(new Mat(2, 2, CvType.CV_8UC1), "clean"));
+
+		assertThrows(IllegalStateException.class, () -> leaking.endFrame(1));
+		assertDoesNotThrow(() -> clean.endFrame(1));
+		assertDoesNotThrow(clean::reportLeaks);
+		assertThrows(IllegalStateException.class, leaking::reportLeaks);
+		assertEquals(0, leaking.getLiveCount());
+		leaked.release();
+	}
+}
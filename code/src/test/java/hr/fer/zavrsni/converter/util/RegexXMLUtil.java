@@ -0,0 +1,239 @@
+package hr.fer.zavrsni.converter.util;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+
+import hr.fer.zavrsni.converter.model.note.Note;
+import hr.fer.zavrsni.converter.model.note.NoteAlphabet;
+import hr.fer.zavrsni.converter.model.note.NoteType;
+import hr.fer.zavrsni.converter.model.note.Spelling;
+import hr.fer.zavrsni.converter.model.song.Measure;
+import hr.fer.zavrsni.converter.model.song.Song;
+
+/**
+ * Prijašnje generiranje MusicXML dokumenta koje za svaki takt i notu kopira tekst predloška i oznake zamjenjuje
+ * metodama {@link String#replaceFirst(String, String)} i {@link String#replaceAll(String, String)}.
+ * Zadržano je kao referenca s kojom se uspoređuje generiranje iz rastavljenih predložaka {@link Template},
+ * uz iste oznake note i pauze kao u {@link XMLUtil}.
+ *
+ * @author Ana Bagić
+ *
+ */
+class RegexXMLUtil {
+
+	/** Predložak generalnog dokumenta. */
+	private static final String mainTemp = Template.load("main.xml");
+	/** Oznaka koja označuje kraj zadnjeg takta u pjesmi. */
+	private static final String barlineTemp = Template.load("barline.xml");
+	/** Oznaka koja označuje bas ključ. */
+	private static final String clefFTemp = Template.load("clefF.xml");
+	/** Predložak prvog takta u pjesmi. */
+	private static final String measure1Temp = Template.load("measure1.xml");
+	/** Predložak taktova u pjesmi. */
+	private static final String measure2Temp = Template.load("measure2.xml");
+	/** Predložak note. */
+	private static final String noteTemp = Template.load("note.xml");
+	/** Predložak pauze.  */
+	private static final String restTemp = Template.load("rest.xml");
+
+	/**
+	 * Generira {@link String} MusicXML dokumenta i vraća ga.
+	 *
+	 * @param song pjesma iz koje se generira dokument
+	 * @return MusicXML dokument u {@link String} formatu
+	 */
+	static String generate(Song song) {
+		String document = mainTemp;
+
+		document = document.replaceAll("#D#", quote(escape(song.getMetadata().getDate())));
+		document = document.replaceAll("#T#", quote(escape(song.getMetadata().getSongName())));
+		document = document.replaceAll("#A#", quote(escape(song.getMetadata().getArtistName())));
+
+		List<String> measures = new LinkedList<>();
+		for(Measure m : song.getMeasures()) {
+			measures.add(m.getNumber() == 1 ? getFirstMeasure(song, m) : getMeasure(song, m));
+		}
+
+		return document.replaceFirst("#M#", quote(measures.stream().collect(Collectors.joining("\n"))));
+	}
+
+	/**
+	 * Metoda stvara ispis prvog takta pjesme.
+	 *
+	 * @param song pjesma iz koje se generira dokument
+	 * @param m prvi takt pjesme
+	 * @return {@link String} xml reprezentacija prvog takta pjesme
+	 */
+	private static String getFirstMeasure(Song song, Measure m) {
+		String measure = measure1Temp;
+
+		measure = measure.replaceFirst("#BU#", getNoteTypeString(song.getTimeSignature().getBeatUnit()));
+		measure = measure.replaceAll("#BPM#", String.valueOf(song.getBeatsPerMinute()));
+		measure = measure.replaceFirst("#DIV#", String.valueOf(song.getMeasureDuration() / song.getTimeSignature().getBeats()));
+
+		measure = measure.replaceFirst("#FIF#", String.valueOf(song.getScale().getFifths()));
+		measure = measure.replaceFirst("#MOD#", song.getScale().isMajor() ? "major" : "minor");
+
+		measure = measure.replaceFirst("#BTS#", String.valueOf(song.getTimeSignature().getBeats()));
+		measure = measure.replaceFirst("#BT#", switch(song.getTimeSignature().getBeatUnit()) {
+		case HALF -> "2";
+		case EIGHTH -> "8";
+		default -> "4";
+		});
+
+		measure = measure.replaceFirst("#ST#", song.isTwoHands() ? "2" : "1");
+		measure = measure.replaceFirst("#CLF#", song.isTwoHands() ? clefFTemp : "");
+
+		return fillWithNotes(song, m, measure);
+	}
+
+	/**
+	 * Metoda stvara ispis takta pjesme.
+	 *
+	 * @param song pjesma iz koje se generira dokument
+	 * @param m takt pjesme
+	 * @return {@link String} xml reprezentacija takta pjesme
+	 */
+	private static String getMeasure(Song song, Measure m) {
+		String measure = measure2Temp;
+
+		measure = measure.replaceFirst("#NR#", String.valueOf(m.getNumber()));
+		measure = fillWithNotes(song, m, measure);
+		measure = measure.replaceFirst("#BL#", m.getNumber() == song.getMeasures().size() ? barlineTemp : "");
+
+		return measure;
+	}
+
+	/**
+	 * Metoda puni dani {@link String} sa notama danog takta i postavlja mu trajanje.
+	 *
+	 * @param song pjesma iz koje se generira dokument
+	 * @param m takt čije se note žele dodati u {@link String} takta
+	 * @param measure {@link String} koji se želi napuniti sa notama takta
+	 * @return novi {@link String} takta
+	 */
+	private static String fillWithNotes(Song song, Measure m, String measure) {
+		measure = measure.replaceFirst("#DUR#", String.valueOf(song.getMeasureDuration()));
+		measure = measure.replaceFirst("#NOTR#", getElements(m.getRightElements()));
+		return measure.replaceFirst("#NOTL#", song.isTwoHands() ? getElements(m.getLeftElements()) : "");
+	}
+
+	/**
+	 * Metoda stvara ispis danih nota i pauza, svake u svom retku.
+	 *
+	 * @param elements note i pauze
+	 * @return {@link String} xml reprezentacija nota i pauza
+	 */
+	private static String getElements(Iterable<Note> elements) {
+		StringBuilder sb = new StringBuilder();
+		for(Note n : elements) {
+			sb.append(n.isRest() ? getRest(n) : getNote(n)).append("\n");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Metoda stvara ispis jedne note pjesme.
+	 *
+	 * @param n nota pjesme
+	 * @return {@link String} xml reprezentacija note pjesme
+	 */
+	private static String getNote(Note n) {
+		String note = noteTemp;
+
+		Spelling spelling = n.getSpelling();
+		NoteAlphabet a = spelling.getAlphabet();
+		note = note.replaceFirst("#S#", a == NoteAlphabet.H ? "B" : a.toString());
+		note = note.replaceFirst("#O#", String.valueOf(spelling.getOctave()));
+		note = note.replaceFirst("#AL#", spelling.getAlter() != 0 ? "<alter>" + spelling.getAlter() + "</alter>" : "");
+
+		note = note.replaceFirst("#ND#", String.valueOf(n.getDuration()));
+		note = note.replaceFirst("#NT#", getNoteTypeString(n.getNoteType()));
+		note = note.replaceFirst("#HD#", n.isLeftHand() ? "2" : "1");
+
+		StringBuilder extras = new StringBuilder();
+		if(n.getAccidental() != -2) {
+			String acc = "<accidental>#ACC#</accidental>".replaceFirst("#ACC#", switch(n.getAccidental()) {
+			case -1 -> "flat";
+			case 1 -> "sharp";
+			default -> "natural";
+			});
+			extras.append(acc).append("\n");
+		}
+
+		if(n.isChord()) {
+			extras.append("<chord />\n");
+		}
+
+		if(n.isTiedStart()) {
+			extras.append("<tie type=\"start\" />\n");
+			if(n.isTiedStop()) {
+				extras.append("<tie type=\"stop\" />\n");
+				extras.append("<notations><tied type=\"start\" /><tied type=\"stop\" /></notations>\n");
+			} else {
+				extras.append("<notations><tied type=\"start\" /></notations>\n");
+			}
+		} else if(n.isTiedStop()) {
+			extras.append("<tie type=\"stop\" />\n");
+			extras.append("<notations><tied type=\"stop\" /></notations>\n");
+		}
+
+		return note.replaceFirst("#EXT#", extras.toString());
+	}
+
+	/**
+	 * Metoda stvara ispis jedne pauze pjesme.
+	 *
+	 * @param n pauza pjesme
+	 * @return {@link String} xml reprezentacija pauze pjesme
+	 */
+	private static String getRest(Note n) {
+		String rest = restTemp;
+
+		rest = rest.replaceFirst("#ND#", String.valueOf(n.getDuration()));
+		rest = rest.replaceFirst("#NT#", getNoteTypeString(n.getNoteType()));
+		rest = rest.replaceFirst("#HD#", n.isLeftHand() ? "2" : "1");
+
+		return rest;
+	}
+
+	/**
+	 * Zamjenjuje znakove koji imaju posebno značenje u XML-u odgovarajućim entitetima.
+	 *
+	 * @param text tekst
+	 * @return tekst sa zamijenjenim znakovima
+	 */
+	private static String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+				.replace("\"", "&quot;").replace("'", "&apos;");
+	}
+
+	/**
+	 * Vraća dani tekst pripremljen za doslovno umetanje kao zamjenu regularnog izraza.
+	 *
+	 * @param text tekst
+	 * @return tekst u kojem znakovi <code>$</code> i <code>\</code> nemaju posebno značenje
+	 */
+	private static String quote(String text) {
+		return Matcher.quoteReplacement(text);
+	}
+
+	/**
+	 * Vraća {@link String} reprezentaciju tipa note u MusicXML datoteci.
+	 *
+	 * @param type tip note
+	 * @return {@link String} reprezentacija tipa note
+	 */
+	private static String getNoteTypeString(NoteType type) {
+		return switch (type) {
+		case WHOLE -> "whole";
+		case HALF -> "half";
+		case QUARTER -> "quarter";
+		case EIGHTH -> "eighth";
+		case N16TH -> "16th";
+		case N32TH -> "32nd";
+		};
+	}
+}
@@ -0,0 +1,76 @@
+package hr.fer.zavrsni.converter.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import hr.fer.zavrsni.converter.model.note.Note;
+import hr.fer.zavrsni.converter.model.note.NoteType;
+import hr.fer.zavrsni.converter.model.note.Pitch;
+import hr.fer.zavrsni.converter.model.song.Song;
+import hr.fer.zavrsni.converter.model.song.SongMetadata;
+import hr.fer.zavrsni.converter.model.song.TimeSignature;
+
+/**
+ * Usporedba generiranja MusicXML dokumenta iz rastavljenih predložaka s prijašnjim generiranjem zamjenom oznaka
+ * regularnim izrazima, na sintetičkoj pjesmi za dvije ruke s akordima, ligaturama i predznacima.
+ * Trajanje oba postupka mjeri {@code TemplateBenchmark}.
+ *
+ * @author Ana Bagić
+ *
+ */
+class TemplateTest {
+
+	/** Broj nota sintetičke pjesme. */
+	private static final int NOTES = 600;
+
+	@Test
+	void templateDocumentMatchesRegexDocument() {
+		Song song = syntheticSong(NOTES);
+		String document = XMLUtil.generate(song);
+
+		assertEquals(RegexXMLUtil.generate(song), document);
+		assertTrue(document.contains("<chord />"), "Dokument nema akorde");
+		assertTrue(document.contains("<tie type=\"start\" />"), "Dokument nema ligature");
+		assertTrue(document.contains("<accidental>"), "Dokument nema predznake");
+		assertTrue(document.contains("<alter>"), "Dokument nema povišene ni snižene note");
+		assertTrue(document.contains("<staff>2</staff>"), "Dokument nema note lijeve ruke");
+		assertTrue(document.contains("<rest />"), "Dokument nema pauze");
+	}
+
+	/**
+	 * Stvara sintetičku pjesmu za dvije ruke s nasumičnim, ali uvijek istim notama i gradi njene taktove.
+	 * Note iz cijelog kromatskog raspona daju predznake, note s istim početkom akorde, a duge note ligature.
+	 *
+	 * @param notes broj nota pjesme
+	 * @return sintetička pjesma s izgrađenim taktovima
+	 */
+	static Song syntheticSong(int notes) {
+		Song song = new Song();
+		song.setMetadata(new SongMetadata("Predložak & $1 <test>", "\"Ana\" \\ 'prijatelji'"));
+		song.setTimeSignature(new TimeSignature(4, NoteType.QUARTER));
+		song.setBeatsPerMinute(120);
+		song.setFramesPerSecond(30);
+		song.setTwoHands(true);
+
+		Random random = new Random(16);
+		int start = 10;
+		for(int i = 0; i < notes; i++) {
+			start += random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(12);
+			int midi = 36 + random.nextInt(48);
+
+			Note note = new Note(Pitch.of(midi), midi < 60, start);
+			note.setEndTime(start + 3 + random.nextInt(60));
+			song.addNote(note);
+		}
+
+		ScaleUtil.findScale(song);
+		ScaleUtil.fitToScale(song);
+		TempoUtil.findTempo(song);
+		TempoUtil.createTimeline(song, song.iterator().next().getStartTime());
+		return song;
+	}
+}
@@ -0,0 +1,171 @@
+package hr.fer.zavrsni.converter.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+import hr.fer.zavrsni.converter.model.note.Note;
+import hr.fer.zavrsni.converter.model.note.NoteType;
+import hr.fer.zavrsni.converter.model.note.Pitch;
+import hr.fer.zavrsni.converter.model.song.Measure;
+import hr.fer.zavrsni.converter.model.song.Song;
+import hr.fer.zavrsni.converter.model.song.SongMetadata;
+import hr.fer.zavrsni.converter.model.song.TimeSignature;
+
+/**
+ * Usporedba izgradnje vremenske crte jednim prolazom s prijašnjim postupkom koji za svaki takt ponovno prolazi
+ * preostalim notama pjesme, na sintetičkoj pjesmi. Trajanje oba postupka mjeri {@code TempoUtilBenchmark}.
+ *
+ * @author Ana Bagić
+ *
+ */
+class TempoUtilTest {
+
+	/** Broj nota sintetičke pjesme. */
+	private static final int NOTES = 10_000;
+
+	@Test
+	void singlePassTimelineMatchesRescanningTimeline() throws Exception {
+		Song singlePass = syntheticSong(NOTES);
+		Song rescanning = syntheticSong(NOTES);
+
+		TempoUtil.createTimeline(singlePass, singlePass.iterator().next().getStartTime());
+		createTimelineRescanning(rescanning, rescanning.iterator().next().getStartTime());
+
+		assertEquals(rescanning.getMeasures().size(), singlePass.getMeasures().size());
+		assertArrayEquals(digest(rescanning), digest(singlePass));
+	}
+
+	/**
+	 * Računa SHA-256 sažetak MusicXML dokumenta dane pjesme, bez stvaranja cijelog dokumenta u memoriji.
+	 *
+	 * @param song pjesma s izgrađenim taktovima
+	 * @return sažetak dokumenta
+	 * @throws Exception ako generiranje dokumenta ne uspije
+	 */
+	private static byte[] digest(Song song) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		try(Writer out = new OutputStreamWriter(new DigestOutputStream(OutputStream.nullOutputStream(), digest), StandardCharsets.UTF_8)) {
+			XMLUtil.generate(song, out);
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Stvara sintetičku pjesmu za dvije ruke s nasumičnim, ali uvijek istim notama i određenim tempom i tonalitetom.
+	 *
+	 * @param notes broj nota pjesme
+	 * @return sintetička pjesma
+	 */
+	static Song syntheticSong(int notes) {
+		Song song = new Song();
+		song.setMetadata(new SongMetadata("Sintetička pjesma", "Test"));
+		song.setTimeSignature(new TimeSignature(4, NoteType.QUARTER));
+		song.setBeatsPerMinute(120);
+		song.setFramesPerSecond(30);
+		song.setTwoHands(true);
+
+		Random random = new Random(42);
+		int start = 10;
+		for(int i = 0; i < notes; i++) {
+			start += random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(12);
+			int midi = 36 + random.nextInt(48);
+
+			Note note = new Note(Pitch.of(midi), midi < 60, start);
+			note.setEndTime(start + 3 + random.nextInt(40));
+			song.addNote(note);
+		}
+
+		ScaleUtil.findScale(song);
+		ScaleUtil.fitToScale(song);
+		TempoUtil.findTempo(song);
+		return song;
+	}
+
+	/**
+	 * Prijašnji postupak izgradnje vremenske crte: za svaki takt note se traže od početka preostalih nota pjesme,
+	 * a note dodane u takt uklanjaju se iz skupa preostalih nota.
+	 *
+	 * @param song pjesma za koju se gradi vremenska crta
+	 * @param startFrame slika u kojoj je prvi put zabilježena nota
+	 */
+	static void createTimelineRescanning(Song song, int startFrame) {
+		TreeSet<Note> remaining = new TreeSet<>();
+		song.forEach(remaining::add);
+
+		List<Note> prevMeasureNotes = new LinkedList<>();
+		TimeSignature ts = song.getTimeSignature();
+
+		double measureDuration = TempoUtil.getMeasureFrames(song);
+		int firstFrameOfMeasure = startFrame;
+
+		int measureCounter = 1;
+		boolean lastMeasure;
+
+		do {
+			Measure measure = new Measure(measureCounter);
+			lastMeasure = true;
+
+			int lastFrameOfMeasure = (int) (firstFrameOfMeasure + measureDuration);
+			List<Note> notesInMeasure = new LinkedList<>(prevMeasureNotes);
+			prevMeasureNotes.clear();
+
+			for(Note n : remaining) {
+				if(!(n.getStartTime() < lastFrameOfMeasure - 2)) {
+					lastMeasure = false;
+					break;
+				}
+				notesInMeasure.add(n);
+			}
+			remaining.removeAll(notesInMeasure);
+
+			int highestFrameInMeasure = -1;
+			for(Note n : notesInMeasure) {
+				if(n.getEndTime() <= lastFrameOfMeasure + 3 && n.getEndTime() > highestFrameInMeasure) {
+					highestFrameInMeasure = n.getEndTime();
+				}
+			}
+
+			if(Math.abs(highestFrameInMeasure - lastFrameOfMeasure) <= 3) {
+				lastFrameOfMeasure = highestFrameInMeasure;
+			}
+
+			for(Note n : notesInMeasure) {
+				if(n.getEndTime() > lastFrameOfMeasure) {
+					if(!lastMeasure) {
+						prevMeasureNotes.add(TempoUtil.splitNotes(n, lastFrameOfMeasure));
+					} else {
+						n.setEndTime(lastFrameOfMeasure);
+					}
+				}
+			}
+
+			for(Note n : notesInMeasure) {
+				List<Note> foundNotes = new LinkedList<>();
+				TempoUtil.determineType(song, n, ts.getBeatUnit(), null, foundNotes);
+				measure.addElements(foundNotes, foundNotes.get(0).isLeftHand());
+			}
+
+			TempoUtil.addChordsAndRests(song, measure.getRightElements(), false, firstFrameOfMeasure, lastFrameOfMeasure);
+			if(song.isTwoHands()) {
+				TempoUtil.addChordsAndRests(song, measure.getLeftElements(), true, firstFrameOfMeasure, lastFrameOfMeasure);
+			}
+
+			song.addMeasure(measure);
+			measureCounter++;
+			firstFrameOfMeasure = lastFrameOfMeasure + 1;
+		} while(!lastMeasure);
+	}
+}
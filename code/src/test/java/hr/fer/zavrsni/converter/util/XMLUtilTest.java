@@ -0,0 +1,139 @@
+package hr.fer.zavrsni.converter.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import hr.fer.zavrsni.converter.model.note.Note;
+import hr.fer.zavrsni.converter.model.note.NoteType;
+import hr.fer.zavrsni.converter.model.note.Pitch;
+import hr.fer.zavrsni.converter.model.song.Song;
+import hr.fer.zavrsni.converter.model.song.SongMetadata;
+import hr.fer.zavrsni.converter.model.song.TimeSignature;
+
+/**
+ * Testovi generiranja MusicXML dokumenta na sintetičkoj pjesmi od najmanje 2 000 taktova.
+ *
+ * @author Ana Bagić
+ *
+ */
+class XMLUtilTest {
+
+	/** Najmanji broj taktova sintetičke pjesme. */
+	private static final int MEASURES = 2_000;
+	/** Naziv pjesme sa znakovima koji imaju posebno značenje u XML-u. */
+	private static final String SONG_NAME = "Rock & Roll <uživo>";
+	/** Izvođač sa znakovima koji imaju posebno značenje u XML-u. */
+	private static final String ARTIST_NAME = "\"Ana\" & 'prijatelji'";
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void streamedDocumentsMatchAndParse() throws Exception {
+		Song song = syntheticSong();
+		assertTrue(song.getMeasures().size() >= MEASURES, "Pjesma ima " + song.getMeasures().size() + " taktova");
+
+		String document = XMLUtil.generate(song);
+
+		StringWriter writer = new StringWriter();
+		XMLUtil.generate(song, writer);
+		assertEquals(document, writer.toString());
+
+		Path file = directory.resolve("song.musicxml");
+		XMLUtil.generate(song, file);
+		assertArrayEquals(document.getBytes(StandardCharsets.UTF_8), Files.readAllBytes(file));
+
+		Path compressed = directory.resolve("song" + Constants.MXL_EXTENSION);
+		XMLUtil.copy(file, compressed);
+		assertArrayEquals(Files.readAllBytes(file), readScore(compressed));
+
+		Document parsed = parse(document);
+		assertEquals(song.getMeasures().size(), parsed.getElementsByTagName("measure").getLength());
+		assertEquals(SONG_NAME, parsed.getElementsByTagName("work-title").item(0).getTextContent());
+		assertEquals(ARTIST_NAME, parsed.getElementsByTagName("creator").item(0).getTextContent());
+	}
+
+	/**
+	 * Stvara sintetičku pjesmu za dvije ruke s nasumičnim, ali uvijek istim notama i gradi njene taktove.
+	 *
+	 * @return sintetička pjesma s izgrađenim taktovima
+	 */
+	private static Song syntheticSong() {
+		Song song = new Song();
+		song.setMetadata(new SongMetadata(SONG_NAME, ARTIST_NAME));
+		song.setTimeSignature(new TimeSignature(4, NoteType.QUARTER));
+		song.setBeatsPerMinute(120);
+		song.setFramesPerSecond(30);
+		song.setTwoHands(true);
+
+		Random random = new Random(7);
+		int start = 10;
+		while(start < 10 + 60 * (MEASURES + 10)) {
+			start += 4 + random.nextInt(8);
+			int midi = 36 + random.nextInt(48);
+
+			Note note = new Note(Pitch.of(midi), midi < 60, start);
+			note.setEndTime(start + 4 + random.nextInt(26));
+			song.addNote(note);
+		}
+
+		ScaleUtil.findScale(song);
+		ScaleUtil.fitToScale(song);
+		TempoUtil.findTempo(song);
+		TempoUtil.createTimeline(song, song.iterator().next().getStartTime());
+		return song;
+	}
+
+	/**
+	 * Čita zapis partiture iz komprimiranog MusicXML dokumenta.
+	 *
+	 * @param file putanja do komprimiranog dokumenta
+	 * @return sadržaj zapisa partiture
+	 * @throws IOException ako se dokument ne može pročitati ili nema zapis partiture
+	 */
+	private static byte[] readScore(Path file) throws IOException {
+		try(ZipInputStream zip = new ZipInputStream(Files.newInputStream(file))) {
+			for(ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+				if(entry.getName().equals(Constants.MXL_SCORE_ENTRY)) {
+					return zip.readAllBytes();
+				}
+			}
+		}
+		throw new IOException("Dokument nema zapis " + Constants.MXL_SCORE_ENTRY);
+	}
+
+	/**
+	 * Parsira dani dokument bez učitavanja vanjskog DTD-a.
+	 *
+	 * @param document MusicXML dokument
+	 * @return parsirani dokument
+	 * @throws Exception ako dokument nije ispravan XML
+	 */
+	private static Document parse(String document) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+		DocumentBuilder builder = factory.newDocumentBuilder();
+		builder.setEntityResolver((publicId, systemId) -> new InputSource(new ByteArrayInputStream(new byte[0])));
+		return builder.parse(new InputSource(new StringReader(document)));
+	}
+}